@@ -0,0 +1,126 @@
+package ee.forgr.capacitor.plugin.file;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@link EncryptionKeys} with the data key wrapped by a non-exportable Android Keystore key.
+ *
+ * Files are not encrypted with the Keystore key itself: every Keystore operation is a call into the keystore
+ * service, which would cap throughput far below the disk. Instead a random AES-256 data key is stored in
+ * {@code keyFile}, encrypted with the Keystore key, and unwrapped once per process to encrypt in-process. The key
+ * file belongs in the no-backup directory: a restored backup could never unwrap it, since Keystore keys don't leave
+ * the device.
+ */
+final class AndroidEncryptionKeys implements EncryptionKeys {
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String MASTER_KEY_ALIAS = "capacitor-file-master";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private final File keyFile;
+    private SecretKey dataKey;
+
+    AndroidEncryptionKeys(File keyFile) {
+        this.keyFile = keyFile;
+    }
+
+    @Override
+    public synchronized SecretKey dataKey() throws IOException {
+        if (dataKey == null) {
+            try {
+                dataKey = keyFile.isFile() ? unwrap() : create();
+            } catch (GeneralSecurityException e) {
+                throw new FileEngineException(FileEngineException.SECURITY_ERR, "Encryption key is unavailable", e);
+            }
+        }
+        return dataKey;
+    }
+
+    private SecretKey unwrap() throws IOException, GeneralSecurityException {
+        Key master = masterKey(false);
+        if (master == null) {
+            throw new FileEngineException(FileEngineException.SECURITY_ERR, "Encryption key is unavailable");
+        }
+        // One byte of IV length, the IV, then the wrapped key
+        byte[] wrapped = FileOperations.readRange(keyFile, 0, null);
+        int ivLength = wrapped.length > 0 ? wrapped[0] : 0;
+        if (ivLength <= 0 || wrapped.length <= 1 + ivLength) {
+            throw new FileEngineException(FileEngineException.SECURITY_ERR, "Encryption key is corrupt");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, master, new GCMParameterSpec(128, wrapped, 1, ivLength));
+        byte[] raw = cipher.doFinal(wrapped, 1 + ivLength, wrapped.length - 1 - ivLength);
+        try {
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    private SecretKey create() throws IOException, GeneralSecurityException {
+        Key master = masterKey(true);
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        byte[] raw = generator.generateKey().getEncoded();
+        try {
+            // The Keystore picks the IV, as it requires for encryption
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, master);
+            byte[] iv = cipher.getIV();
+            byte[] wrapped = cipher.doFinal(raw);
+
+            File parent = keyFile.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Failed to create key directory");
+            }
+            File temp = new File(parent, keyFile.getName() + ".tmp");
+            try {
+                try (FileOutputStream out = new FileOutputStream(temp)) {
+                    out.write(iv.length);
+                    out.write(iv);
+                    out.write(wrapped);
+                    out.getFD().sync();
+                }
+                if (!temp.renameTo(keyFile)) {
+                    throw new IOException("Failed to store encryption key");
+                }
+            } finally {
+                temp.delete();
+            }
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    private static Key masterKey(boolean create) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        Key key = keyStore.getKey(MASTER_KEY_ALIAS, null);
+        if (key != null || !create) {
+            return key;
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(
+            new KeyGenParameterSpec.Builder(MASTER_KEY_ALIAS, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build()
+        );
+        return generator.generateKey();
+    }
+}
@@ -0,0 +1,66 @@
+package ee.forgr.capacitor.plugin.file;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * {@link NativeIo} backed by {@code android.system.Os}.
+ */
+final class AndroidNativeIo implements NativeIo {
+
+    static final AndroidNativeIo INSTANCE = new AndroidNativeIo();
+
+    private AndroidNativeIo() {}
+
+    @Override
+    public void link(File existing, File link) throws IOException {
+        try {
+            Os.link(existing.getAbsolutePath(), link.getAbsolutePath());
+        } catch (ErrnoException e) {
+            throw e.rethrowAsIOException();
+        }
+    }
+
+    @Override
+    public long linkCount(File file) throws IOException {
+        try {
+            return Os.stat(file.getAbsolutePath()).st_nlink;
+        } catch (ErrnoException e) {
+            throw e.rethrowAsIOException();
+        }
+    }
+
+    @Override
+    public boolean allocate(FileDescriptor fd, long offset, long length) throws IOException {
+        try {
+            Os.posix_fallocate(fd, offset, length);
+            return true;
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.EOPNOTSUPP || e.errno == OsConstants.ENOSYS) {
+                return false;
+            }
+            if (e.errno == OsConstants.ENOSPC) {
+                throw new FileEngineException(FileEngineException.QUOTA_EXCEEDED_ERR, "Not enough free space", e);
+            }
+            throw e.rethrowAsIOException();
+        }
+    }
+
+    @Override
+    public void syncDirectory(File dir) throws IOException {
+        try {
+            FileDescriptor fd = Os.open(dir.getAbsolutePath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            throw e.rethrowAsIOException();
+        }
+    }
+}
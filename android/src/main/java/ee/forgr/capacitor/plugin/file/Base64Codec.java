@@ -0,0 +1,290 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Standard (RFC 4648, padded, unwrapped) Base64 for the bridge path, working on every supported API level.
+ *
+ * Payloads are processed chunk by chunk through per-thread scratch buffers that are reused across calls: encoding
+ * writes straight into one pre-sized output array, and decoding streams into a {@link FileChannel}, so a large
+ * file never exists as raw bytes, encoded bytes and a String all at once. Decoding validates the input as it goes, in
+ * the same pass, so bytes before a malformed symbol may already be written; callers decode into a file they can
+ * discard or cut back.
+ */
+final class Base64Codec {
+
+    /** Bytes per encode step and per decoded write; a multiple of 3 so inner chunks encode without padding. */
+    static final int CHUNK_BYTES = 3 * 16 * 1024;
+
+    private static final int CHUNK_CHARS = CHUNK_BYTES / 3 * 4;
+
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(
+        StandardCharsets.US_ASCII
+    );
+
+    private static final int INVALID = -1;
+    private static final int WHITESPACE = -2;
+    private static final int PADDING = -3;
+    private static final int[] DECODE = new int[128];
+
+    static {
+        Arrays.fill(DECODE, INVALID);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = i;
+        }
+        // Line breaks are accepted like android.util.Base64.DEFAULT did for writeFile before API 26
+        DECODE[' '] = WHITESPACE;
+        DECODE['\t'] = WHITESPACE;
+        DECODE['\r'] = WHITESPACE;
+        DECODE['\n'] = WHITESPACE;
+        DECODE['='] = PADDING;
+    }
+
+    /** Scratch buffers reused by every call on the same thread (the engine I/O threads in practice). */
+    private static final class Buffers {
+
+        final byte[] bytes = new byte[CHUNK_BYTES];
+        final char[] chars = new char[CHUNK_CHARS];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private Base64Codec() {}
+
+    /** Scratch array of {@link #CHUNK_BYTES} bytes owned by the calling thread, for chunked encoding. */
+    static byte[] scratch() {
+        return BUFFERS.get().bytes;
+    }
+
+    // Encoding
+
+    /**
+     * Length of the encoding of {@code length} bytes, including padding.
+     */
+    static long encodedLength(long length) {
+        return ((length + 2) / 3) * 4;
+    }
+
+    /**
+     * Number of bytes in {@code encoded} from {@code start} on, an output of this encoder: padded and unwrapped.
+     */
+    static long byteLength(String encoded, int start) {
+        int length = encoded.length();
+        int padding = 0;
+        while (padding < 2 && length - padding > start && encoded.charAt(length - 1 - padding) == '=') {
+            padding++;
+        }
+        return (long) (length - start) / 4 * 3 - padding;
+    }
+
+    static String encodeToString(byte[] data) {
+        return encodeToString("", data, data.length);
+    }
+
+    /**
+     * Returns {@code prefix} followed by the encoding of the first {@code length} bytes of {@code data}.
+     */
+    static String encodeToString(String prefix, byte[] data, int length) {
+        byte[] head = prefix.getBytes(StandardCharsets.US_ASCII);
+        byte[] output = new byte[(int) (head.length + encodedLength(length))];
+        System.arraycopy(head, 0, output, 0, head.length);
+        encode(data, 0, length, output, head.length);
+        // Latin-1 maps each byte to one char, which compact strings store without re-encoding
+        return new String(output, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encodes {@code length} bytes of {@code src} into {@code dst} at {@code dstOffset} and returns the number of
+     * bytes written. When encoding a stream in chunks, every chunk but the last must be a multiple of 3 bytes long.
+     */
+    static int encode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        int sp = srcOffset;
+        int dp = dstOffset;
+        int wholeEnd = srcOffset + (length / 3) * 3;
+        while (sp < wholeEnd) {
+            int bits = ((src[sp++] & 0xff) << 16) | ((src[sp++] & 0xff) << 8) | (src[sp++] & 0xff);
+            dst[dp++] = ALPHABET[(bits >>> 18) & 0x3f];
+            dst[dp++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[dp++] = ALPHABET[(bits >>> 6) & 0x3f];
+            dst[dp++] = ALPHABET[bits & 0x3f];
+        }
+
+        int remaining = srcOffset + length - sp;
+        if (remaining == 1) {
+            int bits = (src[sp] & 0xff) << 16;
+            dst[dp++] = ALPHABET[(bits >>> 18) & 0x3f];
+            dst[dp++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[dp++] = '=';
+            dst[dp++] = '=';
+        } else if (remaining == 2) {
+            int bits = ((src[sp] & 0xff) << 16) | ((src[sp + 1] & 0xff) << 8);
+            dst[dp++] = ALPHABET[(bits >>> 18) & 0x3f];
+            dst[dp++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[dp++] = ALPHABET[(bits >>> 6) & 0x3f];
+            dst[dp++] = '=';
+        }
+        return dp - dstOffset;
+    }
+
+    // Decoding
+
+    /**
+     * Decodes {@code src} into a new array. Whitespace is ignored and the final padding is optional.
+     *
+     * @throws IllegalArgumentException when {@code src} is not valid Base64
+     */
+    static byte[] decode(String src) {
+        // Exact for unwrapped input; symbols can only be fewer, never more
+        int length = src.length();
+        int padding = 0;
+        while (padding < 2 && padding < length && src.charAt(length - 1 - padding) == '=') {
+            padding++;
+        }
+        byte[] output = new byte[(int) ((long) (length - padding) * 3 / 4)];
+        int written;
+        try {
+            written = (int) decode(src, output, null, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return written == output.length ? output : Arrays.copyOf(output, written);
+    }
+
+    /**
+     * Decodes {@code src} into {@code channel} at its current position and returns the number of bytes written.
+     * When {@code src} is invalid, the bytes decoded before the first bad symbol have already been written.
+     *
+     * @throws IllegalArgumentException when {@code src} is not valid Base64
+     */
+    static long decodeTo(String src, FileChannel channel) throws IOException {
+        return decodeTo(src, channel, null);
+    }
+
+    /**
+     * Like {@link #decodeTo(String, FileChannel)}, also feeding the decoded bytes to {@code digest} when not null.
+     */
+    static long decodeTo(String src, FileChannel channel, MessageDigest digest) throws IOException {
+        return decode(src, BUFFERS.get().bytes, channel, digest);
+    }
+
+    /**
+     * Decodes and validates {@code src} into {@code output}, flushing it to {@code channel} before each chunk; without
+     * a channel {@code output} must hold the whole result. Groups of 4 symbols may straddle chunk boundaries, so the
+     * partial group is carried across chunks in {@code bits} and {@code count}.
+     */
+    private static long decode(String src, byte[] output, FileChannel channel, MessageDigest digest) throws IOException {
+        char[] chars = BUFFERS.get().chars;
+        int length = src.length();
+        int bits = 0;
+        int count = 0;
+        int padding = 0;
+        int out = 0;
+        long flushed = 0;
+
+        for (int start = 0; start < length; start += chars.length) {
+            if (channel != null) {
+                // In-memory decodes are bounded by the bridge payload; streamed ones can be cancelled between chunks
+                Cancellation.check();
+            }
+            int end = Math.min(length, start + chars.length);
+            src.getChars(start, end, chars, 0);
+            if (channel != null && out > 0) {
+                // One chunk of text decodes to at most CHUNK_BYTES, the size of the output buffer
+                flushed += flush(channel, digest, out);
+                out = 0;
+            }
+            int n = end - start;
+            int i = 0;
+            while (i < n) {
+                // Fast path: a whole group of four symbols, the common case for unwrapped input
+                if (count == 0 && padding == 0 && i + 4 <= n) {
+                    char c0 = chars[i];
+                    char c1 = chars[i + 1];
+                    char c2 = chars[i + 2];
+                    char c3 = chars[i + 3];
+                    if ((c0 | c1 | c2 | c3) < 128) {
+                        int v0 = DECODE[c0];
+                        int v1 = DECODE[c1];
+                        int v2 = DECODE[c2];
+                        int v3 = DECODE[c3];
+                        if ((v0 | v1 | v2 | v3) >= 0) {
+                            int group = (v0 << 18) | (v1 << 12) | (v2 << 6) | v3;
+                            output[out] = (byte) (group >> 16);
+                            output[out + 1] = (byte) (group >> 8);
+                            output[out + 2] = (byte) group;
+                            out += 3;
+                            i += 4;
+                            continue;
+                        }
+                    }
+                }
+                char c = chars[i++];
+                int value = c < 128 ? DECODE[c] : INVALID;
+                if (value == WHITESPACE) {
+                    continue;
+                }
+                if (value == INVALID) {
+                    throw new IllegalArgumentException("Illegal Base64 character at index " + (start + i - 1));
+                }
+                if (value == PADDING) {
+                    padding++;
+                    continue;
+                }
+                if (padding > 0) {
+                    throw new IllegalArgumentException("Base64 data continues after padding at index " + (start + i - 1));
+                }
+                bits = (bits << 6) | value;
+                if (++count == 4) {
+                    output[out++] = (byte) (bits >> 16);
+                    output[out++] = (byte) (bits >> 8);
+                    output[out++] = (byte) bits;
+                    bits = 0;
+                    count = 0;
+                }
+            }
+        }
+
+        // Padding may only complete a final group of 2 or 3 symbols
+        if (count == 1 || (padding > 0 && (count < 2 || count + padding != 4))) {
+            throw new IllegalArgumentException("Truncated Base64 data");
+        }
+        // A final group of 2 symbols carries one byte, 3 symbols carry two
+        if (channel != null && out > output.length - 2) {
+            flushed += flush(channel, digest, out);
+            out = 0;
+        }
+        if (count == 2) {
+            output[out++] = (byte) (bits >> 4);
+        } else if (count == 3) {
+            output[out++] = (byte) (bits >> 10);
+            output[out++] = (byte) (bits >> 2);
+        }
+        if (channel == null) {
+            return out;
+        }
+        return flushed + flush(channel, digest, out);
+    }
+
+    private static int flush(FileChannel channel, MessageDigest digest, int count) throws IOException {
+        ByteBuffer buffer = BUFFERS.get().buffer;
+        if (digest != null) {
+            digest.update(buffer.array(), 0, count);
+        }
+        buffer.clear().limit(count);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,53 @@
+package ee.forgr.capacitor.plugin.file;
+
+import android.content.Context;
+import android.os.Environment;
+import java.io.File;
+
+/**
+ * Maps the plugin's {@code Directory} values (DOCUMENTS, DATA, CACHE, ...) to app directories,
+ * so native callers resolve paths exactly like the JavaScript API does.
+ */
+public final class BaseDirectories {
+
+    private BaseDirectories() {}
+
+    /**
+     * Returns the base directory for a {@code Directory} value, or the files directory when it is null or unknown.
+     */
+    public static File get(Context context, String directory) {
+        if (directory == null) {
+            return context.getFilesDir();
+        }
+
+        switch (directory) {
+            case "DOCUMENTS":
+                return new File(context.getFilesDir(), "Documents");
+            case "DATA":
+                return context.getFilesDir();
+            case "LIBRARY":
+                return context.getFilesDir();
+            case "CACHE":
+                return context.getCacheDir();
+            case "EXTERNAL":
+                return Environment.getExternalStorageDirectory();
+            case "EXTERNAL_STORAGE":
+                return context.getExternalFilesDir(null);
+            case "APPLICATION":
+                return new File(context.getApplicationInfo().sourceDir).getParentFile();
+            default:
+                return context.getFilesDir();
+        }
+    }
+
+    /**
+     * Resolves a path relative to a base directory, or returns null when the base directory is unavailable.
+     */
+    public static File resolve(Context context, String path, String directory) {
+        File baseDir = get(context, directory);
+        if (baseDir == null) return null;
+
+        String cleanPath = path.startsWith("/") ? path.substring(1) : path;
+        return new File(baseDir, cleanPath);
+    }
+}
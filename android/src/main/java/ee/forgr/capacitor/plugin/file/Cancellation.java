@@ -0,0 +1,76 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative cancellation of one engine operation, either by {@link #cancel()} or once its timeout passes.
+ *
+ * {@link FileEngine#submit(Cancellation, FileEngine.IoTask)} runs the task with the token installed on its I/O
+ * thread, and long loops (copy buffers, tree recursion, chunked reads, directory listings) call {@link #check()},
+ * which then fails with ABORT_ERR. Without a token the checks do nothing, so blocking callers never stop halfway.
+ * A check is a thread-local lookup, so loops make one per chunk or per file, never per byte. Cleanup after a failure
+ * must not check, or it would stop as well.
+ */
+final class Cancellation {
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    private final long timeoutNanos;
+    private volatile boolean started;
+    private volatile long deadline;
+    private volatile boolean cancelled;
+
+    /**
+     * A token that expires {@code timeoutMs} after its operation starts running, so time spent queued behind other
+     * operations does not count; never when it is zero or less.
+     */
+    Cancellation(long timeoutMs) {
+        this.timeoutNanos = timeoutMs > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMs) : 0;
+    }
+
+    /** Stops the operation at its next check; queued operations stop before they start. */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Throws when the operation running on this thread was cancelled or timed out.
+     *
+     * @throws FileEngineException ABORT_ERR
+     */
+    static void check() throws FileEngineException {
+        Cancellation current = CURRENT.get();
+        if (current != null) {
+            current.throwIfStopped();
+        }
+    }
+
+    private void throwIfStopped() throws FileEngineException {
+        if (cancelled) {
+            throw new FileEngineException(FileEngineException.ABORT_ERR, "Operation was cancelled");
+        }
+        if (started && System.nanoTime() - deadline >= 0) {
+            throw new FileEngineException(FileEngineException.ABORT_ERR, "Operation timed out");
+        }
+    }
+
+    <T> T run(FileEngine.IoTask<T> task) throws IOException {
+        if (timeoutNanos > 0 && !started) {
+            deadline = System.nanoTime() + timeoutNanos;
+            started = true;
+        }
+        throwIfStopped();
+        Cancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.run();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
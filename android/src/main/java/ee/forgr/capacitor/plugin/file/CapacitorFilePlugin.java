@@ -2,6 +2,7 @@ package ee.forgr.capacitor.plugin.file;
 
 import android.Manifest;
 import android.app.Activity;
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
@@ -20,21 +21,30 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 @CapacitorPlugin(
     name = "CapacitorFile",
@@ -56,49 +66,132 @@ public class CapacitorFilePlugin extends Plugin {
     static final String PUBLIC_STORAGE_WRITE_PERMISSION_ALIAS = "publicStorageWrite";
     static final String MEDIA_PERMISSION_ALIAS = "media";
 
+    private static final long THUMBNAIL_MEMORY_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final long THUMBNAIL_DISK_CACHE_BYTES = 64L * 1024 * 1024;
+
     private final String pluginVersion = "8.0.16";
 
-    private File getBaseDirectory(String directory) {
-        Context context = getContext();
-        if (directory == null) {
-            return context.getFilesDir();
-        }
-
-        switch (directory) {
-            case "DOCUMENTS":
-                return new File(context.getFilesDir(), "Documents");
-            case "DATA":
-                return context.getFilesDir();
-            case "LIBRARY":
-                return context.getFilesDir();
-            case "CACHE":
-                return context.getCacheDir();
-            case "EXTERNAL":
-                return Environment.getExternalStorageDirectory();
-            case "EXTERNAL_STORAGE":
-                return context.getExternalFilesDir(null);
-            case "APPLICATION":
-                return new File(context.getApplicationInfo().sourceDir).getParentFile();
-            default:
-                return context.getFilesDir();
+    private final FileUris fileUris = new FileUris();
+    private final FileEngine engine = FileEngine.shared();
+
+    private final FileMetrics metrics = new FileMetrics();
+    private final Map<PluginCall, Long> callStarts = new ConcurrentHashMap<>();
+    private final Map<String, Cancellation> runningOperations = new ConcurrentHashMap<>();
+    private ScheduledExecutorService metricsScheduler;
+    private ScheduledFuture<?> metricsEvents;
+
+    private File jobsDir;
+    private File transactionsDir;
+    private ContentDocuments documents;
+    private ReadCache readCache;
+
+    private ThumbnailCache thumbnails;
+    private ExecutorService thumbnailDecoders;
+
+    @Override
+    public void load() {
+        metrics.setEnabled(getConfig().getBoolean("metrics", false));
+        scheduleMetricsEvents(getConfig().getInt("metricsIntervalMs", 0));
+
+        engine.setNativeIo(AndroidNativeIo.INSTANCE);
+        long readCacheBytes = getConfig().getInt("readCacheBytes", 0);
+        readCache = readCacheBytes > 0 ? new ReadCache(readCacheBytes) : null;
+        // Admission checks writes and copies against app storage; StatFs is only asked again after a write or every few seconds
+        File volume = getContext().getDataDir();
+        long spaceWaitMs = getConfig().getInt("spaceWaitMs", 10_000);
+        engine.setDiskQuota(new DiskQuota(volume, () -> new StatFs(volume.getPath()).getAvailableBytes(), spaceWaitMs));
+        documents = new ContentDocuments(getContext());
+        // Created on the first encrypted write, next to the other plugin state that must not be backed up
+        engine.setEncryptionKeys(new AndroidEncryptionKeys(new File(getContext().getNoBackupFilesDir(), "capacitor-file/encryption.key")));
+
+        jobsDir = new File(getContext().getNoBackupFilesDir(), "capacitor-file/jobs");
+        long retentionMs = getConfig().getInt("jobRetentionHours", 24) * 3_600_000L;
+        engine.submit(() -> {
+            TransferJob.pruneFinished(jobsDir, retentionMs);
+            return null;
+        });
+
+        // Queued ahead of every mutation, so transactions interrupted by a crash are finished or undone first
+        transactionsDir = new File(getContext().getNoBackupFilesDir(), "capacitor-file/transactions");
+        engine.submitMutation(() -> FileTransaction.recover(transactionsDir, AndroidNativeIo.INSTANCE));
+
+        // Objects sit next to the files directory, on the same file system, but outside Auto Backup
+        boolean dedupe = getConfig().getBoolean("dedupe", false);
+        File objects = new File(getContext().getNoBackupFilesDir(), "capacitor-file/objects");
+        File scope = getContext().getDataDir();
+        engine.submitMutation(() -> {
+            // Kept after dedupe is turned off while earlier links remain, so writes still unshare them
+            if (dedupe || objects.isDirectory()) {
+                ContentStore store = new ContentStore(scope, objects, AndroidNativeIo.INSTANCE, dedupe);
+                engine.setContentStore(store);
+                engine.submit(store::collectGarbage);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        synchronized (this) {
+            if (metricsScheduler != null) {
+                metricsScheduler.shutdownNow();
+                metricsScheduler = null;
+                metricsEvents = null;
+            }
+            if (thumbnailDecoders != null) {
+                thumbnailDecoders.shutdown();
+                thumbnailDecoders = null;
+                thumbnails = null;
+            }
         }
     }
 
-    private File resolveFilePath(String path, String directory) {
-        File baseDir = getBaseDirectory(directory);
-        if (baseDir == null) return null;
+    /**
+     * Creates the thumbnail cache on first use. Decoders are capped at one thread on low-RAM devices and two
+     * otherwise, since each holds a full sampled bitmap.
+     */
+    private synchronized ThumbnailCache thumbnails() {
+        if (thumbnails == null) {
+            ActivityManager activityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+            int decoders = activityManager != null && activityManager.isLowRamDevice() ? 1 : 2;
+            AtomicInteger counter = new AtomicInteger();
+            thumbnailDecoders = Executors.newFixedThreadPool(decoders, (runnable) -> {
+                Thread thread = new Thread(runnable, "CapacitorFile-thumbnail-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            thumbnails = new ThumbnailCache(
+                new File(getContext().getCacheDir(), "capacitor-file/thumbnails"),
+                Math.min(Runtime.getRuntime().maxMemory() / 16, THUMBNAIL_MEMORY_CACHE_BYTES),
+                THUMBNAIL_DISK_CACHE_BYTES,
+                engine.executor(),
+                thumbnailDecoders,
+                ImagePreview::create
+            );
+        }
+        return thumbnails;
+    }
 
-        String cleanPath = path.startsWith("/") ? path.substring(1) : path;
-        return new File(baseDir, cleanPath);
+    private File resolveFilePath(String path, String directory) {
+        File file = BaseDirectories.resolve(getContext(), path, directory);
+        if (file != null) {
+            fileUris.baseUri(BaseDirectories.get(getContext(), directory));
+        }
+        return file;
     }
 
     private JSObject createEntryResult(File file) {
+        return createEntryResult(file, file.getName(), file.getAbsolutePath(), fileUris.toUri(file));
+    }
+
+    private JSObject createEntryResult(File file, String name, String fullPath, String nativeURL) {
+        boolean isDirectory = file.isDirectory();
         JSObject result = new JSObject();
-        result.put("isFile", file.isFile());
-        result.put("isDirectory", file.isDirectory());
-        result.put("name", file.getName());
-        result.put("fullPath", file.getAbsolutePath());
-        result.put("nativeURL", Uri.fromFile(file).toString());
+        result.put("isFile", !isDirectory && file.isFile());
+        result.put("isDirectory", isDirectory);
+        result.put("name", name);
+        result.put("fullPath", fullPath);
+        result.put("nativeURL", nativeURL);
         return result;
     }
 
@@ -111,8 +204,133 @@ public class CapacitorFilePlugin extends Plugin {
         return "application/octet-stream";
     }
 
+    private void beginMetrics(PluginCall call) {
+        if (!metrics.isEnabled() || callStarts.containsKey(call)) {
+            return;
+        }
+        long started = metrics.begin(call.getMethodName());
+        if (started != 0) {
+            callStarts.put(call, started);
+        }
+    }
+
+    private void endMetrics(PluginCall call) {
+        if (callStarts.isEmpty()) {
+            return;
+        }
+        Long started = callStarts.remove(call);
+        if (started != null) {
+            metrics.end(call.getMethodName(), started);
+        }
+    }
+
+    private void resolve(PluginCall call) {
+        endMetrics(call);
+        call.resolve();
+    }
+
+    private void resolve(PluginCall call, JSObject result) {
+        endMetrics(call);
+        call.resolve(result);
+    }
+
+    /** Rejects a call whose options are missing or malformed, before any file work. */
+    private void reject(PluginCall call, String message) {
+        reject(call, FileMetrics.INVALID_CALL, message, null);
+    }
+
+    /** Rejects a call with a FileError {@code code}, e.g. NOT_FOUND_ERR, which JavaScript gets as the message. */
+    private void reject(PluginCall call, String code, String message) {
+        reject(call, code, code, message);
+    }
+
+    /** Rejects a call that failed with an I/O error carrying no FileError code. */
+    private void rejectFailure(PluginCall call, String failureMessage, String detail) {
+        reject(call, FileMetrics.IO_ERR, failureMessage, detail);
+    }
+
+    /** Metrics count errors by {@code errorCode}, one of a fixed set, never by the free-text message. */
+    private void reject(PluginCall call, String errorCode, String message, String detail) {
+        metrics.recordError(call.getMethodName(), errorCode);
+        endMetrics(call);
+        call.reject(message, detail);
+    }
+
+    /**
+     * Runs {@code task} on the engine, as a cancellable operation when the call passes an {@code operationId}, which
+     * {@link #cancel} takes, or a {@code timeoutMs}. Either one stops the task with ABORT_ERR at its next check.
+     */
+    private <T> CompletableFuture<T> cancellable(PluginCall call, FileEngine.IoTask<T> task) {
+        return cancellable(call, false, task);
+    }
+
+    /** Like {@link #cancellable(PluginCall, FileEngine.IoTask)}, for a task that modifies files. */
+    private <T> CompletableFuture<T> cancellableMutation(PluginCall call, FileEngine.IoTask<T> task) {
+        return cancellable(call, true, task);
+    }
+
+    private <T> CompletableFuture<T> cancellable(PluginCall call, boolean mutation, FileEngine.IoTask<T> task) {
+        String id = call.getString("operationId");
+        Integer timeoutMs = call.getInt("timeoutMs");
+        if (id == null && timeoutMs == null) {
+            return mutation ? engine.submitMutation(task) : engine.submit(task);
+        }
+        Cancellation cancellation = new Cancellation(timeoutMs != null ? timeoutMs : 0);
+        if (id == null) {
+            return mutation ? engine.submitMutation(cancellation, task) : engine.submit(cancellation, task);
+        }
+        if (runningOperations.putIfAbsent(id, cancellation) != null) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(
+                new FileEngineException(FileEngineException.INVALID_MODIFICATION_ERR, "Operation ID is already in use")
+            );
+            return failed;
+        }
+        CompletableFuture<T> operation = mutation ? engine.submitMutation(cancellation, task) : engine.submit(cancellation, task);
+        // Forgotten before the call resolves, so the ID can be reused right away
+        return operation.whenComplete((value, error) -> runningOperations.remove(id, cancellation));
+    }
+
+    interface ResultMapper<T> {
+        JSObject map(T value) throws IOException;
+    }
+
+    /**
+     * Resolves the call with the mapped engine result once the operation completes, or rejects it with
+     * the engine's FileError code. Plain I/O failures are rejected with {@code failureMessage}.
+     * A null mapper or mapped result resolves the call without data.
+     */
+    private <T> void complete(PluginCall call, CompletableFuture<T> operation, String failureMessage, ResultMapper<T> mapper) {
+        operation.whenComplete((value, error) -> {
+            if (error != null) {
+                fail(call, error, failureMessage);
+                return;
+            }
+            try {
+                JSObject result = mapper != null ? mapper.map(value) : null;
+                if (result != null) {
+                    resolve(call, result);
+                } else {
+                    resolve(call);
+                }
+            } catch (Exception e) {
+                fail(call, e, failureMessage);
+            }
+        });
+    }
+
+    private void fail(PluginCall call, Throwable error, String failureMessage) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof FileEngineException && ((FileEngineException) cause).getCode() != null) {
+            reject(call, ((FileEngineException) cause).getCode(), cause.getMessage());
+        } else {
+            rejectFailure(call, failureMessage, cause.getMessage());
+        }
+    }
+
     @PluginMethod
     public void requestFileSystem(PluginCall call) {
+        beginMetrics(call);
         int type = call.getInt("type", 1);
         String name = type == 0 ? "temporary" : "persistent";
 
@@ -122,38 +340,53 @@ public class CapacitorFilePlugin extends Plugin {
         JSObject result = new JSObject();
         result.put("name", name);
         result.put("root", root);
-        call.resolve(result);
+        resolve(call, result);
     }
 
     @PluginMethod
     public void resolveLocalFileSystemURL(PluginCall call) {
+        beginMetrics(call);
         String urlString = call.getString("url");
         if (urlString == null) {
-            call.reject("URL is required");
+            reject(call, "URL is required");
             return;
         }
 
         Uri uri = Uri.parse(urlString);
+        if (ContentDocuments.isContentUri(urlString)) {
+            complete(call, engine.submit(() -> documents.stat(uri)), "Failed to resolve URL", (document) -> {
+                JSObject result = new JSObject();
+                result.put("isFile", !document.directory);
+                result.put("isDirectory", document.directory);
+                result.put("name", document.name);
+                result.put("fullPath", urlString);
+                result.put("nativeURL", urlString);
+                return result;
+            });
+            return;
+        }
+
         String path = uri.getPath();
         if (path == null) {
-            call.reject("Invalid URL");
+            reject(call, "Invalid URL");
             return;
         }
 
         File file = new File(path);
         if (!file.exists()) {
-            call.reject("NOT_FOUND_ERR", "File or directory not found");
+            reject(call, "NOT_FOUND_ERR", "File or directory not found");
             return;
         }
 
-        call.resolve(createEntryResult(file));
+        resolve(call, createEntryResult(file));
     }
 
     @PluginMethod
     public void getFile(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
@@ -164,20 +397,20 @@ public class CapacitorFilePlugin extends Plugin {
 
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
         if (file.exists()) {
             if (file.isDirectory()) {
-                call.reject("TYPE_MISMATCH_ERR", "Path is a directory");
+                reject(call, "TYPE_MISMATCH_ERR", "Path is a directory");
                 return;
             }
             if (create && exclusive) {
-                call.reject("PATH_EXISTS_ERR", "File already exists");
+                reject(call, "PATH_EXISTS_ERR", "File already exists");
                 return;
             }
-            call.resolve(createEntryResult(file));
+            resolve(call, createEntryResult(file));
         } else if (create) {
             try {
                 File parent = file.getParentFile();
@@ -185,23 +418,24 @@ public class CapacitorFilePlugin extends Plugin {
                     parent.mkdirs();
                 }
                 if (file.createNewFile()) {
-                    call.resolve(createEntryResult(file));
+                    resolve(call, createEntryResult(file));
                 } else {
-                    call.reject("Failed to create file");
+                    rejectFailure(call, "Failed to create file", null);
                 }
             } catch (IOException e) {
-                call.reject("Failed to create file", e.getMessage());
+                rejectFailure(call, "Failed to create file", e.getMessage());
             }
         } else {
-            call.reject("NOT_FOUND_ERR", "File not found");
+            reject(call, "NOT_FOUND_ERR", "File not found");
         }
     }
 
     @PluginMethod
     public void getDirectory(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
@@ -212,36 +446,37 @@ public class CapacitorFilePlugin extends Plugin {
 
         File dir = resolveFilePath(path, directory);
         if (dir == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
         if (dir.exists()) {
             if (dir.isFile()) {
-                call.reject("TYPE_MISMATCH_ERR", "Path is a file");
+                reject(call, "TYPE_MISMATCH_ERR", "Path is a file");
                 return;
             }
             if (create && exclusive) {
-                call.reject("PATH_EXISTS_ERR", "Directory already exists");
+                reject(call, "PATH_EXISTS_ERR", "Directory already exists");
                 return;
             }
-            call.resolve(createEntryResult(dir));
+            resolve(call, createEntryResult(dir));
         } else if (create) {
             if (dir.mkdirs()) {
-                call.resolve(createEntryResult(dir));
+                resolve(call, createEntryResult(dir));
             } else {
-                call.reject("Failed to create directory");
+                rejectFailure(call, "Failed to create directory", null);
             }
         } else {
-            call.reject("NOT_FOUND_ERR", "Directory not found");
+            reject(call, "NOT_FOUND_ERR", "Directory not found");
         }
     }
 
     @PluginMethod
     public void readFile(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
@@ -249,126 +484,343 @@ public class CapacitorFilePlugin extends Plugin {
         String encoding = call.getString("encoding");
         int offset = call.getInt("offset", 0);
         Integer length = call.getInt("length");
+        boolean encryption = call.getBoolean("encryption", false);
+
+        if (ContentDocuments.isContentUri(path)) {
+            readDocument(call, Uri.parse(path), encoding, offset, length);
+            return;
+        }
 
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (!file.exists()) {
-            call.reject("NOT_FOUND_ERR", "File not found");
+        ReadRequest request = new ReadRequest(file).offset(offset).length(length).encrypted(encryption);
+        ReadCache cache = readCache;
+        if (cache != null && offset == 0 && length == null && !encryption) {
+            readCached(call, cache, request, encoding);
+            return;
+        }
+        if (encoding == null) {
+            complete(call, cancellable(call, () -> engine.readBase64(request)), "Failed to read file", (data) -> {
+                metrics.recordBytesRead(call.getMethodName(), Base64Codec.byteLength(data, 0));
+                JSObject result = new JSObject();
+                result.put("data", data);
+                return result;
+            });
             return;
         }
 
-        try {
-            long fileSize = file.length();
-            long startOffset = Math.max(0, offset);
+        complete(call, cancellable(call, () -> engine.read(request)), "Failed to read file", (bytes) -> {
+            metrics.recordBytesRead(call.getMethodName(), bytes.length);
+            JSObject result = new JSObject();
+            result.put("data", new String(bytes, charsetFor(encoding)));
+            return result;
+        });
+    }
+
+    /**
+     * Reads a whole file through the read cache; only misses touch the disk and count as bytes read.
+     */
+    private void readCached(PluginCall call, ReadCache cache, ReadRequest request, String encoding) {
+        String key = encoding == null ? "base64" : charsetFor(encoding).name();
+        CompletableFuture<String> read = cancellable(call, () ->
+            cache.get(request.file, key, () -> {
+                if (encoding == null) {
+                    String data = engine.readBase64(request);
+                    metrics.recordBytesRead(call.getMethodName(), Base64Codec.byteLength(data, 0));
+                    return data;
+                }
+                byte[] bytes = engine.read(request);
+                metrics.recordBytesRead(call.getMethodName(), bytes.length);
+                return new String(bytes, charsetFor(encoding));
+            })
+        );
+        complete(call, read, "Failed to read file", (data) -> {
+            JSObject result = new JSObject();
+            result.put("data", data);
+            return result;
+        });
+    }
 
-            // Check if offset is beyond file size
-            if (startOffset >= fileSize) {
+    /**
+     * Drops cached reads of {@code files} once {@code mutation} ends, whether it succeeded or not, and before the
+     * call is resolved.
+     */
+    private <T> CompletableFuture<T> invalidatesCache(CompletableFuture<T> mutation, File... files) {
+        ReadCache cache = readCache;
+        if (cache == null) {
+            return mutation;
+        }
+        return mutation.whenComplete((value, error) -> {
+            for (File file : files) {
+                cache.invalidate(file);
+            }
+        });
+    }
+
+    private void readDocument(PluginCall call, Uri uri, String encoding, int offset, Integer length) {
+        if (encoding == null) {
+            complete(call, cancellable(call, () -> documents.readBase64(uri, offset, length, "")), "Failed to read file", (data) -> {
+                metrics.recordBytesRead(call.getMethodName(), Base64Codec.byteLength(data, 0));
                 JSObject result = new JSObject();
-                result.put("data", "");
-                call.resolve(result);
-                return;
+                result.put("data", data);
+                return result;
+            });
+            return;
+        }
+
+        complete(call, cancellable(call, () -> documents.read(uri, offset, length)), "Failed to read file", (bytes) -> {
+            metrics.recordBytesRead(call.getMethodName(), bytes.length);
+            JSObject result = new JSObject();
+            result.put("data", new String(bytes, charsetFor(encoding)));
+            return result;
+        });
+    }
+
+    @PluginMethod
+    public void readRanges(PluginCall call) {
+        beginMetrics(call);
+        String path = call.getString("path");
+        if (path == null) {
+            reject(call, "Path is required");
+            return;
+        }
+
+        JSArray ranges = call.getArray("ranges");
+        if (ranges == null) {
+            reject(call, "Ranges are required");
+            return;
+        }
+
+        String directory = call.getString("directory");
+        String encoding = call.getString("encoding");
+
+        long[] offsets = new long[ranges.length()];
+        int[] lengths = new int[ranges.length()];
+        try {
+            for (int i = 0; i < offsets.length; i++) {
+                JSONObject range = ranges.getJSONObject(i);
+                offsets[i] = range.getLong("offset");
+                lengths[i] = range.getInt("length");
+                if (offsets[i] < 0 || lengths[i] < 0) {
+                    reject(call, "Invalid range at index " + i);
+                    return;
+                }
             }
+        } catch (JSONException e) {
+            reject(call, "Every range needs an offset and a length");
+            return;
+        }
 
-            // Calculate bytes to read
-            long remainingBytes = fileSize - startOffset;
-            int bytesToRead = length != null ? (int) Math.min(length, remainingBytes) : (int) remainingBytes;
+        File file = resolveFilePath(path, directory);
+        if (file == null) {
+            reject(call, "Invalid path");
+            return;
+        }
 
-            byte[] bytes = new byte[bytesToRead];
-            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-                raf.seek(startOffset);
-                raf.readFully(bytes);
+        complete(call, cancellable(call, () -> engine.readRanges(file, offsets, lengths)), "Failed to read file", (slices) -> {
+            long bytesRead = 0;
+            JSArray data = new JSArray();
+            for (byte[] slice : slices) {
+                bytesRead += slice.length;
+                data.put(encoding != null ? new String(slice, charsetFor(encoding)) : Base64Codec.encodeToString(slice));
             }
+            metrics.recordBytesRead(call.getMethodName(), bytesRead);
+            JSObject result = new JSObject();
+            result.put("data", data);
+            return result;
+        });
+    }
 
-            if (encoding != null) {
-                Charset charset;
-                switch (encoding.toLowerCase()) {
-                    case "utf8":
-                    case "utf-8":
-                        charset = StandardCharsets.UTF_8;
-                        break;
-                    case "ascii":
-                        charset = StandardCharsets.US_ASCII;
-                        break;
-                    case "utf16":
-                    case "utf-16":
-                        charset = StandardCharsets.UTF_16;
-                        break;
-                    default:
-                        charset = StandardCharsets.UTF_8;
-                }
-                String content = new String(bytes, charset);
-                JSObject result = new JSObject();
-                result.put("data", content);
-                call.resolve(result);
-            } else {
-                String base64;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    base64 = Base64.getEncoder().encodeToString(bytes);
-                } else {
-                    base64 = android.util.Base64.encodeToString(bytes, android.util.Base64.NO_WRAP);
+    @PluginMethod
+    public void prefetch(PluginCall call) {
+        beginMetrics(call);
+        JSArray paths = call.getArray("paths");
+        if (paths == null) {
+            reject(call, "Paths are required");
+            return;
+        }
+
+        String directory = call.getString("directory");
+
+        List<File> files = new ArrayList<>(paths.length());
+        try {
+            for (int i = 0; i < paths.length(); i++) {
+                File file = resolveFilePath(paths.getString(i), directory);
+                if (file == null) {
+                    reject(call, "Invalid path");
+                    return;
                 }
-                JSObject result = new JSObject();
-                result.put("data", base64);
-                call.resolve(result);
+                files.add(file);
             }
-        } catch (IOException e) {
-            call.reject("Failed to read file", e.getMessage());
+        } catch (JSONException e) {
+            reject(call, "Paths must be strings");
+            return;
         }
+
+        complete(call, engine.prefetchAsync(files), "Failed to prefetch files", (bytes) -> {
+            JSObject result = new JSObject();
+            result.put("bytes", bytes);
+            return result;
+        });
     }
 
     @PluginMethod
-    public void readAsDataURL(PluginCall call) {
+    public void advise(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
         String directory = call.getString("directory");
+        long offset = Math.max(0, call.getLong("offset", 0L));
+        Integer length = call.getInt("length");
+
+        ReadAdvice advice;
+        try {
+            advice = ReadAdvice.valueOf(call.getString("advice", "").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            reject(call, "Invalid advice");
+            return;
+        }
 
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (!file.exists()) {
-            call.reject("NOT_FOUND_ERR", "File not found");
+        engine.advise(file, advice, offset, length != null ? length : -1);
+        resolve(call);
+    }
+
+    private static Charset charsetFor(String encoding) {
+        switch (encoding.toLowerCase()) {
+            case "utf8":
+            case "utf-8":
+                return StandardCharsets.UTF_8;
+            case "ascii":
+                return StandardCharsets.US_ASCII;
+            case "utf16":
+            case "utf-16":
+                return StandardCharsets.UTF_16;
+            default:
+                return StandardCharsets.UTF_8;
+        }
+    }
+
+    @PluginMethod
+    public void readAsDataURL(PluginCall call) {
+        beginMetrics(call);
+        String path = call.getString("path");
+        if (path == null) {
+            reject(call, "Path is required");
             return;
         }
 
-        try {
-            byte[] bytes = new byte[(int) file.length()];
-            try (FileInputStream fis = new FileInputStream(file)) {
-                fis.read(bytes);
-            }
-            String base64;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                base64 = Base64.getEncoder().encodeToString(bytes);
-            } else {
-                base64 = android.util.Base64.encodeToString(bytes, android.util.Base64.NO_WRAP);
-            }
-            String mimeType = getMimeType(file);
-            String dataUrl = "data:" + mimeType + ";base64," + base64;
+        String directory = call.getString("directory");
 
+        if (ContentDocuments.isContentUri(path)) {
+            Uri uri = Uri.parse(path);
+            int offset = call.getInt("offset", 0);
+            Integer length = call.getInt("length");
+            CompletableFuture<String> read = cancellable(call, () ->
+                documents.readBase64(uri, offset, length, "data:" + documents.mimeType(uri) + ";base64,")
+            );
+            complete(call, read, "Failed to read file", (dataUrl) -> {
+                JSObject result = new JSObject();
+                result.put("data", dataUrl);
+                return result;
+            });
+            return;
+        }
+
+        File file = resolveFilePath(path, directory);
+        if (file == null) {
+            reject(call, "Invalid path");
+            return;
+        }
+
+        String mimeType = getMimeType(file);
+        boolean encryption = call.getBoolean("encryption", false);
+        JSObject preview = call.getObject("preview");
+        if (preview != null && !encryption && ImagePreview.supports(mimeType)) {
+            int maxSize = Math.max(1, preview.getInteger("maxSize", 512));
+            int quality = Math.min(100, Math.max(0, preview.getInteger("quality", 80)));
+            CompletableFuture<ImagePreview> decoded = engine.submit(() -> {
+                if (!file.isFile()) {
+                    throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "File not found");
+                }
+                return ImagePreview.create(file, maxSize, quality);
+            });
+            complete(call, decoded, "Failed to read file", (image) -> {
+                metrics.recordBytesRead(call.getMethodName(), file.length());
+                JSObject result = new JSObject();
+                result.put("data", image.toDataUrl());
+                result.put("width", image.width);
+                result.put("height", image.height);
+                return result;
+            });
+            return;
+        }
+
+        int offset = call.getInt("offset", 0);
+        Integer length = call.getInt("length");
+        ReadRequest request = new ReadRequest(file).offset(offset).length(length).encrypted(encryption);
+        complete(call, cancellable(call, () -> engine.readDataUrl(request, mimeType)), "Failed to read file", (dataUrl) -> {
+            metrics.recordBytesRead(call.getMethodName(), Base64Codec.byteLength(dataUrl, dataUrl.indexOf(',') + 1));
             JSObject result = new JSObject();
             result.put("data", dataUrl);
-            call.resolve(result);
-        } catch (IOException e) {
-            call.reject("Failed to read file", e.getMessage());
+            return result;
+        });
+    }
+
+    @PluginMethod
+    public void getThumbnail(PluginCall call) {
+        beginMetrics(call);
+        String path = call.getString("path");
+        if (path == null) {
+            reject(call, "Path is required");
+            return;
         }
+
+        String directory = call.getString("directory");
+
+        File file = resolveFilePath(path, directory);
+        if (file == null) {
+            reject(call, "Invalid path");
+            return;
+        }
+
+        if (!ImagePreview.supports(getMimeType(file))) {
+            reject(call, "TYPE_MISMATCH_ERR", "Not an image");
+            return;
+        }
+
+        int size = Math.max(1, call.getInt("size", 256));
+        int quality = Math.min(100, Math.max(0, call.getInt("quality", 80)));
+        boolean webp = !"jpeg".equals(call.getString("format", "webp"));
+        complete(call, thumbnails().get(file, size, quality, webp), "Failed to create thumbnail", (thumbnail) -> {
+            JSObject result = new JSObject();
+            result.put("data", thumbnail.toDataUrl());
+            result.put("width", thumbnail.width);
+            result.put("height", thumbnail.height);
+            return result;
+        });
     }
 
     @PluginMethod
     public void writeFile(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         String data = call.getString("data");
         if (path == null || data == null) {
-            call.reject("Path and data are required");
+            reject(call, "Path and data are required");
             return;
         }
 
@@ -377,76 +829,66 @@ public class CapacitorFilePlugin extends Plugin {
         boolean append = call.getBoolean("append", false);
         boolean recursive = call.getBoolean("recursive", false);
         Integer position = call.getInt("position");
+        long preallocate = call.getLong("preallocate", 0L);
+        boolean encryption = call.getBoolean("encryption", false);
+        boolean legacyTextFallback = call.getBoolean("legacyTextFallback", false);
 
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        try {
-            if (recursive) {
-                File parent = file.getParentFile();
-                if (parent != null && !parent.exists()) {
-                    parent.mkdirs();
-                }
-            }
-
-            byte[] bytes;
-            if (encoding != null) {
-                bytes = data.getBytes(StandardCharsets.UTF_8);
-            } else {
+        CompletableFuture<WriteResult> write;
+        if (encoding != null) {
+            WriteRequest request = new WriteRequest(file, data.getBytes(StandardCharsets.UTF_8))
+                .append(append)
+                .position(position)
+                .preallocate(preallocate)
+                .recursive(recursive)
+                .encrypted(encryption);
+            write = cancellableMutation(call, () -> engine.write(request));
+        } else {
+            write = cancellableMutation(call, () -> {
                 try {
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                        bytes = Base64.getDecoder().decode(data);
-                    } else {
-                        bytes = android.util.Base64.decode(data, android.util.Base64.DEFAULT);
+                    WriteRequest request = WriteRequest.fromBase64(file, data);
+                    return engine.write(
+                        request.append(append).position(position).preallocate(preallocate).recursive(recursive).encrypted(encryption)
+                    );
+                } catch (FileEngineException e) {
+                    if (!legacyTextFallback || !FileEngineException.ENCODING_ERR.equals(e.getCode())) {
+                        throw e;
                     }
-                } catch (IllegalArgumentException e) {
-                    // If base64 decode fails, treat as plain text
-                    bytes = data.getBytes(StandardCharsets.UTF_8);
+                    // Opted in: write text that isn't Base64 as UTF-8, as writeFile used to. The failed write changed nothing.
+                    WriteRequest request = new WriteRequest(file, data.getBytes(StandardCharsets.UTF_8));
+                    return engine.write(
+                        request.append(append).position(position).preallocate(preallocate).recursive(recursive).encrypted(encryption)
+                    );
                 }
-            }
-
-            boolean fileExists = file.exists();
-
-            if (position != null && fileExists) {
-                // Write at specific position (random access)
-                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
-                    raf.seek(Math.max(0, position));
-                    raf.write(bytes);
-                }
-            } else if (append && fileExists) {
-                // Append to end of file
-                try (FileOutputStream fos = new FileOutputStream(file, true)) {
-                    fos.write(bytes);
-                }
-            } else {
-                // Overwrite or create new file
-                try (FileOutputStream fos = new FileOutputStream(file)) {
-                    fos.write(bytes);
-                }
-            }
+            });
+        }
 
+        complete(call, invalidatesCache(write, file), "Failed to write file", (written) -> {
+            metrics.recordBytesWritten(call.getMethodName(), written.bytesWritten);
             JSObject result = new JSObject();
-            result.put("uri", Uri.fromFile(file).toString());
-            call.resolve(result);
-        } catch (IOException e) {
-            call.reject("Failed to write file", e.getMessage());
-        }
+            result.put("uri", fileUris.toUri(written.file));
+            return result;
+        });
     }
 
     @PluginMethod
     public void appendFile(PluginCall call) {
+        beginMetrics(call);
         call.getData().put("append", true);
         writeFile(call);
     }
 
     @PluginMethod
     public void deleteFile(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
@@ -454,27 +896,19 @@ public class CapacitorFilePlugin extends Plugin {
 
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
-            return;
-        }
-
-        if (!file.exists()) {
-            call.reject("NOT_FOUND_ERR", "File not found");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (file.delete()) {
-            call.resolve();
-        } else {
-            call.reject("Failed to delete file");
-        }
+        complete(call, invalidatesCache(engine.deleteAsync(file), file), "Failed to delete file", null);
     }
 
     @PluginMethod
     public void mkdir(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
@@ -483,29 +917,19 @@ public class CapacitorFilePlugin extends Plugin {
 
         File dir = resolveFilePath(path, directory);
         if (dir == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        boolean success;
-        if (recursive) {
-            success = dir.mkdirs();
-        } else {
-            success = dir.mkdir();
-        }
-
-        if (success || dir.exists()) {
-            call.resolve();
-        } else {
-            call.reject("Failed to create directory");
-        }
+        complete(call, engine.mkdirAsync(dir, recursive), "Failed to create directory", null);
     }
 
     @PluginMethod
     public void rmdir(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
@@ -514,196 +938,374 @@ public class CapacitorFilePlugin extends Plugin {
 
         File dir = resolveFilePath(path, directory);
         if (dir == null) {
-            call.reject("Invalid path");
-            return;
-        }
-
-        if (!dir.exists()) {
-            call.reject("NOT_FOUND_ERR", "Directory not found");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (recursive) {
-            if (deleteRecursively(dir)) {
-                call.resolve();
-            } else {
-                call.reject("Failed to delete directory");
-            }
-        } else {
-            String[] children = dir.list();
-            if (children != null && children.length > 0) {
-                call.reject("INVALID_MODIFICATION_ERR", "Directory is not empty");
-                return;
-            }
-            if (dir.delete()) {
-                call.resolve();
-            } else {
-                call.reject("Failed to delete directory");
-            }
-        }
-    }
-
-    private boolean deleteRecursively(File file) {
-        if (file.isDirectory()) {
-            File[] children = file.listFiles();
-            if (children != null) {
-                for (File child : children) {
-                    if (!deleteRecursively(child)) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return file.delete();
+        CompletableFuture<Object> deleted = cancellableMutation(call, () -> {
+            engine.rmdir(dir, recursive);
+            return null;
+        });
+        complete(call, invalidatesCache(deleted, dir), "Failed to delete directory", null);
     }
 
     @PluginMethod
     public void readdir(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
         String directory = call.getString("directory");
+        boolean compact = call.getBoolean("compact", false);
+
+        if (ContentDocuments.isContentUri(path)) {
+            Uri uri = Uri.parse(path);
+            complete(call, cancellable(call, () -> documents.list(uri)), "Failed to read directory", (children) -> {
+                JSArray entries = new JSArray();
+                for (ContentDocuments.Document child : children) {
+                    JSObject entry = new JSObject();
+                    entry.put("name", child.name);
+                    entry.put("isDirectory", child.directory);
+                    if (!compact) {
+                        String childUri = child.uri.toString();
+                        entry.put("isFile", !child.directory);
+                        entry.put("fullPath", childUri);
+                        entry.put("nativeURL", childUri);
+                    }
+                    entries.put(entry);
+                }
+                JSObject result = new JSObject();
+                result.put("entries", entries);
+                if (compact) {
+                    result.put("fullPath", path);
+                    result.put("nativeURL", path);
+                }
+                return result;
+            });
+            return;
+        }
 
         File dir = resolveFilePath(path, directory);
         if (dir == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (!dir.exists() || !dir.isDirectory()) {
-            call.reject("NOT_FOUND_ERR", "Directory not found");
-            return;
-        }
+        complete(call, cancellable(call, () -> engine.list(dir)), "Failed to read directory", (listing) -> {
+            String parentPath = dir.getAbsolutePath();
+            String parentUri = fileUris.toUri(dir);
 
-        File[] files = dir.listFiles();
-        JSArray entries = new JSArray();
-        if (files != null) {
-            for (File file : files) {
-                entries.put(createEntryResult(file));
+            JSArray entries = new JSArray();
+            // Entry paths share the directory prefix: build them in one reused buffer instead of per-File getAbsolutePath()
+            StringBuilder pathBuilder = new StringBuilder(parentPath.length() + 64);
+            pathBuilder.append(parentPath);
+            if (!parentPath.endsWith("/")) {
+                pathBuilder.append('/');
+            }
+            int prefixLength = pathBuilder.length();
+            for (int i = 0; i < listing.size(); i++) {
+                String name = listing.names[i];
+                boolean isDirectory = listing.directories[i];
+                JSObject entry = new JSObject();
+                if (!compact) {
+                    pathBuilder.setLength(prefixLength);
+                    entry.put("isFile", !isDirectory);
+                    entry.put("isDirectory", isDirectory);
+                    entry.put("name", name);
+                    entry.put("fullPath", pathBuilder.append(name).toString());
+                    entry.put("nativeURL", FileUris.childUri(parentUri, name));
+                } else {
+                    entry.put("name", name);
+                    entry.put("isDirectory", isDirectory);
+                }
+                entries.put(entry);
             }
-        }
 
-        JSObject result = new JSObject();
-        result.put("entries", entries);
-        call.resolve(result);
+            JSObject result = new JSObject();
+            result.put("entries", entries);
+            if (compact) {
+                result.put("fullPath", parentPath);
+                result.put("nativeURL", parentUri);
+            }
+            return result;
+        });
     }
 
     @PluginMethod
     public void stat(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
         String directory = call.getString("directory");
 
-        File file = resolveFilePath(path, directory);
-        if (file == null) {
-            call.reject("Invalid path");
+        if (ContentDocuments.isContentUri(path)) {
+            Uri uri = Uri.parse(path);
+            complete(call, engine.submit(() -> documents.stat(uri)), "Failed to stat", (document) -> {
+                JSObject result = new JSObject();
+                result.put("type", document.directory ? "directory" : "file");
+                result.put("size", Math.max(0, document.size));
+                result.put("mtime", document.lastModified);
+                result.put("uri", path);
+                return result;
+            });
             return;
         }
 
-        if (!file.exists()) {
-            call.reject("NOT_FOUND_ERR", "File or directory not found");
+        File file = resolveFilePath(path, directory);
+        if (file == null) {
+            reject(call, "Invalid path");
             return;
         }
 
-        JSObject result = new JSObject();
-        result.put("type", file.isDirectory() ? "directory" : "file");
-        result.put("size", file.length());
-        result.put("mtime", file.lastModified());
-        result.put("uri", Uri.fromFile(file).toString());
-        call.resolve(result);
+        complete(call, engine.statAsync(file), "Failed to stat", (stat) -> {
+            JSObject result = new JSObject();
+            result.put("type", stat.directory ? "directory" : "file");
+            result.put("size", stat.size);
+            result.put("mtime", stat.lastModified);
+            result.put("uri", fileUris.toUri(file));
+            return result;
+        });
     }
 
     @PluginMethod
     public void getMetadata(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
         String directory = call.getString("directory");
 
+        if (ContentDocuments.isContentUri(path)) {
+            Uri uri = Uri.parse(path);
+            complete(call, engine.submit(() -> documents.stat(uri)), "Failed to get metadata", (document) -> {
+                JSObject result = new JSObject();
+                result.put("modificationTime", document.lastModified);
+                result.put("size", Math.max(0, document.size));
+                return result;
+            });
+            return;
+        }
+
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (!file.exists()) {
-            call.reject("NOT_FOUND_ERR", "File or directory not found");
+        complete(call, engine.statAsync(file), "Failed to get metadata", (stat) -> {
+            JSObject result = new JSObject();
+            result.put("modificationTime", stat.lastModified);
+            result.put("size", stat.size);
+            return result;
+        });
+    }
+
+    @PluginMethod
+    public void rename(PluginCall call) {
+        beginMetrics(call);
+        String from = call.getString("from");
+        String to = call.getString("to");
+        if (from == null || to == null) {
+            reject(call, "From and to paths are required");
             return;
         }
 
-        JSObject result = new JSObject();
-        result.put("modificationTime", file.lastModified());
-        result.put("size", file.length());
-        call.resolve(result);
+        String directory = call.getString("directory");
+        String toDirectory = call.getString("toDirectory", directory);
+
+        File fromFile = resolveFilePath(from, directory);
+        File toFile = resolveFilePath(to, toDirectory);
+        if (fromFile == null || toFile == null) {
+            reject(call, "Invalid path");
+            return;
+        }
+
+        CompletableFuture<WriteResult> move = invalidatesCache(
+            cancellableMutation(call, () -> engine.move(new CopyRequest(fromFile, toFile))),
+            fromFile,
+            toFile
+        );
+        complete(call, move, "Failed to rename", (moved) -> {
+            metrics.recordBytesRead(call.getMethodName(), moved.bytesWritten);
+            metrics.recordBytesWritten(call.getMethodName(), moved.bytesWritten);
+            return null;
+        });
     }
 
     @PluginMethod
-    public void rename(PluginCall call) {
+    public void move(PluginCall call) {
+        beginMetrics(call);
+        rename(call);
+    }
+
+    @PluginMethod
+    public void copy(PluginCall call) {
+        beginMetrics(call);
         String from = call.getString("from");
         String to = call.getString("to");
         if (from == null || to == null) {
-            call.reject("From and to paths are required");
+            reject(call, "From and to paths are required");
             return;
         }
 
         String directory = call.getString("directory");
         String toDirectory = call.getString("toDirectory", directory);
 
+        if (ContentDocuments.isContentUri(to)) {
+            reject(call, "Copying to a content:// URI is not supported");
+            return;
+        }
+        if (ContentDocuments.isContentUri(from)) {
+            Uri uri = Uri.parse(from);
+            File toFile = resolveFilePath(to, toDirectory);
+            if (toFile == null) {
+                reject(call, "Invalid path");
+                return;
+            }
+            CompletableFuture<Long> copy = invalidatesCache(cancellableMutation(call, () -> documents.copyTo(uri, toFile, engine)), toFile);
+            complete(call, copy, "Failed to copy", (copied) -> {
+                metrics.recordBytesRead(call.getMethodName(), copied);
+                metrics.recordBytesWritten(call.getMethodName(), copied);
+                JSObject result = new JSObject();
+                result.put("uri", fileUris.toUri(toFile));
+                return result;
+            });
+            return;
+        }
+
         File fromFile = resolveFilePath(from, directory);
         File toFile = resolveFilePath(to, toDirectory);
         if (fromFile == null || toFile == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (!fromFile.exists()) {
-            call.reject("NOT_FOUND_ERR", "Source file not found");
+        CompletableFuture<WriteResult> copy = invalidatesCache(
+            cancellableMutation(call, () -> engine.copy(new CopyRequest(fromFile, toFile))),
+            toFile
+        );
+        complete(call, copy, "Failed to copy", (copied) -> {
+            metrics.recordBytesRead(call.getMethodName(), copied.bytesWritten);
+            metrics.recordBytesWritten(call.getMethodName(), copied.bytesWritten);
+            JSObject result = new JSObject();
+            result.put("uri", fileUris.toUri(copied.file));
+            return result;
+        });
+    }
+
+    @PluginMethod
+    public void transaction(PluginCall call) {
+        beginMetrics(call);
+        JSArray items = call.getArray("operations");
+        if (items == null || items.length() == 0) {
+            reject(call, "Operations are required");
             return;
         }
 
-        File parent = toFile.getParentFile();
-        if (parent != null && !parent.exists()) {
-            parent.mkdirs();
+        List<FileTransaction.Operation> operations = new ArrayList<>(items.length());
+        try {
+            for (int i = 0; i < items.length(); i++) {
+                FileTransaction.Operation operation = transactionOperation(items.getJSONObject(i));
+                if (operation == null) {
+                    reject(call, "Invalid operation at index " + i);
+                    return;
+                }
+                operations.add(operation);
+            }
+        } catch (JSONException e) {
+            reject(call, "Every operation needs a type and its paths");
+            return;
         }
 
-        if (toFile.exists()) {
-            toFile.delete();
+        CompletableFuture<Object> committed = engine.submitMutation(() -> {
+            FileTransaction.create(transactionsDir, operations).commit(engine);
+            return null;
+        });
+        List<File> touched = new ArrayList<>();
+        for (FileTransaction.Operation operation : operations) {
+            touched.add(operation.target);
+            if (operation.source != null) {
+                touched.add(operation.source);
+            }
         }
+        complete(call, invalidatesCache(committed, touched.toArray(new File[0])), "Failed to commit transaction", null);
+    }
 
-        if (fromFile.renameTo(toFile)) {
-            call.resolve();
-        } else {
-            try {
-                copyFile(fromFile, toFile);
-                deleteRecursively(fromFile);
-                call.resolve();
-            } catch (IOException e) {
-                call.reject("Failed to rename", e.getMessage());
+    private FileTransaction.Operation transactionOperation(JSONObject item) throws JSONException {
+        String directory = item.optString("directory", null);
+        switch (item.getString("type")) {
+            case "write": {
+                File file = resolveFilePath(item.getString("path"), directory);
+                String data = item.getString("data");
+                if (file == null || data == null) {
+                    return null;
+                }
+                WriteRequest request = item.optString("encoding", null) != null
+                    ? new WriteRequest(file, data.getBytes(StandardCharsets.UTF_8))
+                    : WriteRequest.fromBase64(file, data);
+                request.recursive(item.optBoolean("recursive", false)).encrypted(item.optBoolean("encryption", false));
+                return FileTransaction.Operation.write(request);
             }
+            case "rename": {
+                File from = resolveFilePath(item.getString("from"), directory);
+                File to = resolveFilePath(item.getString("to"), item.optString("toDirectory", directory));
+                return from != null && to != null ? FileTransaction.Operation.rename(from, to) : null;
+            }
+            case "delete": {
+                File file = resolveFilePath(item.getString("path"), directory);
+                return file != null ? FileTransaction.Operation.delete(file) : null;
+            }
+            default:
+                return null;
         }
     }
 
     @PluginMethod
-    public void move(PluginCall call) {
-        rename(call);
+    public void cancel(PluginCall call) {
+        beginMetrics(call);
+        String id = call.getString("operationId");
+        if (id == null) {
+            reject(call, "Operation ID is required");
+            return;
+        }
+
+        Cancellation cancellation = runningOperations.get(id);
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+        JSObject result = new JSObject();
+        result.put("cancelled", cancellation != null);
+        resolve(call, result);
     }
 
     @PluginMethod
-    public void copy(PluginCall call) {
+    public void startJob(PluginCall call) {
+        beginMetrics(call);
+        String type = call.getString("type");
         String from = call.getString("from");
         String to = call.getString("to");
-        if (from == null || to == null) {
-            call.reject("From and to paths are required");
+        if (type == null || from == null || to == null) {
+            reject(call, "Type, from and to are required");
+            return;
+        }
+
+        TransferJob.Type jobType;
+        if ("copy".equals(type)) {
+            jobType = TransferJob.Type.COPY;
+        } else if ("unzip".equals(type)) {
+            jobType = TransferJob.Type.UNZIP;
+        } else {
+            reject(call, "Unsupported job type");
             return;
         }
 
@@ -713,75 +1315,122 @@ public class CapacitorFilePlugin extends Plugin {
         File fromFile = resolveFilePath(from, directory);
         File toFile = resolveFilePath(to, toDirectory);
         if (fromFile == null || toFile == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (!fromFile.exists()) {
-            call.reject("NOT_FOUND_ERR", "Source file not found");
+        boolean foreground = call.getBoolean("foreground", false);
+        CompletableFuture<TransferJob> started = engine.submit(() -> {
+            if (!fromFile.exists()) {
+                throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Source file not found");
+            }
+            TransferJob job = TransferJob.create(jobsDir, jobType, fromFile, toFile, foreground);
+            FileTransferWorker.enqueue(getContext(), job);
+            return job;
+        });
+        complete(call, started, "Failed to start job", this::jobResult);
+    }
+
+    @PluginMethod
+    public void getJob(PluginCall call) {
+        beginMetrics(call);
+        String id = call.getString("id");
+        if (id == null) {
+            reject(call, "Job id is required");
             return;
         }
 
-        try {
-            File parent = toFile.getParentFile();
-            if (parent != null && !parent.exists()) {
-                parent.mkdirs();
-            }
+        complete(call, engine.submit(() -> requireJob(id)), "Failed to get job", this::jobResult);
+    }
 
-            if (fromFile.isDirectory()) {
-                copyDirectory(fromFile, toFile);
-            } else {
-                copyFile(fromFile, toFile);
+    @PluginMethod
+    public void listJobs(PluginCall call) {
+        beginMetrics(call);
+        complete(call, engine.submit(() -> TransferJob.loadAll(jobsDir)), "Failed to list jobs", (jobs) -> {
+            JSArray entries = new JSArray();
+            for (TransferJob job : jobs) {
+                entries.put(jobResult(job));
             }
-
             JSObject result = new JSObject();
-            result.put("uri", Uri.fromFile(toFile).toString());
-            call.resolve(result);
-        } catch (IOException e) {
-            call.reject("Failed to copy", e.getMessage());
-        }
+            result.put("jobs", entries);
+            return result;
+        });
     }
 
-    private void copyFile(File source, File dest) throws IOException {
-        try (InputStream in = new BufferedInputStream(new FileInputStream(source)); OutputStream out = new FileOutputStream(dest)) {
-            byte[] buffer = new byte[8192];
-            int length;
-            while ((length = in.read(buffer)) > 0) {
-                out.write(buffer, 0, length);
-            }
+    @PluginMethod
+    public void cancelJob(PluginCall call) {
+        beginMetrics(call);
+        String id = call.getString("id");
+        if (id == null) {
+            reject(call, "Job id is required");
+            return;
         }
+
+        CompletableFuture<TransferJob> cancelled = engine.submit(() -> {
+            TransferJob job = requireJob(id);
+            if (!job.isFinished()) {
+                // The marker stops a running worker at its next checkpoint; cancelling the work drops a queued one
+                job.markCancelled();
+                FileTransferWorker.cancel(getContext(), job);
+            }
+            return job;
+        });
+        complete(call, cancelled, "Failed to cancel job", this::jobResult);
     }
 
-    private void copyDirectory(File source, File dest) throws IOException {
-        if (!dest.exists()) {
-            dest.mkdirs();
+    private TransferJob requireJob(String id) throws IOException {
+        TransferJob job = id.indexOf('/') < 0 ? TransferJob.load(jobsDir, id) : null;
+        if (job == null) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Job not found");
         }
-        File[] files = source.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                File destFile = new File(dest, file.getName());
-                if (file.isDirectory()) {
-                    copyDirectory(file, destFile);
-                } else {
-                    copyFile(file, destFile);
-                }
-            }
+        return job;
+    }
+
+    private JSObject jobResult(TransferJob job) {
+        JSObject result = new JSObject();
+        result.put("id", job.id);
+        result.put("type", job.type == TransferJob.Type.COPY ? "copy" : "unzip");
+        result.put("state", job.effectiveState().name().toLowerCase(Locale.ROOT));
+        result.put("bytesDone", job.bytesDone);
+        result.put("bytesTotal", job.bytesTotal);
+        result.put("itemsDone", job.itemsDone);
+        result.put("itemsTotal", job.itemsTotal);
+        result.put("uri", fileUris.toUri(job.destination));
+        result.put("createdAt", job.createdAt);
+        result.put("updatedAt", job.updatedAt);
+        if (job.error != null) {
+            result.put("error", job.error);
         }
+        return result;
     }
 
     @PluginMethod
     public void exists(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
         String directory = call.getString("directory");
 
+        if (ContentDocuments.isContentUri(path)) {
+            Uri uri = Uri.parse(path);
+            complete(call, engine.submit(() -> documents.find(uri)), "Failed to check existence", (document) -> {
+                JSObject result = new JSObject();
+                result.put("exists", document != null);
+                if (document != null) {
+                    result.put("type", document.directory ? "directory" : "file");
+                }
+                return result;
+            });
+            return;
+        }
+
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
@@ -792,14 +1441,15 @@ public class CapacitorFilePlugin extends Plugin {
         } else {
             result.put("exists", false);
         }
-        call.resolve(result);
+        resolve(call, result);
     }
 
     @PluginMethod
     public void getUri(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
@@ -807,47 +1457,71 @@ public class CapacitorFilePlugin extends Plugin {
 
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
         JSObject result = new JSObject();
-        result.put("uri", Uri.fromFile(file).toString());
-        call.resolve(result);
+        result.put("uri", fileUris.toUri(file));
+        resolve(call, result);
     }
 
     @PluginMethod
     public void truncate(PluginCall call) {
+        beginMetrics(call);
         String path = call.getString("path");
         if (path == null) {
-            call.reject("Path is required");
+            reject(call, "Path is required");
             return;
         }
 
         String directory = call.getString("directory");
         int size = call.getInt("size", 0);
+        boolean encryption = call.getBoolean("encryption", false);
 
         File file = resolveFilePath(path, directory);
         if (file == null) {
-            call.reject("Invalid path");
+            reject(call, "Invalid path");
             return;
         }
 
-        if (!file.exists()) {
-            call.reject("NOT_FOUND_ERR", "File not found");
+        complete(call, invalidatesCache(engine.truncateAsync(file, size, encryption), file), "Failed to truncate file", null);
+    }
+
+    @PluginMethod
+    public void preallocate(PluginCall call) {
+        beginMetrics(call);
+        String path = call.getString("path");
+        Long size = call.getLong("size");
+        if (path == null || size == null) {
+            reject(call, "Path and size are required");
             return;
         }
+        if (size < 0) {
+            reject(call, "Invalid size");
+            return;
+        }
+
+        String directory = call.getString("directory");
+        boolean sparse = call.getBoolean("sparse", false);
 
-        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
-            raf.setLength(size);
-            call.resolve();
-        } catch (IOException e) {
-            call.reject("Failed to truncate file", e.getMessage());
+        File file = resolveFilePath(path, directory);
+        if (file == null) {
+            reject(call, "Invalid path");
+            return;
         }
+
+        CompletableFuture<Boolean> preallocated = invalidatesCache(engine.preallocateAsync(file, size, sparse), file);
+        complete(call, preallocated, "Failed to preallocate file", (reserved) -> {
+            JSObject result = new JSObject();
+            result.put("reserved", reserved);
+            return result;
+        });
     }
 
     @PluginMethod
     public void getDirectories(PluginCall call) {
+        beginMetrics(call);
         Context context = getContext();
 
         JSObject result = new JSObject();
@@ -875,11 +1549,12 @@ public class CapacitorFilePlugin extends Plugin {
         }
         result.put("documentsDirectory", Uri.fromFile(documentsDir).toString());
 
-        call.resolve(result);
+        resolve(call, result);
     }
 
     @PluginMethod
     public void getFreeDiskSpace(PluginCall call) {
+        beginMetrics(call);
         File path = getContext().getFilesDir();
         StatFs stat = new StatFs(path.getPath());
         long freeSpace;
@@ -888,31 +1563,162 @@ public class CapacitorFilePlugin extends Plugin {
 
         JSObject result = new JSObject();
         result.put("free", freeSpace);
-        call.resolve(result);
+        resolve(call, result);
+    }
+
+    @PluginMethod
+    public void setQuota(PluginCall call) {
+        beginMetrics(call);
+        String path = call.getString("path");
+        Long maxBytes = call.getLong("maxBytes");
+        if (path == null || maxBytes == null) {
+            reject(call, "Path and maxBytes are required");
+            return;
+        }
+
+        File dir = resolveFilePath(path, call.getString("directory"));
+        if (dir == null) {
+            reject(call, "Invalid path");
+            return;
+        }
+
+        complete(call, engine.submit(() -> engine.diskQuota().setLimit(dir, maxBytes)), "Failed to set quota", (used) -> {
+            JSObject result = new JSObject();
+            result.put("usedBytes", used);
+            return result;
+        });
     }
 
     @PluginMethod
     public void getPluginVersion(PluginCall call) {
+        beginMetrics(call);
         JSObject result = new JSObject();
         result.put("version", pluginVersion);
-        call.resolve(result);
+        resolve(call, result);
+    }
+
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        call.resolve(metricsSnapshot());
+    }
+
+    @PluginMethod
+    public void resetMetrics(PluginCall call) {
+        metrics.reset();
+        ReadCache cache = readCache;
+        if (cache != null) {
+            cache.resetStats();
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void configureMetrics(PluginCall call) {
+        Boolean enabled = call.getBoolean("enabled");
+        if (enabled != null) {
+            metrics.setEnabled(enabled);
+        }
+        Integer intervalMs = call.getInt("intervalMs");
+        if (intervalMs != null) {
+            scheduleMetricsEvents(intervalMs);
+        }
+        call.resolve(metricsSnapshot());
+    }
+
+    private synchronized void scheduleMetricsEvents(int intervalMs) {
+        if (metricsEvents != null) {
+            metricsEvents.cancel(false);
+            metricsEvents = null;
+        }
+        if (intervalMs <= 0) {
+            return;
+        }
+        if (metricsScheduler == null) {
+            metricsScheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "CapacitorFile-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        metricsEvents = metricsScheduler.scheduleWithFixedDelay(
+            () -> {
+                if (metrics.isEnabled() && hasListeners("metrics")) {
+                    notifyListeners("metrics", metricsSnapshot());
+                }
+            },
+            intervalMs,
+            intervalMs,
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    private JSObject metricsSnapshot() {
+        JSObject operations = new JSObject();
+        for (Map.Entry<String, FileMetrics.Operation> entry : metrics.operations().entrySet()) {
+            FileMetrics.Operation operation = entry.getValue();
+            LatencyHistogram latency = operation.latency;
+
+            JSObject latencyMs = new JSObject();
+            latencyMs.put("min", latency.minNanos() / 1e6);
+            latencyMs.put("mean", latency.meanNanos() / 1e6);
+            latencyMs.put("p50", latency.percentileNanos(50) / 1e6);
+            latencyMs.put("p90", latency.percentileNanos(90) / 1e6);
+            latencyMs.put("p99", latency.percentileNanos(99) / 1e6);
+            latencyMs.put("max", latency.maxNanos() / 1e6);
+
+            JSObject errors = new JSObject();
+            for (Map.Entry<String, LongAdder> error : operation.errors.entrySet()) {
+                errors.put(error.getKey(), error.getValue().sum());
+            }
+
+            JSObject stats = new JSObject();
+            stats.put("count", operation.calls.sum());
+            stats.put("errorCount", operation.errorCount());
+            stats.put("errors", errors);
+            stats.put("inFlight", operation.inFlight.get());
+            stats.put("bytesRead", operation.bytesRead.sum());
+            stats.put("bytesWritten", operation.bytesWritten.sum());
+            stats.put("latencyMs", latencyMs);
+            operations.put(entry.getKey(), stats);
+        }
+
+        JSObject result = new JSObject();
+        result.put("enabled", metrics.isEnabled());
+        result.put("since", metrics.since());
+        result.put("operations", operations);
+        ReadCache cache = readCache;
+        if (cache != null) {
+            ReadCache.Stats stats = cache.stats();
+            JSObject readCacheStats = new JSObject();
+            readCacheStats.put("hits", stats.hits);
+            readCacheStats.put("misses", stats.misses);
+            readCacheStats.put("hitRate", stats.hitRate());
+            readCacheStats.put("evictions", stats.evictions);
+            readCacheStats.put("entries", stats.entries);
+            readCacheStats.put("bytes", stats.bytes);
+            readCacheStats.put("maxBytes", cache.maxBytes());
+            result.put("readCache", readCacheStats);
+        }
+        return result;
     }
 
     @PluginMethod
     public void checkPermissions(PluginCall call) {
+        beginMetrics(call);
         JSObject result = new JSObject();
         result.put("publicStorage", mapPermissionState(getPublicStoragePermissionState()));
-        call.resolve(result);
+        resolve(call, result);
     }
 
     @PluginMethod
     public void requestPermissions(PluginCall call) {
+        beginMetrics(call);
         PermissionState currentState = getPublicStoragePermissionState();
 
         if (PermissionState.GRANTED.equals(currentState)) {
             JSObject result = new JSObject();
             result.put("publicStorage", "granted");
-            call.resolve(result);
+            resolve(call, result);
             return;
         }
 
@@ -925,7 +1731,7 @@ public class CapacitorFilePlugin extends Plugin {
             // Scoped storage - permissions not needed for app directories
             JSObject result = new JSObject();
             result.put("publicStorage", "granted");
-            call.resolve(result);
+            resolve(call, result);
         } else {
             requestPermissionForAlias(PUBLIC_STORAGE_PERMISSION_ALIAS, call, "handlePermissionResult");
         }
@@ -943,7 +1749,7 @@ public class CapacitorFilePlugin extends Plugin {
         if (showSettingsAlert && needsSettings) {
             Activity activity = getActivity();
             if (activity == null) {
-                call.resolve(result);
+                resolve(call, result);
                 return;
             }
 
@@ -952,9 +1758,9 @@ public class CapacitorFilePlugin extends Plugin {
             String openSettingsText = call.getString("openSettingsButtonTitle", "Open Settings");
             String cancelText = call.getString("cancelButtonTitle", activity.getString(android.R.string.cancel));
 
-            showPermissionDialog(title, message, openSettingsText, cancelText, () -> call.resolve(result));
+            showPermissionDialog(title, message, openSettingsText, cancelText, () -> resolve(call, result));
         } else {
-            call.resolve(result);
+            resolve(call, result);
         }
     }
 
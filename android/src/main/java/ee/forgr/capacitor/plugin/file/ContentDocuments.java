@@ -0,0 +1,222 @@
+package ee.forgr.capacitor.plugin.file;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads documents behind {@code content://} URIs (Storage Access Framework picks, MediaStore items, other apps'
+ * providers) the way the engine reads files.
+ *
+ * A document is opened as a file descriptor and read through a {@link java.nio.channels.FileChannel} with
+ * positional reads, so a range never streams the document from the start and copies let the kernel move the bytes.
+ * Providers that hand out pipes instead (no known size) fall back to sequential stream reads. Metadata comes from
+ * the provider's columns, and tree URIs are listed through {@link DocumentsContract}.
+ */
+final class ContentDocuments {
+
+    static final String SCHEME_PREFIX = "content://";
+
+    private static final String[] CHILD_COLUMNS = {
+        DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+        DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+        DocumentsContract.Document.COLUMN_MIME_TYPE,
+        DocumentsContract.Document.COLUMN_SIZE,
+        DocumentsContract.Document.COLUMN_LAST_MODIFIED
+    };
+
+    /** Metadata of one document; {@code size} is -1 and {@code lastModified} 0 when the provider doesn't report them. */
+    static final class Document {
+
+        final Uri uri;
+        final String name;
+        final String mimeType;
+        final boolean directory;
+        final long size;
+        final long lastModified;
+
+        Document(Uri uri, String name, String mimeType, long size, long lastModified) {
+            this.uri = uri;
+            this.name = name;
+            this.mimeType = mimeType;
+            this.directory = DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType);
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final Context context;
+    private final ContentResolver resolver;
+
+    ContentDocuments(Context context) {
+        this.context = context;
+        this.resolver = context.getContentResolver();
+    }
+
+    static boolean isContentUri(String path) {
+        return path != null && path.startsWith(SCHEME_PREFIX);
+    }
+
+    /**
+     * Reads {@code length} bytes from {@code offset}, or to the end of the document when length is null.
+     */
+    byte[] read(Uri uri, long offset, Integer length) throws IOException {
+        ParcelFileDescriptor descriptor = open(uri);
+        long size = descriptor.getStatSize();
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+            if (size < 0) {
+                return FileOperations.readRange(in, Math.max(0, offset), length);
+            }
+            return FileOperations.readRange(in.getChannel(), size, offset, length);
+        }
+    }
+
+    /**
+     * Reads a range as Base64 behind {@code prefix}, like {@link FileOperations#readBase64(File, long, Integer, String)}.
+     */
+    String readBase64(Uri uri, long offset, Integer length, String prefix) throws IOException {
+        ParcelFileDescriptor descriptor = open(uri);
+        long size = descriptor.getStatSize();
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+            if (size < 0) {
+                byte[] bytes = FileOperations.readRange(in, Math.max(0, offset), length);
+                return Base64Codec.encodeToString(prefix, bytes, bytes.length);
+            }
+            return FileOperations.readBase64(in.getChannel(), size, offset, length, prefix);
+        }
+    }
+
+    /**
+     * Copies the document to {@code dest}, replacing it, and returns the number of bytes copied. The copy is admitted
+     * against the disk quota of {@code engine} first; a document of unknown size is only counted once copied.
+     */
+    long copyTo(Uri uri, File dest, FileEngine engine) throws IOException {
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        ParcelFileDescriptor descriptor = open(uri);
+        long size = descriptor.getStatSize();
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+            long replaced = dest.isFile() ? dest.length() : 0;
+            return engine.admitted(dest, size < 0 ? 0 : size - replaced, () -> {
+                if (size < 0) {
+                    return FileOperations.copyToFile(in, dest);
+                }
+                return FileOperations.copyToFile(in.getChannel(), size, dest);
+            });
+        }
+    }
+
+    /** The provider's MIME type for the document, without querying its other columns. */
+    String mimeType(Uri uri) {
+        String mimeType = resolver.getType(uri);
+        return mimeType != null ? mimeType : "application/octet-stream";
+    }
+
+    /**
+     * Returns the document's metadata.
+     *
+     * @throws FileEngineException NOT_FOUND_ERR when the provider has no such document
+     */
+    Document stat(Uri uri) throws IOException {
+        Document document = find(uri);
+        if (document == null) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "File not found");
+        }
+        return document;
+    }
+
+    /** Returns the document's metadata, or null when the provider has no such document. */
+    Document find(Uri uri) {
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            String mimeType = string(cursor, DocumentsContract.Document.COLUMN_MIME_TYPE);
+            if (mimeType == null) {
+                mimeType = resolver.getType(uri);
+            }
+            String name = string(cursor, OpenableColumns.DISPLAY_NAME);
+            return new Document(
+                uri,
+                name != null ? name : uri.getLastPathSegment(),
+                mimeType,
+                number(cursor, OpenableColumns.SIZE, -1),
+                number(cursor, DocumentsContract.Document.COLUMN_LAST_MODIFIED, 0)
+            );
+        } catch (IllegalArgumentException e) {
+            // Providers throw for URIs they don't know
+            return null;
+        }
+    }
+
+    /**
+     * Lists the children of a directory in a tree granted through {@code ACTION_OPEN_DOCUMENT_TREE}, either the
+     * tree URI itself or a directory document inside it.
+     *
+     * @throws FileEngineException TYPE_MISMATCH_ERR when {@code uri} is not part of a document tree
+     */
+    List<Document> list(Uri uri) throws IOException {
+        if (!DocumentsContract.isTreeUri(uri)) {
+            throw new FileEngineException(FileEngineException.TYPE_MISMATCH_ERR, "Not a document tree URI");
+        }
+        String parentId = DocumentsContract.isDocumentUri(context, uri)
+            ? DocumentsContract.getDocumentId(uri)
+            : DocumentsContract.getTreeDocumentId(uri);
+        Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(uri, parentId);
+
+        List<Document> documents = new ArrayList<>();
+        try (Cursor cursor = resolver.query(children, CHILD_COLUMNS, null, null, null)) {
+            if (cursor == null) {
+                throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Directory not found");
+            }
+            while (cursor.moveToNext()) {
+                String id = cursor.getString(0);
+                documents.add(
+                    new Document(
+                        DocumentsContract.buildDocumentUriUsingTree(uri, id),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.isNull(3) ? -1 : cursor.getLong(3),
+                        cursor.isNull(4) ? 0 : cursor.getLong(4)
+                    )
+                );
+            }
+        }
+        return documents;
+    }
+
+    private ParcelFileDescriptor open(Uri uri) throws IOException {
+        ParcelFileDescriptor descriptor;
+        try {
+            descriptor = resolver.openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException e) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "File not found", e);
+        }
+        if (descriptor == null) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "File not found");
+        }
+        return descriptor;
+    }
+
+    private static String string(Cursor cursor, String column) {
+        int index = cursor.getColumnIndex(column);
+        return index < 0 || cursor.isNull(index) ? null : cursor.getString(index);
+    }
+
+    private static long number(Cursor cursor, String column, long fallback) {
+        int index = cursor.getColumnIndex(column);
+        return index < 0 || cursor.isNull(index) ? fallback : cursor.getLong(index);
+    }
+}
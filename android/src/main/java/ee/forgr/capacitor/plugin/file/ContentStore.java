@@ -0,0 +1,254 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * Opt-in deduplicating storage: whole-file writes are stored once per distinct content, and user-visible paths
+ * become hard links to the stored object.
+ *
+ * Objects live in {@code objects/<first two hex digits>/<sha-256>}. A full write of content already in the store
+ * links the target to the existing object instead of writing the bytes again, and copies are a single hard link.
+ * Since every link shares one inode, callers must {@link #unshare} a file before modifying it in place (append,
+ * positional write, truncate). Objects no path links to any more are removed by {@link #collectGarbage}.
+ *
+ * Links also share the mtime, which is never touched for one path's sake: a new path linked to an earlier object
+ * reports when that content was first stored, and rewriting an existing path with stored content gives it a private
+ * copy instead, so its mtime still changes. {@link DiskQuota} counts every link at its full length.
+ *
+ * Only paths under {@code scope}, which must be on the same file system as the objects, are deduplicated. A store
+ * created with {@code deduplicate} off links nothing new but still unshares the links made earlier, so turning the
+ * option off never lets a write show through other paths.
+ */
+final class ContentStore {
+
+    /** Smaller writes replace the file directly: hashing and linking cost more than they save. */
+    static final int MIN_BYTES = 16 * 1024;
+
+    /** Temp files older than this belong to interrupted writes rather than running ones. */
+    private static final long STALE_TEMP_MS = 60 * 60 * 1000;
+
+    private final File objects;
+    private final NativeIo io;
+    private final String scopePath;
+    private final boolean deduplicate;
+
+    ContentStore(File scope, File objects, NativeIo io, boolean deduplicate) throws IOException {
+        this.objects = objects;
+        this.io = io;
+        this.scopePath = scope.getCanonicalPath() + File.separator;
+        this.deduplicate = deduplicate;
+    }
+
+    boolean deduplicates() {
+        return deduplicate;
+    }
+
+    /** Whether {@code file} lives under the store's scope, so it can be linked to objects. */
+    boolean covers(File file) throws IOException {
+        return file.getCanonicalPath().startsWith(scopePath);
+    }
+
+    /**
+     * Replaces {@code file} with {@code data}, or with the decoding of {@code base64} when data is null, and returns
+     * the number of bytes written. The previous file is replaced by a rename, never truncated in place.
+     *
+     * @throws IllegalArgumentException when {@code base64} is not valid Base64; the target is left untouched
+     */
+    long write(File file, byte[] data, String base64) throws IOException {
+        if (!objects.isDirectory() && !objects.mkdirs()) {
+            throw new IOException("Failed to create content store");
+        }
+        File temp = new File(objects, "tmp-" + UUID.randomUUID());
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                FileChannel channel = out.getChannel();
+                if (data != null) {
+                    digest.update(data);
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    size = data.length;
+                } else {
+                    size = Base64Codec.decodeTo(base64, channel, digest);
+                }
+            }
+
+            if (size < MIN_BYTES) {
+                replace(temp, file);
+                return size;
+            }
+            File object = objectFor(digest.digest());
+            // Held while an object may have a single link, so garbage collection can't delete it under us
+            synchronized (this) {
+                if (object.isFile() && object.length() == size) {
+                    if (file.exists()) {
+                        // A rewrite must change the path's mtime, and the object's belongs to every link
+                        replace(temp, file);
+                        return size;
+                    }
+                } else {
+                    File parent = object.getParentFile();
+                    if (!parent.isDirectory() && !parent.mkdirs()) {
+                        throw new IOException("Failed to create content store");
+                    }
+                    replace(temp, object);
+                }
+                link(object, file);
+            }
+            return size;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Copies {@code source} to {@code dest} by hard-linking it, replacing any existing file, and returns the source
+     * size. Falls back to copying the bytes into a new file when the two can't be linked, e.g. across file systems.
+     */
+    long copyFile(File source, File dest) throws IOException {
+        if (deduplicate && covers(source) && covers(dest)) {
+            try {
+                link(source, dest);
+                return source.length();
+            } catch (IOException e) {
+                // Copy instead
+            }
+        }
+        // Writes a new inode and renames it over the old destination, which may be linked elsewhere
+        return FileOperations.copyFile(source, dest);
+    }
+
+    /**
+     * Copies a directory tree like {@link FileOperations#copyDirectory}, linking each file when possible.
+     */
+    long copyDirectory(File source, File dest) throws IOException {
+        Cancellation.check();
+        if (!dest.exists()) {
+            dest.mkdirs();
+        }
+        long copied = 0;
+        File[] files = source.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Cancellation.check();
+                File destFile = new File(dest, file.getName());
+                if (file.isDirectory()) {
+                    copied += copyDirectory(file, destFile);
+                } else {
+                    copied += copyFile(file, destFile);
+                }
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Gives {@code file} its own inode when it shares one with other paths, so a modification doesn't show through
+     * every link. The contents are copied when {@code keepContents} is set, otherwise the link is simply removed.
+     */
+    void unshare(File file, boolean keepContents) throws IOException {
+        if (!file.isFile() || io.linkCount(file) <= 1) {
+            return;
+        }
+        if (!keepContents) {
+            if (!file.delete()) {
+                throw new IOException("Failed to replace " + file.getName());
+            }
+            return;
+        }
+        File temp = siblingTemp(file);
+        try {
+            FileOperations.copyFile(file, temp);
+            temp.setLastModified(file.lastModified());
+            replace(temp, file);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes objects that no path links to any more, and temp files left by interrupted writes. Returns the number
+     * of bytes freed.
+     */
+    long collectGarbage() throws IOException {
+        long freed = 0;
+        File[] buckets = objects.listFiles();
+        if (buckets == null) {
+            return 0;
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MS;
+        for (File bucket : buckets) {
+            if (!bucket.isDirectory()) {
+                long size = bucket.length();
+                if (bucket.getName().startsWith("tmp-") && bucket.lastModified() < staleBefore && bucket.delete()) {
+                    freed += size;
+                }
+                continue;
+            }
+            File[] entries = bucket.listFiles();
+            if (entries == null) {
+                continue;
+            }
+            for (File object : entries) {
+                long size = object.length();
+                synchronized (this) {
+                    if (io.linkCount(object) <= 1 && object.delete()) {
+                        freed += size;
+                    }
+                }
+            }
+            synchronized (this) {
+                // Only succeeds once the bucket is empty
+                bucket.delete();
+            }
+        }
+        return freed;
+    }
+
+    /** Points {@code path} at {@code existing}'s inode, atomically replacing whatever was there. */
+    private void link(File existing, File path) throws IOException {
+        File temp = siblingTemp(path);
+        try {
+            io.link(existing, temp);
+            replace(temp, path);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static void replace(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Failed to replace " + to.getName());
+        }
+    }
+
+    private static File siblingTemp(File file) {
+        return new File(file.getParentFile(), "." + file.getName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    private File objectFor(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return new File(new File(objects, hex.substring(0, 2)), hex.toString());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
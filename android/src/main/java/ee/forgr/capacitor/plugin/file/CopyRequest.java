@@ -0,0 +1,18 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+
+/**
+ * Source and destination of a {@link FileEngine#copy(CopyRequest)} or {@link FileEngine#move(CopyRequest)}.
+ * Missing parent directories of the destination are created.
+ */
+public final class CopyRequest {
+
+    final File source;
+    final File destination;
+
+    public CopyRequest(File source, File destination) {
+        this.source = source;
+        this.destination = destination;
+    }
+}
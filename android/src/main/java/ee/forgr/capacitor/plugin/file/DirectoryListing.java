@@ -0,0 +1,23 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+
+/**
+ * Children of a directory as parallel arrays, so listing large directories does not allocate an object per entry.
+ */
+public final class DirectoryListing {
+
+    public final File directory;
+    public final String[] names;
+    public final boolean[] directories;
+
+    public DirectoryListing(File directory, String[] names, boolean[] directories) {
+        this.directory = directory;
+        this.names = names;
+        this.directories = directories;
+    }
+
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,337 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Admits writes and copies before they start, so running out of space fails fast with QUOTA_EXCEEDED_ERR instead of
+ * halfway through with a bare {@link IOException}.
+ *
+ * Each operation reserves the bytes it expects to add. Free space is a snapshot of the volume, taken at most every
+ * {@link #SNAPSHOT_MS} and lowered by what each operation added, minus what running operations have reserved. An
+ * operation that only fits once those finish waits for them, up to {@code waitMs}; one that doesn't fit the snapshot
+ * at all is rejected at once. Only files on the snapshot's volume are checked against it. Freed space is left to the
+ * next snapshot, since deleting a hard-linked file frees nothing.
+ *
+ * Directory limits count the length of every file under the directory. Usage is measured by one scan when the limit
+ * is set and then kept from what the engine reports: the growth of admitted operations, and the measured sizes of
+ * truncations, deletes and moves. A limit is only rescanned after a change of unknown size (a failed copy or tree
+ * delete), and before rejecting when its last scan overlapped running operations and may have counted them twice.
+ * Scans and free-space queries run outside the lock, so they never hold up other admissions. Files changed outside
+ * the engine are not counted until a rescan, e.g. setting the limit again. Hard links, such as content store copies,
+ * count at their full length under every path and lower the free-space snapshot until the next one, although they
+ * take no extra space: the quota errs on the side of rejecting.
+ */
+final class DiskQuota {
+
+    static final long SNAPSHOT_MS = 2000;
+
+    private static final class Limit {
+
+        final File dir;
+        final String path;
+        final long maxBytes;
+        long used;
+        long reserved;
+        /** Total growth reported since the limit was set, to reconcile scans with changes made while they ran. */
+        long grown;
+        /** Changes of unknown size since the limit was set. */
+        long invalidations;
+        boolean stale = true;
+        boolean approximate;
+
+        Limit(File dir, long maxBytes) {
+            this.dir = dir.getAbsoluteFile();
+            this.path = this.dir.getPath();
+            this.maxBytes = maxBytes;
+        }
+
+        boolean covers(String file) {
+            return isWithin(file, path);
+        }
+
+        boolean fits(long bytes) {
+            return used + reserved + bytes <= maxBytes;
+        }
+
+        void adjust(long delta) {
+            used = Math.max(0, used + delta);
+            grown += delta;
+        }
+    }
+
+    /** Space held by an admitted operation until it ends. */
+    final class Reservation {
+
+        private final long bytes;
+        private final boolean onVolume;
+        private final List<Limit> limits;
+        private boolean released;
+
+        private Reservation(long bytes, boolean onVolume, List<Limit> limits) {
+            this.bytes = bytes;
+            this.onVolume = onVolume;
+            this.limits = limits;
+        }
+
+        /** Ends the operation, which changed the size of its directories by {@code growth} bytes. */
+        void release(long growth) {
+            DiskQuota.this.release(this, growth, false);
+        }
+
+        /** Ends an operation whose growth is unknown, e.g. a copy that failed halfway; its limits are rescanned. */
+        void abandon() {
+            DiskQuota.this.release(this, 0, true);
+        }
+    }
+
+    private final String volume;
+    private final LongSupplier freeSpace;
+    private final long waitMs;
+    private final List<Limit> limits = new ArrayList<>();
+    private long reserved;
+    private long free;
+    private long snapshotAt;
+    private boolean snapshotValid;
+
+    /**
+     * @param volume any directory on the volume {@code freeSpace} reports on
+     * @param freeSpace bytes currently available to the app on that volume, e.g. from {@code StatFs}
+     * @param waitMs how long an operation may wait for running ones to release their space
+     */
+    DiskQuota(File volume, LongSupplier freeSpace, long waitMs) {
+        this.volume = volume.getAbsolutePath();
+        this.freeSpace = freeSpace;
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * Reserves {@code bytes} for an operation on {@code file}, waiting for running operations if needed. The
+     * reservation must be released once the operation ends, whether it succeeded or not.
+     *
+     * @throws FileEngineException QUOTA_EXCEEDED_ERR when a directory limit or the free space can't hold the bytes
+     */
+    Reservation reserve(File file, long bytes) throws IOException {
+        long need = Math.max(0, bytes);
+        String path = file.getAbsolutePath();
+        boolean onVolume = need > 0 && isWithin(path, volume);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        boolean scanned = false;
+        while (true) {
+            List<Limit> scans = new ArrayList<>(0);
+            synchronized (this) {
+                List<Limit> covering = new ArrayList<>(1);
+                for (Limit limit : limits) {
+                    if (!limit.covers(path)) continue;
+                    boolean full = !limit.fits(need);
+                    if (!scanned && (limit.stale || (full && limit.approximate))) {
+                        scans.add(limit);
+                    } else if (full) {
+                        throw new FileEngineException(FileEngineException.QUOTA_EXCEEDED_ERR, "Directory quota exceeded");
+                    }
+                    covering.add(limit);
+                }
+
+                if (scans.isEmpty() && (!onVolume || snapshotFresh())) {
+                    if (!onVolume || need <= free - reserved) {
+                        if (onVolume) {
+                            reserved += need;
+                        }
+                        for (Limit limit : covering) {
+                            limit.reserved += need;
+                        }
+                        return new Reservation(need, onVolume, covering);
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (need > free || reserved == 0 || remaining <= 0) {
+                        throw new FileEngineException(FileEngineException.QUOTA_EXCEEDED_ERR, "Not enough free space");
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for free space");
+                    }
+                    continue;
+                }
+            }
+
+            // Slow work happens unlocked; the loop then checks again against what it published
+            if (!scans.isEmpty()) {
+                for (Limit limit : scans) {
+                    rescan(limit);
+                }
+                scanned = true;
+            } else {
+                takeSnapshot();
+            }
+        }
+    }
+
+    private synchronized void release(Reservation reservation, long growth, boolean unknown) {
+        if (reservation.released) {
+            return;
+        }
+        reservation.released = true;
+        if (reservation.onVolume) {
+            reserved -= reservation.bytes;
+            if (unknown) {
+                snapshotValid = false;
+            } else {
+                free -= Math.max(0, growth);
+            }
+        }
+        for (Limit limit : reservation.limits) {
+            limit.reserved -= reservation.bytes;
+            if (unknown) {
+                markStale(limit);
+            } else {
+                limit.adjust(growth);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Limits the total size of the files under {@code dir} to {@code maxBytes}, replacing any earlier limit on it;
+     * zero or less removes the limit. Scans the directory and returns its current usage.
+     */
+    long setLimit(File dir, long maxBytes) {
+        String path = dir.getAbsolutePath();
+        Limit limit = maxBytes > 0 ? new Limit(dir, maxBytes) : null;
+        synchronized (this) {
+            limits.removeIf((existing) -> existing.path.equals(path));
+            if (limit != null) {
+                limits.add(limit);
+            }
+        }
+        if (limit == null) {
+            return sizeOf(dir);
+        }
+        rescan(limit);
+        synchronized (this) {
+            return limit.used;
+        }
+    }
+
+    /** Whether a limit covers any of {@code files} or lies under one, so changes to them must be measured. */
+    synchronized boolean tracks(File... files) {
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            for (Limit limit : limits) {
+                if (limit.covers(path) || isWithin(limit.path, path)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Counts a change of {@code growth} bytes to {@code file} made outside a reservation, e.g. a delete. */
+    synchronized void changed(File file, long growth) {
+        String path = file.getAbsolutePath();
+        if (growth > 0 && isWithin(path, volume)) {
+            free -= growth;
+        }
+        for (Limit limit : limits) {
+            if (limit.covers(path)) {
+                limit.adjust(growth);
+            } else if (isWithin(limit.path, path)) {
+                markStale(limit);
+            }
+        }
+    }
+
+    /** Counts a rename of {@code bytes} from {@code from} to {@code to}, which replaced {@code replaced} bytes there. */
+    synchronized void moved(File from, File to, long bytes, long replaced) {
+        String source = from.getAbsolutePath();
+        String target = to.getAbsolutePath();
+        for (Limit limit : limits) {
+            if (isWithin(limit.path, source) || isWithin(limit.path, target)) {
+                // The limited directory itself moved or was replaced
+                markStale(limit);
+                continue;
+            }
+            long delta = (limit.covers(target) ? bytes - replaced : 0) - (limit.covers(source) ? bytes : 0);
+            limit.adjust(delta);
+        }
+    }
+
+    /**
+     * Marks the limits that may contain {@code file}, or that it may contain, for a rescan, after a change the
+     * engine couldn't measure.
+     */
+    synchronized void invalidate(File file) {
+        String path = file.getAbsolutePath();
+        for (Limit limit : limits) {
+            if (limit.covers(path) || isWithin(limit.path, path)) {
+                markStale(limit);
+            }
+        }
+    }
+
+    private static void markStale(Limit limit) {
+        limit.stale = true;
+        limit.invalidations++;
+    }
+
+    /**
+     * Measures {@code limit} without holding the lock. Growth reported while the scan ran is added on top, and a scan
+     * that overlapped running operations may have counted part of their growth already, so it is marked approximate.
+     */
+    private void rescan(Limit limit) {
+        long grown;
+        long invalidations;
+        boolean busy;
+        synchronized (this) {
+            grown = limit.grown;
+            invalidations = limit.invalidations;
+            busy = limit.reserved > 0;
+        }
+        long size = sizeOf(limit.dir);
+        synchronized (this) {
+            limit.used = Math.max(0, size + limit.grown - grown);
+            limit.approximate = busy || limit.reserved > 0 || limit.grown != grown;
+            if (limit.invalidations == invalidations) {
+                limit.stale = false;
+            }
+        }
+    }
+
+    private boolean snapshotFresh() {
+        return snapshotValid && System.nanoTime() - snapshotAt <= TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_MS);
+    }
+
+    /** Queries the volume without holding the lock, then publishes the result. */
+    private void takeSnapshot() {
+        long available = freeSpace.getAsLong();
+        synchronized (this) {
+            free = available;
+            snapshotAt = System.nanoTime();
+            snapshotValid = true;
+        }
+    }
+
+    /** Total length of the files under {@code file}, or of the file itself. */
+    static long sizeOf(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.isFile() ? file.length() : 0;
+        }
+        long size = 0;
+        for (File child : children) {
+            size += sizeOf(child);
+        }
+        return size;
+    }
+
+    /** Whether {@code path} is {@code dir} or a path under it. */
+    static boolean isWithin(String path, String dir) {
+        return path.startsWith(dir) && (path.length() == dir.length() || path.charAt(dir.length()) == File.separatorChar);
+    }
+}
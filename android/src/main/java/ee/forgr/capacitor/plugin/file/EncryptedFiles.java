@@ -0,0 +1,355 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.UUID;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypted-at-rest files: AES-GCM over fixed-size chunks, each authenticated on its own, so any range can be read
+ * or rewritten by decrypting only the chunks it touches.
+ *
+ * Layout: a 16-byte header ({@code CFE\1}, the plaintext chunk size, 8 random bytes identifying the file) followed
+ * by one record per chunk: a random 12-byte IV, the ciphertext and the 16-byte tag. Every full chunk has the same
+ * record size, so chunk {@code i} sits at a fixed offset and the plaintext size follows from the file length. Each
+ * chunk authenticates the header, its index and whether it is the last one, so chunks can't be reordered, moved
+ * between files or cut off the end without failing with SECURITY_ERR. Rewritten chunks get a fresh IV, never reusing
+ * one with the same key.
+ */
+final class EncryptedFiles {
+
+    /** Plaintext bytes per chunk in new files; existing files keep the chunk size in their header. */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    static final int HEADER_SIZE = 16;
+    static final int IV_SIZE = 12;
+    static final int TAG_SIZE = 16;
+
+    /** Bytes a record adds to its chunk. */
+    static final int OVERHEAD = IV_SIZE + TAG_SIZE;
+
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final byte[] MAGIC = { 'C', 'F', 'E', 1 };
+    private static final byte[] EMPTY = new byte[0];
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Cipher and buffers reused by every call on the same thread (the engine I/O threads in practice). */
+    private static final class Buffers {
+
+        final Cipher cipher;
+        final byte[] aad = new byte[HEADER_SIZE + 9];
+        byte[] plain = EMPTY;
+        byte[] record = EMPTY;
+
+        Buffers() {
+            try {
+                cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Buffers sized(int chunkSize) {
+            if (plain.length != chunkSize) {
+                plain = new byte[chunkSize];
+                record = new byte[chunkSize + OVERHEAD];
+            }
+            return this;
+        }
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    /** An opened file: its header and geometry. */
+    private static final class Layout {
+
+        final byte[] header;
+        final int chunkSize;
+        final long size;
+
+        Layout(byte[] header, int chunkSize, long size) {
+            this.header = header;
+            this.chunkSize = chunkSize;
+            this.size = size;
+        }
+
+        /** Number of chunks; an empty file still has one, so that cutting every record off is detected. */
+        long chunks() {
+            return size == 0 ? (header != null ? 1 : 0) : (size + chunkSize - 1) / chunkSize;
+        }
+
+        int plainLength(long index) {
+            return (int) Math.max(0, Math.min(chunkSize, size - index * chunkSize));
+        }
+
+        long recordOffset(long index) {
+            return HEADER_SIZE + index * (chunkSize + (long) OVERHEAD);
+        }
+    }
+
+    private EncryptedFiles() {}
+
+    /**
+     * Decrypts {@code length} bytes from {@code offset}, or to the end of the file when length is null. Returns an
+     * empty array when the offset is past the end.
+     *
+     * @throws FileEngineException TYPE_MISMATCH_ERR when the file isn't encrypted, SECURITY_ERR when a chunk fails
+     *     authentication
+     */
+    static byte[] read(File file, SecretKey key, long offset, Integer length) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            Layout layout = open(channel);
+            long start = Math.max(0, offset);
+            if (start >= layout.size) {
+                return EMPTY;
+            }
+            long available = layout.size - start;
+            int count = (int) (length != null ? Math.min(Math.max(0, length), available) : available);
+
+            byte[] output = new byte[count];
+            Buffers buffers = BUFFERS.get().sized(layout.chunkSize);
+            long chunks = layout.chunks();
+            long index = start / layout.chunkSize;
+            int written = 0;
+            while (written < count) {
+                Cancellation.check();
+                int plainLength = layout.plainLength(index);
+                decrypt(channel, key, layout, index, index == chunks - 1, plainLength, buffers);
+                int from = (int) (start + written - index * layout.chunkSize);
+                int n = Math.min(plainLength - from, count - written);
+                System.arraycopy(buffers.plain, from, output, written, n);
+                written += n;
+                index++;
+            }
+            return output;
+        }
+    }
+
+    /**
+     * Writes {@code data} at plaintext {@code position}, or appends it when position is negative, creating the file
+     * when it is empty. Only the chunks the write touches are re-encrypted; writing past the end fills the gap with
+     * zeros.
+     */
+    static void write(File file, SecretKey key, long position, byte[] data) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            Layout layout;
+            if (channel.size() == 0) {
+                layout = new Layout(null, CHUNK_SIZE, 0);
+            } else {
+                layout = open(channel);
+            }
+            byte[] header = layout.header != null ? layout.header : newHeader(CHUNK_SIZE);
+            update(channel, key, layout, header, position < 0 ? layout.size : position, data);
+            if (layout.header == null) {
+                writeFully(channel, ByteBuffer.wrap(header), 0);
+            }
+        }
+    }
+
+    /**
+     * Replaces {@code file} with an encryption of {@code data}. The new file is written next to it and renamed over
+     * it, so a failed write leaves the old contents in place.
+     */
+    static void replace(File file, SecretKey key, byte[] data) throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), "." + file.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            write(temp, key, 0, data);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to replace " + file.getName());
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Cuts the plaintext to {@code size} bytes, re-sealing the chunk that becomes the last one, or extends it with
+     * zeros like a write past the end.
+     */
+    static void truncate(File file, SecretKey key, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            Layout layout = open(channel);
+            long target = Math.max(0, size);
+            if (target >= layout.size) {
+                update(channel, key, layout, layout.header, target, EMPTY);
+                return;
+            }
+            Layout cut = new Layout(layout.header, layout.chunkSize, target);
+            long index = cut.chunks() - 1;
+            int length = cut.plainLength(index);
+            Buffers buffers = BUFFERS.get().sized(layout.chunkSize);
+            decrypt(channel, key, layout, index, index == layout.chunks() - 1, layout.plainLength(index), buffers);
+            encrypt(channel, key, cut, index, true, length, buffers);
+            channel.truncate(cut.recordOffset(index) + length + OVERHEAD);
+        }
+    }
+
+    private static void update(
+        FileChannel channel,
+        SecretKey key,
+        Layout layout,
+        byte[] header,
+        long start,
+        byte[] data
+    ) throws IOException {
+        int chunkSize = layout.chunkSize;
+        long chunks = layout.chunks();
+        long stop = start + data.length;
+        Layout updated = new Layout(header, chunkSize, Math.max(layout.size, stop));
+        long last = updated.chunks() - 1;
+        long first = Math.min(start, layout.size) / chunkSize;
+        if (chunks > 0 && last >= chunks) {
+            // The old last chunk is no longer last: it must be re-sealed with the flag cleared
+            first = Math.min(first, chunks - 1);
+        }
+        // Chunks past the write keep their records; when the file grows, the write reaches the new last chunk
+        long end = Math.min(last, Math.max(first, (stop - 1) / chunkSize));
+
+        Buffers buffers = BUFFERS.get().sized(chunkSize);
+        for (long index = first; index <= end; index++) {
+            long chunkStart = index * chunkSize;
+            int oldLength = index < chunks ? layout.plainLength(index) : 0;
+            int newLength = updated.plainLength(index);
+            boolean overwritten = start <= chunkStart && stop >= chunkStart + oldLength;
+            if (oldLength > 0 && !overwritten) {
+                decrypt(channel, key, layout, index, index == chunks - 1, oldLength, buffers);
+            }
+            Arrays.fill(buffers.plain, oldLength, newLength, (byte) 0);
+            long from = Math.max(start, chunkStart);
+            long to = Math.min(stop, chunkStart + newLength);
+            if (from < to) {
+                System.arraycopy(data, (int) (from - start), buffers.plain, (int) (from - chunkStart), (int) (to - from));
+            }
+            encrypt(channel, key, updated, index, index == last, newLength, buffers);
+        }
+    }
+
+    private static Layout open(FileChannel channel) throws IOException {
+        long length = channel.size();
+        byte[] header = new byte[HEADER_SIZE];
+        if (length < HEADER_SIZE) {
+            throw notEncrypted();
+        }
+        FileOperations.readFully(channel, ByteBuffer.wrap(header), 0);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                throw notEncrypted();
+            }
+        }
+        int chunkSize = ByteBuffer.wrap(header, MAGIC.length, 4).getInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw notEncrypted();
+        }
+
+        long body = length - HEADER_SIZE;
+        long recordSize = chunkSize + (long) OVERHEAD;
+        long records = (body + recordSize - 1) / recordSize;
+        long lastLength = body - (records - 1) * recordSize - OVERHEAD;
+        if (records == 0 || lastLength < 0 || (lastLength == 0 && records > 1)) {
+            throw corrupt();
+        }
+        return new Layout(header, chunkSize, (records - 1) * chunkSize + lastLength);
+    }
+
+    private static byte[] newHeader(int chunkSize) {
+        byte[] header = new byte[HEADER_SIZE];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        ByteBuffer.wrap(header, MAGIC.length, 4).putInt(chunkSize);
+        byte[] id = new byte[HEADER_SIZE - MAGIC.length - 4];
+        RANDOM.nextBytes(id);
+        System.arraycopy(id, 0, header, MAGIC.length + 4, id.length);
+        return header;
+    }
+
+    /** Decrypts chunk {@code index} into {@code buffers.plain}. */
+    private static void decrypt(
+        FileChannel channel,
+        SecretKey key,
+        Layout layout,
+        long index,
+        boolean last,
+        int plainLength,
+        Buffers buffers
+    ) throws IOException {
+        byte[] record = buffers.record;
+        try {
+            FileOperations.readFully(channel, ByteBuffer.wrap(record, 0, plainLength + OVERHEAD), layout.recordOffset(index));
+        } catch (EOFException e) {
+            throw corrupt();
+        }
+        try {
+            Cipher cipher = buffers.cipher;
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, record, 0, IV_SIZE));
+            cipher.updateAAD(aad(buffers.aad, layout.header, index, last));
+            cipher.doFinal(record, IV_SIZE, plainLength + TAG_SIZE, buffers.plain, 0);
+        } catch (AEADBadTagException e) {
+            throw new FileEngineException(FileEngineException.SECURITY_ERR, "Encrypted file failed authentication", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to decrypt file", e);
+        }
+    }
+
+    /** Encrypts the first {@code plainLength} bytes of {@code buffers.plain} as chunk {@code index}. */
+    private static void encrypt(
+        FileChannel channel,
+        SecretKey key,
+        Layout layout,
+        long index,
+        boolean last,
+        int plainLength,
+        Buffers buffers
+    ) throws IOException {
+        byte[] record = buffers.record;
+        byte[] iv = new byte[IV_SIZE];
+        RANDOM.nextBytes(iv);
+        System.arraycopy(iv, 0, record, 0, IV_SIZE);
+        try {
+            Cipher cipher = buffers.cipher;
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, iv));
+            cipher.updateAAD(aad(buffers.aad, layout.header, index, last));
+            cipher.doFinal(buffers.plain, 0, plainLength, record, IV_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt file", e);
+        }
+        writeFully(channel, ByteBuffer.wrap(record, 0, plainLength + OVERHEAD), layout.recordOffset(index));
+    }
+
+    private static byte[] aad(byte[] aad, byte[] header, long index, boolean last) {
+        System.arraycopy(header, 0, aad, 0, HEADER_SIZE);
+        ByteBuffer.wrap(aad, HEADER_SIZE, 9).putLong(index).put((byte) (last ? 1 : 0));
+        return aad;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static FileEngineException notEncrypted() {
+        return new FileEngineException(FileEngineException.TYPE_MISMATCH_ERR, "File is not encrypted");
+    }
+
+    private static FileEngineException corrupt() {
+        return new FileEngineException(FileEngineException.SECURITY_ERR, "Encrypted file is truncated");
+    }
+}
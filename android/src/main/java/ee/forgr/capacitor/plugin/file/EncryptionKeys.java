@@ -0,0 +1,13 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.IOException;
+import javax.crypto.SecretKey;
+
+/**
+ * Source of the key that encrypts files at rest, behind an interface so encryption runs on a plain JVM in tests.
+ * {@link AndroidEncryptionKeys} keeps it wrapped by an Android Keystore key.
+ */
+interface EncryptionKeys {
+    /** The AES key for {@link EncryptedFiles}, created on first use. */
+    SecretKey dataKey() throws IOException;
+}
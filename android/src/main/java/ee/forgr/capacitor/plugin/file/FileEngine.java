@@ -0,0 +1,746 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKey;
+
+/**
+ * File system operations behind the CapacitorFile plugin, free of Capacitor and Android types.
+ *
+ * Every operation exists in a blocking form, for callers that already run in the background
+ * (e.g. WorkManager workers), and an {@code Async} form that runs on the engine executor and
+ * completes a {@link CompletableFuture}. Failures are {@link FileEngineException}s carrying the
+ * FileError code reported by the plugin, or plain {@link IOException}s.
+ *
+ * Reads run in parallel on the executor. Mutations (writes, deletes, renames, copies...) run one at a time in the
+ * order they were submitted, so calls that aren't awaited from JS still apply in call order; a read can overtake a
+ * mutation submitted before it.
+ *
+ * <pre>
+ * FileEngine engine = FileEngine.shared();
+ * File file = BaseDirectories.resolve(context, "offline/map.bin", "DATA");
+ * engine.readAsync(new ReadRequest(file).offset(4096).length(512)).thenAccept(bytes -&gt; ...);
+ * </pre>
+ */
+public final class FileEngine {
+
+    interface IoTask<T> {
+        T run() throws IOException;
+    }
+
+    private static volatile FileEngine shared;
+
+    /** Runs tasks one at a time, in submission order, on the threads of another executor. */
+    private static final class SerialExecutor implements Executor {
+
+        private final Executor executor;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean draining;
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                tasks.add(task);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            executor.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                task.run();
+            }
+        }
+    }
+
+    private final Executor executor;
+    private final Executor mutations;
+    private final PageCacheWarmer warmer;
+    private volatile ContentStore contentStore;
+    private volatile NativeIo nativeIo;
+    private volatile EncryptionKeys encryptionKeys;
+    private volatile DiskQuota diskQuota;
+
+    public FileEngine(Executor executor) {
+        this.executor = executor;
+        this.mutations = new SerialExecutor(executor);
+        this.warmer = new PageCacheWarmer(newWarmerExecutor());
+    }
+
+    /**
+     * Engine shared by the plugin and native callers, backed by a small pool of daemon I/O threads.
+     */
+    public static FileEngine shared() {
+        FileEngine engine = shared;
+        if (engine == null) {
+            synchronized (FileEngine.class) {
+                engine = shared;
+                if (engine == null) {
+                    engine = new FileEngine(newIoExecutor());
+                    shared = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    private static ExecutorService newIoExecutor() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, (runnable) -> {
+            Thread thread = new Thread(runnable, "CapacitorFile-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** One low-priority thread, so background warming never competes with the I/O pool. */
+    private static ExecutorService newWarmerExecutor() {
+        return Executors.newSingleThreadExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "CapacitorFile-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Routes writes and copies through a content store, or back to plain files when null.
+     */
+    void setContentStore(ContentStore store) {
+        contentStore = store;
+    }
+
+    ContentStore contentStore() {
+        return contentStore;
+    }
+
+    /**
+     * System calls for operations {@code java.io} can't express; without them preallocation only extends files.
+     */
+    void setNativeIo(NativeIo io) {
+        nativeIo = io;
+    }
+
+    NativeIo nativeIo() {
+        return nativeIo;
+    }
+
+    /**
+     * Key source for encrypted reads and writes, which fail with SECURITY_ERR without one.
+     */
+    void setEncryptionKeys(EncryptionKeys keys) {
+        encryptionKeys = keys;
+    }
+
+    /**
+     * Admission control for writes and copies, which otherwise start without checking for space.
+     */
+    void setDiskQuota(DiskQuota quota) {
+        diskQuota = quota;
+    }
+
+    DiskQuota diskQuota() {
+        return diskQuota;
+    }
+
+    /** Tells the disk quota that {@code file} changed in a way it can't measure, e.g. a tree delete failed halfway. */
+    void invalidateQuota(File file) {
+        DiskQuota quota = diskQuota;
+        if (quota != null) {
+            quota.invalidate(file);
+        }
+    }
+
+    /**
+     * Runs {@code task}, which resizes or replaces {@code file}, after reserving {@code growth} bytes for it against
+     * the disk quota like {@link #write} does. What the task changed is measured from the file's length afterwards,
+     * whether it succeeded or not, and running out of space fails with QUOTA_EXCEEDED_ERR.
+     */
+    <T> T admitted(File file, long growth, IoTask<T> task) throws IOException {
+        long before = file.isFile() ? file.length() : 0;
+        DiskQuota quota = diskQuota;
+        DiskQuota.Reservation reservation = quota != null ? quota.reserve(file, growth) : null;
+        try {
+            return task.run();
+        } catch (IOException e) {
+            throw outOfSpace(e);
+        } finally {
+            if (reservation != null) {
+                reservation.release((file.isFile() ? file.length() : 0) - before);
+            }
+        }
+    }
+
+    /** Tells the disk quota that {@code file} grew, or shrank, by {@code growth} bytes outside a reservation. */
+    void quotaChanged(File file, long growth) {
+        DiskQuota quota = diskQuota;
+        if (quota != null && growth != 0) {
+            quota.changed(file, growth);
+        }
+    }
+
+    /** Tells the disk quota that {@code bytes} were renamed from {@code from} over {@code replaced} bytes at {@code to}. */
+    void quotaMoved(File from, File to, long bytes, long replaced) {
+        DiskQuota quota = diskQuota;
+        if (quota != null) {
+            quota.moved(from, to, bytes, replaced);
+        }
+    }
+
+    /**
+     * Size of {@code file} when a change to it or to {@code other} counts against a directory limit, else 0, so
+     * trees are only walked when a limit needs them.
+     */
+    long quotaSize(File file, File other) {
+        DiskQuota quota = diskQuota;
+        return quota != null && quota.tracks(file, other) ? DiskQuota.sizeOf(file) : 0;
+    }
+
+    /**
+     * Runs {@code task} like {@link #submit(IoTask)}, stopping with ABORT_ERR at its next check once
+     * {@code cancellation} is cancelled or times out.
+     */
+    <T> CompletableFuture<T> submit(Cancellation cancellation, IoTask<T> task) {
+        return submit(() -> cancellation.run(task));
+    }
+
+    <T> CompletableFuture<T> submit(IoTask<T> task) {
+        return submit(executor, task);
+    }
+
+    /** Like {@link #submit(Cancellation, IoTask)}, for a task that modifies files. */
+    <T> CompletableFuture<T> submitMutation(Cancellation cancellation, IoTask<T> task) {
+        return submitMutation(() -> cancellation.run(task));
+    }
+
+    /** Runs {@code task}, which modifies files, after every mutation submitted before it. */
+    <T> CompletableFuture<T> submitMutation(IoTask<T> task) {
+        return submit(mutations, task);
+    }
+
+    private static <T> CompletableFuture<T> submit(Executor executor, IoTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(task.run());
+            } catch (Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    // Reads and writes
+
+    public byte[] read(ReadRequest request) throws IOException {
+        requireExists(request.file, "File not found");
+        if (request.encrypted) {
+            return EncryptedFiles.read(request.file, encryptionKey(), request.offset, request.length);
+        }
+        byte[] bytes = FileOperations.readRange(request.file, request.offset, request.length);
+        warmer.onRead(request.file, request.offset, bytes.length);
+        return bytes;
+    }
+
+    public CompletableFuture<byte[]> readAsync(ReadRequest request) {
+        return submit(() -> read(request));
+    }
+
+    /**
+     * Reads many byte ranges of one file in a single pass and returns them in the order given. Nearby and
+     * overlapping ranges are coalesced into one positional read; ranges past the end of the file come back empty.
+     */
+    public byte[][] readRanges(File file, long[] offsets, int[] lengths) throws IOException {
+        if (offsets.length != lengths.length) {
+            throw new IllegalArgumentException("Every range needs an offset and a length");
+        }
+        requireExists(file, "File not found");
+        return FileOperations.readRanges(file, offsets, lengths);
+    }
+
+    public CompletableFuture<byte[][]> readRangesAsync(File file, long[] offsets, int[] lengths) {
+        return submit(() -> readRanges(file, offsets, lengths));
+    }
+
+    /**
+     * Reads the requested range as Base64, encoded chunk by chunk into the result.
+     */
+    public String readBase64(ReadRequest request) throws IOException {
+        requireExists(request.file, "File not found");
+        if (request.encrypted) {
+            return Base64Codec.encodeToString(EncryptedFiles.read(request.file, encryptionKey(), request.offset, request.length));
+        }
+        String data = FileOperations.readBase64(request.file, request.offset, request.length, "");
+        warmer.onRead(request.file, request.offset, Base64Codec.byteLength(data, 0));
+        return data;
+    }
+
+    public CompletableFuture<String> readBase64Async(ReadRequest request) {
+        return submit(() -> readBase64(request));
+    }
+
+    /**
+     * Reads the requested range as a data URL, e.g. {@code data:image/png;base64,...}.
+     */
+    public String readDataUrl(ReadRequest request, String mimeType) throws IOException {
+        requireExists(request.file, "File not found");
+        String prefix = "data:" + mimeType + ";base64,";
+        if (request.encrypted) {
+            byte[] bytes = EncryptedFiles.read(request.file, encryptionKey(), request.offset, request.length);
+            return Base64Codec.encodeToString(prefix, bytes, bytes.length);
+        }
+        return FileOperations.readBase64(request.file, request.offset, request.length, prefix);
+    }
+
+    public CompletableFuture<String> readDataUrlAsync(ReadRequest request, String mimeType) {
+        return submit(() -> readDataUrl(request, mimeType));
+    }
+
+    // Page cache hints
+
+    /**
+     * Reads the files into the page cache on a low-priority background thread, one after another, and completes
+     * with the number of bytes read. Missing files are skipped.
+     */
+    public CompletableFuture<Long> prefetchAsync(List<File> files) {
+        CompletableFuture<Long> total = CompletableFuture.completedFuture(0L);
+        for (File file : files) {
+            if (file.isFile()) {
+                total = total.thenCombine(warmer.warm(file, 0, -1), Long::sum);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Declares how a file, or the range {@code [offset, offset + length)} of it, is about to be read; a negative
+     * length means to the end of the file. Advice is a hint and never fails.
+     */
+    public void advise(File file, ReadAdvice advice, long offset, long length) {
+        warmer.advise(file, advice, offset, length);
+    }
+
+    /**
+     * Writes the request after admitting it against the disk quota. A file the write created is deleted again when
+     * the write fails, running out of space fails with QUOTA_EXCEEDED_ERR and Base64 text that doesn't decode fails
+     * with ENCODING_ERR.
+     */
+    public WriteResult write(WriteRequest request) throws IOException {
+        boolean created = !request.file.exists();
+        long before = created ? 0 : request.file.length();
+        DiskQuota quota = diskQuota;
+        DiskQuota.Reservation reservation = quota != null ? quota.reserve(request.file, growth(request, before)) : null;
+        boolean written = false;
+        try {
+            WriteResult result = writeAdmitted(request);
+            written = true;
+            return result;
+        } catch (IOException e) {
+            throw outOfSpace(e);
+        } catch (IllegalArgumentException e) {
+            if (request.base64 == null) {
+                throw e;
+            }
+            throw new FileEngineException(FileEngineException.ENCODING_ERR, "Data is not valid Base64: " + e.getMessage(), e);
+        } finally {
+            if (!written && created) {
+                request.file.delete();
+            }
+            if (reservation != null) {
+                reservation.release(request.file.length() - before);
+            }
+        }
+    }
+
+    /** Upper bound of the bytes a write adds to a file of {@code existing} bytes. */
+    private static long growth(WriteRequest request, long existing) {
+        long length = request.data != null ? request.data.length : request.base64.length() / 4 * 3;
+        long end;
+        if (request.position != null) {
+            end = Math.max(Math.max(0, request.position) + length, request.preallocate);
+        } else if (request.append) {
+            end = existing + length;
+        } else {
+            end = length;
+        }
+        return end - existing;
+    }
+
+    private WriteResult writeAdmitted(WriteRequest request) throws IOException {
+        if (request.recursive) {
+            File parent = request.file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+        }
+        if (request.encrypted) {
+            return writeEncrypted(request);
+        }
+        if (request.preallocate > 0 && request.position != null) {
+            allocate(request.file, request.preallocate, false);
+        }
+        ContentStore store = contentStore;
+        if (store != null && store.covers(request.file)) {
+            boolean inPlace = request.file.exists() && (request.append || request.position != null);
+            if (!inPlace && store.deduplicates()) {
+                return new WriteResult(request.file, store.write(request.file, request.data, request.base64));
+            }
+            store.unshare(request.file, inPlace);
+        }
+        if (request.base64 != null) {
+            long written = FileOperations.writeBase64(request.file, request.base64, request.append, request.position);
+            return new WriteResult(request.file, written);
+        }
+        FileOperations.write(request.file, request.data, request.append, request.position);
+        return new WriteResult(request.file, request.data.length);
+    }
+
+    public CompletableFuture<WriteResult> writeAsync(WriteRequest request) {
+        return submitMutation(() -> write(request));
+    }
+
+    private WriteResult writeEncrypted(WriteRequest request) throws IOException {
+        SecretKey key = encryptionKey();
+        byte[] data = request.data != null ? request.data : Base64Codec.decode(request.base64);
+        boolean inPlace = request.file.exists() && (request.append || request.position != null);
+        ContentStore store = contentStore;
+        if (store != null && store.covers(request.file)) {
+            // Random IVs make every encrypted write unique, so there is nothing to deduplicate
+            store.unshare(request.file, inPlace);
+        }
+        if (inPlace) {
+            // A position wins over append, as for plain files
+            EncryptedFiles.write(request.file, key, request.position != null ? Math.max(0, request.position) : -1, data);
+        } else {
+            EncryptedFiles.replace(request.file, key, data);
+        }
+        return new WriteResult(request.file, data.length);
+    }
+
+    private SecretKey encryptionKey() throws IOException {
+        EncryptionKeys keys = encryptionKeys;
+        if (keys == null) {
+            throw new FileEngineException(FileEngineException.SECURITY_ERR, "Encryption is not available");
+        }
+        return keys.dataKey();
+    }
+
+    /**
+     * Cuts or extends {@code file} to {@code size} bytes. An {@code encrypted} file is resized by plaintext, keeping
+     * every record whole; cutting its records as bytes would fail authentication. Growth is admitted against the disk
+     * quota first.
+     */
+    public void truncate(File file, long size, boolean encrypted) throws IOException {
+        requireExists(file, "File not found");
+        admitted(file, size - file.length(), () -> {
+            if (encrypted) {
+                EncryptedFiles.truncate(file, encryptionKey(), size);
+                return null;
+            }
+            ContentStore store = contentStore;
+            if (store != null) {
+                store.unshare(file, true);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size);
+            }
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> truncateAsync(File file, long size, boolean encrypted) {
+        return submitMutation(() -> {
+            truncate(file, size, encrypted);
+            return null;
+        });
+    }
+
+    /**
+     * Grows {@code file}, creating it if needed, to at least {@code size} bytes so it can then be written at any
+     * position in any order. Unless {@code sparse} is set, disk blocks are reserved up front, so the file isn't
+     * fragmented and can't run out of space halfway through. Returns whether blocks were reserved: sparse files and
+     * file systems without preallocation only get their length extended. Never shrinks the file. The growth is
+     * admitted against the disk quota first, sparse or not, since directory limits count file lengths.
+     *
+     * @throws FileEngineException QUOTA_EXCEEDED_ERR when the free space or a directory limit can't hold the growth
+     */
+    public boolean preallocate(File file, long size, boolean sparse) throws IOException {
+        return admitted(file, size - (file.isFile() ? file.length() : 0), () -> allocate(file, size, sparse));
+    }
+
+    private boolean allocate(File file, long size, boolean sparse) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent == null || !parent.isDirectory()) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Directory not found");
+        }
+        long growth = size - (file.exists() ? file.length() : 0);
+        if (!sparse && growth > parent.getUsableSpace()) {
+            throw new FileEngineException(FileEngineException.QUOTA_EXCEEDED_ERR, "Not enough free space");
+        }
+        ContentStore store = contentStore;
+        if (store != null) {
+            store.unshare(file, true);
+        }
+
+        NativeIo io = nativeIo;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean reserved = !sparse && io != null && size > 0 && io.allocate(raf.getFD(), 0, size);
+            if (raf.length() < size) {
+                // Extends with a hole on file systems that support them
+                raf.setLength(size);
+            }
+            return reserved;
+        }
+    }
+
+    public CompletableFuture<Boolean> preallocateAsync(File file, long size, boolean sparse) {
+        return submitMutation(() -> preallocate(file, size, sparse));
+    }
+
+    // Files and directories
+
+    public void delete(File file) throws IOException {
+        requireExists(file, "File not found");
+        long size = file.length();
+        if (!file.delete()) {
+            throw new IOException("Failed to delete file");
+        }
+        quotaChanged(file, -size);
+    }
+
+    public CompletableFuture<Void> deleteAsync(File file) {
+        return submitMutation(() -> {
+            delete(file);
+            return null;
+        });
+    }
+
+    public void mkdir(File dir, boolean recursive) throws IOException {
+        boolean success = recursive ? dir.mkdirs() : dir.mkdir();
+        if (!success && !dir.exists()) {
+            throw new IOException("Failed to create directory");
+        }
+    }
+
+    public CompletableFuture<Void> mkdirAsync(File dir, boolean recursive) {
+        return submitMutation(() -> {
+            mkdir(dir, recursive);
+            return null;
+        });
+    }
+
+    public void rmdir(File dir, boolean recursive) throws IOException {
+        requireExists(dir, "Directory not found");
+        if (recursive) {
+            long size = quotaSize(dir, dir);
+            boolean deleted = false;
+            try {
+                deleted = FileOperations.deleteTree(dir);
+            } finally {
+                if (deleted) {
+                    quotaChanged(dir, -size);
+                } else {
+                    invalidateQuota(dir);
+                }
+            }
+            if (!deleted) {
+                throw new IOException("Failed to delete directory");
+            }
+            return;
+        }
+        String[] children = dir.list();
+        if (children != null && children.length > 0) {
+            throw new FileEngineException(FileEngineException.INVALID_MODIFICATION_ERR, "Directory is not empty");
+        }
+        if (!dir.delete()) {
+            throw new IOException("Failed to delete directory");
+        }
+    }
+
+    public CompletableFuture<Void> rmdirAsync(File dir, boolean recursive) {
+        return submitMutation(() -> {
+            rmdir(dir, recursive);
+            return null;
+        });
+    }
+
+    public DirectoryListing list(File dir) throws IOException {
+        if (!dir.isDirectory()) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Directory not found");
+        }
+        String[] names = dir.list();
+        if (names == null) {
+            names = new String[0];
+        }
+        boolean[] directories = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if ((i & 255) == 0) {
+                Cancellation.check();
+            }
+            directories[i] = new File(dir, names[i]).isDirectory();
+        }
+        return new DirectoryListing(dir, names, directories);
+    }
+
+    public CompletableFuture<DirectoryListing> listAsync(File dir) {
+        return submit(() -> list(dir));
+    }
+
+    public FileStat stat(File file) throws IOException {
+        requireExists(file, "File or directory not found");
+        return new FileStat(file, file.isDirectory(), file.length(), file.lastModified());
+    }
+
+    public CompletableFuture<FileStat> statAsync(File file) {
+        return submit(() -> stat(file));
+    }
+
+    // Copy and move
+
+    /**
+     * Copies a file or directory tree after admitting its size against the disk quota. A destination the copy
+     * created is deleted again when the copy fails, and running out of space fails with QUOTA_EXCEEDED_ERR.
+     */
+    public WriteResult copy(CopyRequest request) throws IOException {
+        requireExists(request.source, "Source file not found");
+        boolean directory = request.source.isDirectory();
+        boolean created = !request.destination.exists();
+        long before = request.destination.isFile() ? request.destination.length() : 0;
+        DiskQuota quota = diskQuota;
+        DiskQuota.Reservation reservation = null;
+        boolean measureTree = false;
+        if (quota != null) {
+            long size = directory ? DiskQuota.sizeOf(request.source) : request.source.length();
+            reservation = quota.reserve(request.destination, size - before);
+            // A tree copy may replace some files and keep others, so its growth is measured when a limit needs it
+            measureTree = directory && quota.tracks(request.destination);
+            if (measureTree) {
+                before = DiskQuota.sizeOf(request.destination);
+            }
+        }
+        WriteResult result = null;
+        try {
+            result = copyAdmitted(request, directory);
+            return result;
+        } catch (IOException e) {
+            throw outOfSpace(e);
+        } finally {
+            if (result == null && created) {
+                FileOperations.deleteRecursively(request.destination);
+            }
+            if (reservation != null && result == null) {
+                reservation.abandon();
+            } else if (reservation != null) {
+                long after = directory && !measureTree ? before + result.bytesWritten : DiskQuota.sizeOf(request.destination);
+                reservation.release(after - before);
+            }
+        }
+    }
+
+    private WriteResult copyAdmitted(CopyRequest request, boolean directory) throws IOException {
+        createParent(request.destination);
+        ContentStore store = contentStore;
+        long copied;
+        if (directory) {
+            copied = store != null
+                ? store.copyDirectory(request.source, request.destination)
+                : FileOperations.copyDirectory(request.source, request.destination);
+        } else {
+            copied = store != null
+                ? store.copyFile(request.source, request.destination)
+                : FileOperations.copyFile(request.source, request.destination);
+        }
+        return new WriteResult(request.destination, copied);
+    }
+
+    public CompletableFuture<WriteResult> copyAsync(CopyRequest request) {
+        return submitMutation(() -> copy(request));
+    }
+
+    /**
+     * Renames the source over the destination, replacing it. Falls back to copy and delete
+     * when the rename fails, e.g. across mount points.
+     */
+    public WriteResult move(CopyRequest request) throws IOException {
+        requireExists(request.source, "Source file not found");
+        createParent(request.destination);
+        long bytes = quotaSize(request.source, request.destination);
+        long replaced = quotaSize(request.destination, request.source);
+        WriteResult result = null;
+        try {
+            if (request.destination.exists()) {
+                request.destination.delete();
+            }
+            if (request.source.renameTo(request.destination)) {
+                result = new WriteResult(request.destination, 0);
+            } else {
+                long copied = FileOperations.copyFile(request.source, request.destination);
+                FileOperations.deleteRecursively(request.source);
+                result = new WriteResult(request.destination, copied);
+            }
+            return result;
+        } finally {
+            if (result != null) {
+                quotaMoved(request.source, request.destination, bytes, replaced);
+            } else {
+                invalidateQuota(request.source);
+                invalidateQuota(request.destination);
+            }
+        }
+    }
+
+    public CompletableFuture<WriteResult> moveAsync(CopyRequest request) {
+        return submitMutation(() -> move(request));
+    }
+
+    /** Reports a failed write or copy that ran out of disk space as QUOTA_EXCEEDED_ERR. */
+    private static IOException outOfSpace(IOException error) {
+        String message = error.getMessage();
+        boolean full = message != null && (message.contains("ENOSPC") || message.contains("No space left"));
+        if (full && !(error instanceof FileEngineException)) {
+            return new FileEngineException(FileEngineException.QUOTA_EXCEEDED_ERR, "Not enough free space", error);
+        }
+        return error;
+    }
+
+    private static void requireExists(File file, String message) throws FileEngineException {
+        if (!file.exists()) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, message);
+        }
+    }
+
+    private static void createParent(File file) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+    }
+}
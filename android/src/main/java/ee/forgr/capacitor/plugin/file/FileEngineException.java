@@ -0,0 +1,37 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.IOException;
+
+/**
+ * Failure of a {@link FileEngine} operation. {@link #getCode()} carries the W3C FileError code
+ * (e.g. {@code NOT_FOUND_ERR}) that the plugin reports to JavaScript.
+ */
+public class FileEngineException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String NOT_FOUND_ERR = "NOT_FOUND_ERR";
+    public static final String ABORT_ERR = "ABORT_ERR";
+    public static final String INVALID_MODIFICATION_ERR = "INVALID_MODIFICATION_ERR";
+    public static final String TYPE_MISMATCH_ERR = "TYPE_MISMATCH_ERR";
+    public static final String PATH_EXISTS_ERR = "PATH_EXISTS_ERR";
+    public static final String QUOTA_EXCEEDED_ERR = "QUOTA_EXCEEDED_ERR";
+    public static final String SECURITY_ERR = "SECURITY_ERR";
+    public static final String ENCODING_ERR = "ENCODING_ERR";
+
+    private final String code;
+
+    public FileEngineException(String code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public FileEngineException(String code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,126 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation counters for the plugin methods: latency histogram, bytes moved,
+ * errors by code and in-flight calls. Every recording path is lock-free, and when
+ * metrics are disabled {@link #begin(String)} returns 0 so the rest of the calls are no-ops.
+ */
+final class FileMetrics {
+
+    /** Error key of calls rejected for missing or malformed options, before any file work. */
+    static final String INVALID_CALL = "INVALID_CALL";
+
+    /** Error key of I/O failures that carry no FileError code. */
+    static final String IO_ERR = "IO_ERR";
+
+    static final class Operation {
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder calls = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        long errorCount() {
+            long total = 0;
+            for (LongAdder adder : errors.values()) {
+                total += adder.sum();
+            }
+            return total;
+        }
+
+        void reset() {
+            // inFlight tracks calls still running and is left untouched
+            latency.reset();
+            calls.reset();
+            bytesRead.reset();
+            bytesWritten.reset();
+            errors.clear();
+        }
+    }
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile long since = System.currentTimeMillis();
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** Epoch millis of the last reset. */
+    long since() {
+        return since;
+    }
+
+    Map<String, Operation> operations() {
+        return operations;
+    }
+
+    /**
+     * Marks the start of a call. Returns the start timestamp to hand to {@link #end(String, long)},
+     * or 0 when metrics are disabled.
+     */
+    long begin(String name) {
+        if (!enabled) {
+            return 0;
+        }
+        Operation operation = operation(name);
+        operation.inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void end(String name, long started) {
+        if (started == 0) {
+            return;
+        }
+        Operation operation = operation(name);
+        operation.inFlight.decrementAndGet();
+        operation.calls.increment();
+        operation.latency.record(System.nanoTime() - started);
+    }
+
+    /** Counts a failed call by {@code code}: a FileError code, {@link #INVALID_CALL} or {@link #IO_ERR}. */
+    void recordError(String name, String code) {
+        if (!enabled || name == null || code == null) {
+            return;
+        }
+        operation(name).errors.computeIfAbsent(code, (key) -> new LongAdder()).increment();
+    }
+
+    void recordBytesRead(String name, long bytes) {
+        if (enabled && name != null && bytes > 0) {
+            operation(name).bytesRead.add(bytes);
+        }
+    }
+
+    void recordBytesWritten(String name, long bytes) {
+        if (enabled && name != null && bytes > 0) {
+            operation(name).bytesWritten.add(bytes);
+        }
+    }
+
+    void reset() {
+        for (Operation operation : operations.values()) {
+            operation.reset();
+        }
+        since = System.currentTimeMillis();
+    }
+
+    private Operation operation(String name) {
+        Operation operation = operations.get(name);
+        if (operation == null) {
+            operation = operations.computeIfAbsent(name, (key) -> new Operation());
+        }
+        return operation;
+    }
+}
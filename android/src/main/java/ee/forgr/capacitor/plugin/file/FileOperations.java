@@ -0,0 +1,469 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * File I/O used by the plugin methods, kept free of Android and Capacitor types
+ * so it can be exercised and benchmarked on a plain JVM.
+ *
+ * Loops that can run long check {@link Cancellation#check()} once per chunk, file or span.
+ */
+final class FileOperations {
+
+    static final int COPY_BUFFER_SIZE = 8192;
+
+    /** Largest array the VM reliably allocates. */
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /** Ranges separated by at most this many bytes are read as one span; reading the gap is cheaper than a syscall. */
+    static final int COALESCE_GAP = 4096;
+
+    /** Upper bound of a coalesced span, so batching many ranges never needs a large buffer. */
+    static final int MAX_SPAN = 1024 * 1024;
+
+    /** Upper bound of the bytes one {@link #readRanges} call returns; they are all held and sent to JavaScript at once. */
+    static final long MAX_RANGES_BYTES = 32L * 1024 * 1024;
+
+    /** Whole-range reads are split into positional reads of this size, so a huge read can be cancelled. */
+    static final int READ_CHUNK = 1024 * 1024;
+
+    /** Upper bound of one {@code sendfile} call in {@link #copyToFile(FileChannel, long, File)}, for the same reason. */
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private FileOperations() {}
+
+    /**
+     * Reads {@code length} bytes starting at {@code offset}, or up to the end of the file when length is null.
+     * Returns an empty array when the offset is past the end of the file.
+     */
+    static byte[] readRange(File file, long offset, Integer length) throws IOException {
+        if (Math.max(0, offset) >= file.length()) {
+            return EMPTY;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            return readRange(channel, channel.size(), offset, length);
+        }
+    }
+
+    /**
+     * Reads a range like {@link #readRange(File, long, Integer)} from an open channel of {@code size} bytes, e.g. a
+     * document opened through a content provider.
+     */
+    static byte[] readRange(FileChannel channel, long size, long offset, Integer length) throws IOException {
+        long startOffset = Math.max(0, offset);
+        if (startOffset >= size) {
+            return EMPTY;
+        }
+
+        long remainingBytes = size - startOffset;
+        int bytesToRead = length != null ? (int) Math.min(Math.max(0, length), remainingBytes) : (int) remainingBytes;
+
+        byte[] bytes = new byte[bytesToRead];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int start = 0; start < bytesToRead; start += READ_CHUNK) {
+            Cancellation.check();
+            buffer.limit(Math.min(bytesToRead, start + READ_CHUNK));
+            readFully(channel, buffer, startOffset + start);
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads a range from a stream that can't seek, such as a pipe from a content provider, by skipping to
+     * {@code offset} and reading up to {@code length} bytes or the end of the stream.
+     */
+    static byte[] readRange(InputStream in, long offset, Integer length) throws IOException {
+        long skipped = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        while (skipped < offset) {
+            Cancellation.check();
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, offset - skipped));
+            if (read < 0) {
+                return EMPTY;
+            }
+            skipped += read;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length != null ? Math.max(0, length) : COPY_BUFFER_SIZE);
+        long left = length != null ? Math.max(0, length) : Long.MAX_VALUE;
+        int read;
+        while (left > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, left))) >= 0) {
+            Cancellation.check();
+            out.write(buffer, 0, read);
+            left -= read;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads many ranges of one file through a single channel and returns them in request order. Ranges are clamped
+     * to the file like {@link #readRange}, then sorted by offset; overlapping ranges and ranges less than
+     * {@link #COALESCE_GAP} apart are merged into spans of up to {@link #MAX_SPAN} bytes, each read with one
+     * positional read. Fails with QUOTA_EXCEEDED_ERR, before reading anything, when the clamped ranges add up to more
+     * than {@link #MAX_RANGES_BYTES}.
+     */
+    static byte[][] readRanges(File file, long[] offsets, int[] lengths) throws IOException {
+        int count = offsets.length;
+        byte[][] slices = new byte[count][];
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long fileSize = channel.size();
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                starts[i] = Math.min(Math.max(0, offsets[i]), fileSize);
+                ends[i] = Math.min(fileSize, starts[i] + Math.max(0, lengths[i]));
+                total += ends[i] - starts[i];
+            }
+            if (total > MAX_RANGES_BYTES) {
+                throw new FileEngineException(
+                    FileEngineException.QUOTA_EXCEEDED_ERR,
+                    "Ranges add up to " + total + " bytes, more than " + MAX_RANGES_BYTES + " per call"
+                );
+            }
+
+            int nonEmpty = 0;
+            for (int i = 0; i < count; i++) {
+                if (ends[i] > starts[i]) {
+                    slices[i] = new byte[(int) (ends[i] - starts[i])];
+                    nonEmpty++;
+                } else {
+                    slices[i] = EMPTY;
+                }
+            }
+
+            Integer[] sorted = new Integer[nonEmpty];
+            for (int i = 0, n = 0; i < count; i++) {
+                if (slices[i] != EMPTY) {
+                    sorted[n++] = i;
+                }
+            }
+            Arrays.sort(sorted, (a, b) -> Long.compare(starts[a], starts[b]));
+
+            byte[] span = null;
+            int first = 0;
+            while (first < nonEmpty) {
+                Cancellation.check();
+                long spanStart = starts[sorted[first]];
+                long spanEnd = ends[sorted[first]];
+                int last = first + 1;
+                while (last < nonEmpty) {
+                    int next = sorted[last];
+                    if (starts[next] > spanEnd + COALESCE_GAP || Math.max(spanEnd, ends[next]) - spanStart > MAX_SPAN) {
+                        break;
+                    }
+                    spanEnd = Math.max(spanEnd, ends[next]);
+                    last++;
+                }
+
+                if (last == first + 1) {
+                    // A lone range is read straight into its own slice
+                    byte[] slice = slices[sorted[first]];
+                    readFully(channel, ByteBuffer.wrap(slice), spanStart);
+                } else {
+                    int spanLength = (int) (spanEnd - spanStart);
+                    if (span == null || span.length < spanLength) {
+                        span = new byte[spanLength];
+                    }
+                    readFully(channel, ByteBuffer.wrap(span, 0, spanLength), spanStart);
+                    for (int n = first; n < last; n++) {
+                        int index = sorted[n];
+                        System.arraycopy(span, (int) (starts[index] - spanStart), slices[index], 0, slices[index].length);
+                    }
+                }
+                first = last;
+            }
+        }
+        return slices;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at);
+            if (read < 0) {
+                throw new EOFException("File was truncated while reading");
+            }
+            at += read;
+        }
+    }
+
+    /**
+     * Reads a range like {@link #readRange} and returns {@code prefix} followed by its Base64 encoding.
+     * The range is read in small chunks and encoded straight into one output array sized up front.
+     */
+    static String readBase64(File file, long offset, Integer length, String prefix) throws IOException {
+        if (Math.max(0, offset) >= file.length() || (length != null && length <= 0)) {
+            return readBase64(null, 0, offset, length, prefix);
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            return readBase64(channel, channel.size(), offset, length, prefix);
+        }
+    }
+
+    /**
+     * Reads a range like {@link #readBase64(File, long, Integer, String)} from an open channel of {@code size} bytes.
+     */
+    static String readBase64(FileChannel channel, long size, long offset, Integer length, String prefix) throws IOException {
+        long startOffset = Math.max(0, offset);
+        long remainingBytes = Math.max(0, size - startOffset);
+        long bytesToRead = length != null ? Math.min(Math.max(0, length), remainingBytes) : remainingBytes;
+
+        byte[] head = prefix.getBytes(StandardCharsets.US_ASCII);
+        long outputSize = head.length + Base64Codec.encodedLength(bytesToRead);
+        if (outputSize > MAX_ARRAY_SIZE) {
+            throw new IOException("File is too large to encode; read it in ranges with offset and length");
+        }
+
+        byte[] output = new byte[(int) outputSize];
+        System.arraycopy(head, 0, output, 0, head.length);
+        int written = head.length;
+        if (bytesToRead > 0) {
+            byte[] chunk = Base64Codec.scratch();
+            long position = startOffset;
+            long left = bytesToRead;
+            while (left > 0) {
+                Cancellation.check();
+                int count = (int) Math.min(chunk.length, left);
+                readFully(channel, ByteBuffer.wrap(chunk, 0, count), position);
+                written += Base64Codec.encode(chunk, 0, count, output, written);
+                position += count;
+                left -= count;
+            }
+        }
+        return new String(output, 0, written, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decodes Base64 {@code data} straight into the file, with the same append and position rules as
+     * {@link #write}, and returns the number of bytes written. The payload is validated while it is decoded, and a
+     * malformed or cancelled one leaves the file as it was: a replaced file is decoded into a temporary file first, an
+     * append is cut back to the old length, and a positional write, which can't be undone in place, is decoded before
+     * the file is opened.
+     *
+     * @throws IllegalArgumentException when {@code data} is not valid Base64
+     */
+    static long writeBase64(File file, String data, boolean append, Integer position) throws IOException {
+        boolean fileExists = file.exists();
+
+        if (position != null && fileExists) {
+            byte[] bytes = Base64Codec.decode(data);
+            write(file, bytes, false, position);
+            return bytes.length;
+        }
+        if (append && fileExists) {
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                FileChannel channel = fos.getChannel();
+                long end = channel.size();
+                try {
+                    return Base64Codec.decodeTo(data, channel);
+                } catch (IllegalArgumentException | IOException e) {
+                    channel.truncate(end);
+                    throw e;
+                }
+            }
+        }
+        File temp = tempFor(file);
+        try {
+            long written;
+            try (FileOutputStream fos = new FileOutputStream(temp)) {
+                written = Base64Codec.decodeTo(data, fos.getChannel());
+            }
+            replace(temp, file);
+            return written;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Writes bytes at {@code position} when given, appends when requested, otherwise replaces the file.
+     * Position and append only apply to files that already exist.
+     */
+    static void write(File file, byte[] bytes, boolean append, Integer position) throws IOException {
+        boolean fileExists = file.exists();
+
+        if (position != null && fileExists) {
+            // Write at specific position (random access)
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(Math.max(0, position));
+                raf.write(bytes);
+            }
+        } else if (append && fileExists) {
+            // Append to end of file
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                fos.write(bytes);
+            }
+        } else {
+            // Overwrite or create new file
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                fos.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Copies a file and returns the number of bytes copied. An existing destination is only replaced once the copy
+     * is complete, and a new one is removed when the copy fails or is cancelled, so no partial file is left behind.
+     */
+    static long copyFile(File source, File dest) throws IOException {
+        boolean replacing = dest.exists();
+        File target = replacing ? tempFor(dest) : dest;
+        boolean complete = false;
+        try {
+            long copied = 0;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(source)); OutputStream out = new FileOutputStream(target)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int length;
+                while ((length = in.read(buffer)) > 0) {
+                    Cancellation.check();
+                    out.write(buffer, 0, length);
+                    copied += length;
+                }
+            }
+            if (replacing) {
+                replace(target, dest);
+            }
+            complete = true;
+            return copied;
+        } finally {
+            if (!complete) {
+                target.delete();
+            }
+        }
+    }
+
+    /**
+     * Copies {@code size} bytes of an open channel into a new file that then replaces {@code dest}, so an existing
+     * destination is never truncated in place. The kernel moves the bytes ({@code sendfile}) where it can.
+     */
+    static long copyToFile(FileChannel in, long size, File dest) throws IOException {
+        File temp = tempFor(dest);
+        try {
+            long copied = 0;
+            try (FileOutputStream fos = new FileOutputStream(temp)) {
+                FileChannel out = fos.getChannel();
+                while (copied < size) {
+                    Cancellation.check();
+                    long transferred = in.transferTo(copied, Math.min(TRANSFER_CHUNK, size - copied), out);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    copied += transferred;
+                }
+            }
+            replace(temp, dest);
+            return copied;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Copies a stream that can't seek into a new file that then replaces {@code dest}.
+     */
+    static long copyToFile(InputStream in, File dest) throws IOException {
+        File temp = tempFor(dest);
+        try {
+            long copied = 0;
+            try (OutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int length;
+                while ((length = in.read(buffer)) > 0) {
+                    Cancellation.check();
+                    out.write(buffer, 0, length);
+                    copied += length;
+                }
+            }
+            replace(temp, dest);
+            return copied;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static File tempFor(File dest) {
+        return new File(dest.getParentFile(), "." + dest.getName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    private static void replace(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Failed to replace " + to.getName());
+        }
+    }
+
+    /**
+     * Copies a directory tree and returns the number of file bytes copied.
+     */
+    static long copyDirectory(File source, File dest) throws IOException {
+        Cancellation.check();
+        if (!dest.exists()) {
+            dest.mkdirs();
+        }
+        long copied = 0;
+        File[] files = source.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                File destFile = new File(dest, file.getName());
+                if (file.isDirectory()) {
+                    copied += copyDirectory(file, destFile);
+                } else {
+                    copied += copyFile(file, destFile);
+                }
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Deletes a tree like {@link #deleteRecursively}, checking for cancellation before each file; a cancelled delete
+     * leaves the files it hasn't reached. Cleanup after a failure uses {@link #deleteRecursively}, which never stops.
+     */
+    static boolean deleteTree(File file) throws FileEngineException {
+        Cancellation.check();
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (!deleteTree(child)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return file.delete();
+    }
+
+    static boolean deleteRecursively(File file) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (!deleteRecursively(child)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return file.delete();
+    }
+}
@@ -0,0 +1,21 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+
+/**
+ * Type, size and modification time of a file or directory.
+ */
+public final class FileStat {
+
+    public final File file;
+    public final boolean directory;
+    public final long size;
+    public final long lastModified;
+
+    public FileStat(File file, boolean directory, long size, long lastModified) {
+        this.file = file;
+        this.directory = directory;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+}
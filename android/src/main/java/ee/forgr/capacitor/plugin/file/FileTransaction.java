@@ -0,0 +1,424 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A group of whole-file writes, renames and deletes that takes effect completely or not at all, even across a crash.
+ *
+ * New contents are first staged next to their targets, so every later step is a rename within one directory. A
+ * journal in {@code journalsDir} records the plan before anything visible changes: {@code STAGING} while staged files
+ * are written, {@code STAGED} once they are durable, {@code COMMITTED} once every rename is done. Replaced and
+ * deleted files are renamed aside rather than removed until the commit is recorded, so a failure rolls back by
+ * renaming them back. Every step can tell from the file system whether it already ran, so {@link #recover} can replay
+ * a journal left by a killed process: STAGING is abandoned, STAGED is committed (rolled back if that fails), and
+ * COMMITTED is cleaned up. A rename is only durable once its directory is synced, so the journals directory is
+ * synced after every journal update and the affected directories before each journal update that depends on them.
+ *
+ * Each path may appear in one operation only. Transactions are atomic but not isolated from each other or from
+ * plain writes to the same paths.
+ */
+final class FileTransaction {
+
+    enum Type {
+        WRITE,
+        RENAME,
+        DELETE
+    }
+
+    private enum State {
+        STAGING,
+        STAGED,
+        COMMITTED
+    }
+
+    static final class Operation {
+
+        final Type type;
+        /** The file written, deleted or renamed to. */
+        final File target;
+        /** For renames, the file renamed from. */
+        final File source;
+        final WriteRequest write;
+        File stage;
+        File backup;
+
+        private Operation(Type type, File target, File source, WriteRequest write) {
+            this.type = type;
+            this.target = target;
+            this.source = source;
+            this.write = write;
+        }
+
+        /** Replaces the request's file with its data; append, position and preallocate don't apply. */
+        static Operation write(WriteRequest request) {
+            return new Operation(Type.WRITE, request.file, null, request);
+        }
+
+        static Operation rename(File from, File to) {
+            return new Operation(Type.RENAME, to, from, null);
+        }
+
+        static Operation delete(File file) {
+            return new Operation(Type.DELETE, file, null, null);
+        }
+    }
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private final File journalsDir;
+    private final String id;
+    private final List<Operation> operations;
+    private State state;
+    /** Syncs directories after renames; without it renames are only as durable as the file system makes them. */
+    private NativeIo io;
+
+    private FileTransaction(File journalsDir, String id, List<Operation> operations) {
+        this.journalsDir = journalsDir;
+        this.id = id;
+        this.operations = operations;
+        for (Operation operation : operations) {
+            operation.stage = sibling(operation.target, "stage");
+            operation.backup = sibling(operation.target, "orig");
+        }
+    }
+
+    /**
+     * Checks the operations against the file system and plans the transaction; nothing is written yet.
+     */
+    static FileTransaction create(File journalsDir, List<Operation> operations) throws IOException {
+        Set<String> paths = new HashSet<>();
+        for (Operation operation : operations) {
+            boolean unique = paths.add(operation.target.getAbsolutePath());
+            if (operation.source != null) {
+                unique &= paths.add(operation.source.getAbsolutePath());
+            }
+            if (!unique) {
+                throw new FileEngineException(FileEngineException.INVALID_MODIFICATION_ERR, "A path appears in more than one operation");
+            }
+            switch (operation.type) {
+                case WRITE:
+                    if (operation.target.isDirectory()) {
+                        throw new FileEngineException(FileEngineException.TYPE_MISMATCH_ERR, "Path is a directory");
+                    }
+                    File parent = operation.target.getAbsoluteFile().getParentFile();
+                    if (!operation.write.recursive && (parent == null || !parent.isDirectory())) {
+                        throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Directory not found");
+                    }
+                    break;
+                case RENAME:
+                    if (!operation.source.exists()) {
+                        throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Source file not found");
+                    }
+                    break;
+                case DELETE:
+                    if (!operation.target.exists()) {
+                        throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "File not found");
+                    }
+                    break;
+            }
+        }
+        return new FileTransaction(journalsDir, UUID.randomUUID().toString(), operations);
+    }
+
+    /**
+     * Stages the writes through {@code engine}, then applies every operation. On failure, whatever was applied is
+     * rolled back before the error is thrown. Once every rename is synced the transaction has committed: a failure to
+     * record COMMITTED after that is not reported, and the journal left behind is cleaned up by {@link #recover}.
+     */
+    void commit(FileEngine engine) throws IOException {
+        if (!journalsDir.isDirectory() && !journalsDir.mkdirs()) {
+            throw new IOException("Cannot create " + journalsDir);
+        }
+        io = engine.nativeIo();
+        // Measured up front for the disk quota; staged writes are counted as they are written
+        long[] replaced = new long[operations.size()];
+        long[] renamed = new long[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            File other = operation.source != null ? operation.source : operation.target;
+            replaced[i] = engine.quotaSize(operation.target, other);
+            if (operation.type == Type.RENAME) {
+                renamed[i] = engine.quotaSize(operation.source, operation.target);
+            }
+        }
+
+        save(State.STAGING);
+        try {
+            for (Operation operation : operations) {
+                if (operation.type == Type.WRITE) {
+                    engine.write(operation.write.to(operation.stage));
+                    sync(operation.stage);
+                }
+            }
+            // Checked once the writes are staged, since a recursive write may create the directory a rename moves into
+            for (Operation operation : operations) {
+                File parent = operation.target.getAbsoluteFile().getParentFile();
+                if (operation.type == Type.RENAME && (parent == null || !parent.isDirectory())) {
+                    throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Destination directory not found");
+                }
+            }
+            syncDirectories();
+            save(State.STAGED);
+        } catch (IOException | RuntimeException e) {
+            abandon();
+            invalidateQuota(engine);
+            throw e;
+        }
+
+        try {
+            apply();
+            syncDirectories();
+        } catch (IOException | RuntimeException e) {
+            invalidateQuota(engine);
+            rollBack();
+            throw e;
+        }
+        try {
+            save(State.COMMITTED);
+        } catch (IOException | RuntimeException e) {
+            // Every rename is already on disk, so the transaction did commit. Rolling back now could leave it half
+            // undone under a COMMITTED journal; the STAGED journal left behind only replays steps that already ran.
+        }
+        finish();
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            if (operation.type == Type.RENAME) {
+                engine.quotaMoved(operation.source, operation.target, renamed[i], replaced[i]);
+            } else {
+                engine.quotaChanged(operation.target, -replaced[i]);
+            }
+        }
+    }
+
+    /** Staged files were counted when written; once dropped, the quota can't tell what is left. */
+    private void invalidateQuota(FileEngine engine) {
+        for (Operation operation : operations) {
+            engine.invalidateQuota(operation.target);
+            if (operation.source != null) {
+                engine.invalidateQuota(operation.source);
+            }
+        }
+    }
+
+    /**
+     * Completes or undoes the transactions of journals left by an earlier process, syncing directories through
+     * {@code io} when not null. Returns how many were found.
+     */
+    static int recover(File journalsDir, NativeIo io) {
+        String[] names = journalsDir.list();
+        if (names == null) {
+            return 0;
+        }
+        int recovered = 0;
+        for (String name : names) {
+            if (!name.endsWith(JOURNAL_SUFFIX)) continue;
+            try {
+                FileTransaction transaction = load(journalsDir, name.substring(0, name.length() - JOURNAL_SUFFIX.length()));
+                recovered++;
+                transaction.io = io;
+                switch (transaction.state) {
+                    case STAGING:
+                        transaction.abandon();
+                        break;
+                    case STAGED:
+                        try {
+                            transaction.apply();
+                            transaction.syncDirectories();
+                        } catch (IOException | RuntimeException e) {
+                            transaction.rollBack();
+                            break;
+                        }
+                        transaction.save(State.COMMITTED);
+                        transaction.finish();
+                        break;
+                    case COMMITTED:
+                        transaction.finish();
+                        break;
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // Left for the next launch rather than failing the plugin load
+            }
+        }
+        return recovered;
+    }
+
+    private void apply() throws IOException {
+        for (Operation operation : operations) {
+            switch (operation.type) {
+                case WRITE:
+                    if (operation.stage.exists()) {
+                        moveAside(operation);
+                        move(operation.stage, operation.target);
+                    }
+                    break;
+                case RENAME:
+                    if (operation.source.exists()) {
+                        moveAside(operation);
+                        move(operation.source, operation.target);
+                    }
+                    break;
+                case DELETE:
+                    moveAside(operation);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Undoes the applied operations in reverse order, then forgets the transaction. Throws, leaving the journal for
+     * {@link #recover}, when a file can't be put back.
+     */
+    private void rollBack() throws IOException {
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            Operation operation = operations.get(i);
+            switch (operation.type) {
+                case WRITE:
+                    // The staged file is only gone once it was moved over the target
+                    if (!operation.stage.exists() && operation.target.exists()) {
+                        move(operation.target, operation.stage);
+                    }
+                    break;
+                case RENAME:
+                    // The source existed when the transaction started; only the rename removes it
+                    if (!operation.source.exists() && operation.target.exists()) {
+                        move(operation.target, operation.source);
+                    }
+                    break;
+                case DELETE:
+                    break;
+            }
+            if (operation.backup.exists()) {
+                move(operation.backup, operation.target);
+            }
+        }
+        syncDirectories();
+        abandon();
+    }
+
+    /** Drops staged files and the journal; nothing visible has changed yet. */
+    private void abandon() {
+        for (Operation operation : operations) {
+            operation.stage.delete();
+        }
+        journal().delete();
+    }
+
+    /** Deletes what the committed transaction replaced, then the journal. */
+    private void finish() {
+        for (Operation operation : operations) {
+            FileOperations.deleteRecursively(operation.backup);
+            operation.stage.delete();
+        }
+        journal().delete();
+    }
+
+    private static void moveAside(Operation operation) throws IOException {
+        if (operation.target.exists() && !operation.backup.exists()) {
+            move(operation.target, operation.backup);
+        }
+    }
+
+    private static void move(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Failed to move " + from.getName() + " to " + to.getName());
+        }
+    }
+
+    private File sibling(File file, String suffix) {
+        return new File(file.getAbsoluteFile().getParentFile(), "." + file.getName() + "." + id + "." + suffix);
+    }
+
+    private File journal() {
+        return new File(journalsDir, id + JOURNAL_SUFFIX);
+    }
+
+    /** Syncs every directory an operation renames in, so the renames are on disk before the journal moves on. */
+    private void syncDirectories() throws IOException {
+        if (io == null) {
+            return;
+        }
+        Set<File> dirs = new HashSet<>();
+        for (Operation operation : operations) {
+            dirs.add(operation.target.getAbsoluteFile().getParentFile());
+            if (operation.source != null) {
+                dirs.add(operation.source.getAbsoluteFile().getParentFile());
+            }
+        }
+        for (File dir : dirs) {
+            if (dir.isDirectory()) {
+                io.syncDirectory(dir);
+            }
+        }
+    }
+
+    private static void sync(File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.getFD().sync();
+        }
+    }
+
+    private void save(State state) throws IOException {
+        this.state = state;
+        Properties properties = new Properties();
+        properties.setProperty("state", state.name());
+        properties.setProperty("operations", Integer.toString(operations.size()));
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            properties.setProperty(i + ".type", operation.type.name());
+            properties.setProperty(i + ".target", operation.target.getAbsolutePath());
+            if (operation.source != null) {
+                properties.setProperty(i + ".source", operation.source.getAbsolutePath());
+            }
+        }
+
+        File target = journal();
+        File temp = new File(journalsDir, id + JOURNAL_SUFFIX + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                properties.store(out, null);
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Cannot save transaction " + id);
+            }
+        } finally {
+            temp.delete();
+        }
+        if (io != null) {
+            io.syncDirectory(journalsDir);
+        }
+    }
+
+    private static FileTransaction load(File journalsDir, String id) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(new File(journalsDir, id + JOURNAL_SUFFIX))) {
+            properties.load(in);
+        }
+        int count = Integer.parseInt(properties.getProperty("operations"));
+        List<Operation> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String source = properties.getProperty(i + ".source");
+            operations.add(
+                new Operation(
+                    Type.valueOf(properties.getProperty(i + ".type")),
+                    new File(properties.getProperty(i + ".target")),
+                    source != null ? new File(source) : null,
+                    null
+                )
+            );
+        }
+        FileTransaction transaction = new FileTransaction(journalsDir, id, operations);
+        transaction.state = State.valueOf(properties.getProperty("state"));
+        return transaction;
+    }
+}
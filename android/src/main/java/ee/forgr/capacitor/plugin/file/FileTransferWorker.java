@@ -0,0 +1,163 @@
+package ee.forgr.capacitor.plugin.file;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ForegroundInfo;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * WorkManager worker running a {@link TransferJob}, so long copies and unzips outlive the WebView and the plugin call.
+ *
+ * Jobs are enqueued as expedited unique work named after the job id. When WorkManager stops the worker (quota,
+ * process death, reboot) the job is rescheduled and {@link TransferJobRunner} resumes from the saved checkpoint.
+ */
+public class FileTransferWorker extends Worker {
+
+    static final String KEY_JOBS_DIR = "jobsDir";
+    static final String KEY_JOB_ID = "jobId";
+    static final String KEY_BYTES_DONE = "bytesDone";
+    static final String KEY_BYTES_TOTAL = "bytesTotal";
+
+    private static final String TAG = "capacitor-file-job";
+    private static final String CHANNEL_ID = "capacitor-file-jobs";
+    private static final long NOTIFICATION_INTERVAL_MS = 1000;
+
+    private long lastNotification;
+
+    public FileTransferWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    static void enqueue(Context context, TransferJob job) {
+        Data input = new Data.Builder().putString(KEY_JOBS_DIR, job.jobsDir.getAbsolutePath()).putString(KEY_JOB_ID, job.id).build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(FileTransferWorker.class)
+            .setInputData(input)
+            .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+            .addTag(TAG)
+            .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(job.id, ExistingWorkPolicy.KEEP, request);
+    }
+
+    static void cancel(Context context, TransferJob job) {
+        WorkManager.getInstance(context).cancelUniqueWork(job.id);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        TransferJob job;
+        try {
+            job = TransferJob.load(new File(getInputData().getString(KEY_JOBS_DIR)), getInputData().getString(KEY_JOB_ID));
+        } catch (IOException | RuntimeException e) {
+            return Result.failure();
+        }
+        if (job == null || job.isFinished()) {
+            return Result.success();
+        }
+
+        try {
+            if (job.foreground) {
+                // Long-running work: promote to a foreground service instead of relying on the expedited quota
+                setForegroundAsync(createForegroundInfo(job));
+            }
+            job.state = TransferJob.State.RUNNING;
+            job.save();
+
+            boolean completed = new TransferJobRunner(job, new TransferJobRunner.Control() {
+                @Override
+                public boolean isStopped() {
+                    return FileTransferWorker.this.isStopped();
+                }
+
+                @Override
+                public void onProgress(TransferJob progress) {
+                    reportProgress(progress);
+                }
+            }).run();
+
+            if (completed) {
+                job.state = TransferJob.State.SUCCEEDED;
+                job.planFile().delete();
+            } else if (job.isCancelled()) {
+                job.state = TransferJob.State.CANCELLED;
+            } else {
+                // Stopped by the system; WorkManager reschedules and the next run resumes from the checkpoint
+                job.state = TransferJob.State.ENQUEUED;
+                job.save();
+                return Result.retry();
+            }
+            job.save();
+            return Result.success();
+        } catch (IOException | RuntimeException e) {
+            job.state = TransferJob.State.FAILED;
+            job.error = e instanceof FileEngineException ? ((FileEngineException) e).getCode() + ": " + e.getMessage() : e.getMessage();
+            try {
+                job.save();
+            } catch (IOException ignored) {
+                // The record keeps its last checkpoint; getJob then reports the job as still running
+            }
+            return Result.failure();
+        }
+    }
+
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        // Required for expedited work before Android 12, where it runs as a foreground service
+        TransferJob job = null;
+        try {
+            job = TransferJob.load(new File(getInputData().getString(KEY_JOBS_DIR)), getInputData().getString(KEY_JOB_ID));
+        } catch (IOException | RuntimeException ignored) {}
+        return createForegroundInfo(job);
+    }
+
+    private void reportProgress(TransferJob job) {
+        setProgressAsync(new Data.Builder().putLong(KEY_BYTES_DONE, job.bytesDone).putLong(KEY_BYTES_TOTAL, job.bytesTotal).build());
+        long now = System.currentTimeMillis();
+        if (job.foreground && now - lastNotification >= NOTIFICATION_INTERVAL_MS) {
+            lastNotification = now;
+            setForegroundAsync(createForegroundInfo(job));
+        }
+    }
+
+    private ForegroundInfo createForegroundInfo(TransferJob job) {
+        Context context = getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "File transfers", NotificationManager.IMPORTANCE_LOW));
+        }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+            .setContentTitle(job != null && job.type == TransferJob.Type.UNZIP ? "Extracting files" : "Copying files")
+            .setSmallIcon(android.R.drawable.stat_sys_download)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .setSilent(true);
+        if (job != null && job.bytesTotal > 0) {
+            builder.setProgress(1000, (int) (job.bytesDone * 1000 / job.bytesTotal), false);
+        } else {
+            builder.setProgress(0, 0, true);
+        }
+        Notification notification = builder.build();
+
+        int notificationId = job != null ? job.id.hashCode() : CHANNEL_ID.hashCode();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new ForegroundInfo(notificationId, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        }
+        return new ForegroundInfo(notificationId, notification);
+    }
+}
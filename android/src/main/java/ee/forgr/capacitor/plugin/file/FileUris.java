@@ -0,0 +1,101 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds {@code file://} URIs for entries without allocating an {@code android.net.Uri} per file.
+ * The output matches {@code Uri.fromFile(file).toString()}: the absolute path is percent-encoded
+ * with the same unreserved set as {@code Uri.encode(path, "/")}.
+ * Encoded prefixes of base directories are cached so only the relative part is encoded per entry.
+ */
+final class FileUris {
+
+    static final String SCHEME_PREFIX = "file://";
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final Map<String, String> basePrefixes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the encoded {@code file://} URI of a base directory, computing it once.
+     */
+    String baseUri(File baseDir) {
+        return basePrefixes.computeIfAbsent(baseDir.getAbsolutePath(), FileUris::toUri);
+    }
+
+    /**
+     * Returns the {@code file://} URI of a file, reusing the cached prefix of a base directory it lives under.
+     */
+    String toUri(File file) {
+        String path = file.getAbsolutePath();
+        for (Map.Entry<String, String> base : basePrefixes.entrySet()) {
+            String basePath = base.getKey();
+            if (path.length() > basePath.length() && path.startsWith(basePath) && path.charAt(basePath.length()) == '/') {
+                StringBuilder builder = new StringBuilder(base.getValue().length() + (path.length() - basePath.length()) + 8);
+                builder.append(base.getValue());
+                appendEncoded(builder, path, basePath.length(), path.length());
+                return builder.toString();
+            }
+        }
+        return toUri(path);
+    }
+
+    /**
+     * Returns the {@code file://} URI of a direct child given its parent's already encoded URI.
+     */
+    static String childUri(String parentUri, String name) {
+        StringBuilder builder = new StringBuilder(parentUri.length() + name.length() + 8);
+        builder.append(parentUri);
+        if (!parentUri.endsWith("/")) {
+            builder.append('/');
+        }
+        appendEncoded(builder, name, 0, name.length());
+        return builder.toString();
+    }
+
+    static String toUri(String absolutePath) {
+        StringBuilder builder = new StringBuilder(SCHEME_PREFIX.length() + absolutePath.length() + 8);
+        builder.append(SCHEME_PREFIX);
+        appendEncoded(builder, absolutePath, 0, absolutePath.length());
+        return builder.toString();
+    }
+
+    /**
+     * Appends {@code value[start, end)} percent-encoded, leaving unreserved characters and {@code '/'} untouched.
+     */
+    static void appendEncoded(StringBuilder builder, String value, int start, int end) {
+        int index = start;
+        while (index < end) {
+            int runStart = index;
+            while (index < end && isAllowed(value.charAt(index))) {
+                index++;
+            }
+            builder.append(value, runStart, index);
+            if (index == end) {
+                return;
+            }
+
+            int encodeStart = index;
+            while (index < end && !isAllowed(value.charAt(index))) {
+                index++;
+            }
+            byte[] bytes = value.substring(encodeStart, index).getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes) {
+                builder.append('%').append(HEX_DIGITS[(b & 0xf0) >> 4]).append(HEX_DIGITS[b & 0x0f]);
+            }
+        }
+    }
+
+    private static boolean isAllowed(char c) {
+        return (
+            (c >= 'a' && c <= 'z') ||
+            (c >= 'A' && c <= 'Z') ||
+            (c >= '0' && c <= '9') ||
+            "_-!.~'()*".indexOf(c) != -1 ||
+            c == '/'
+        );
+    }
+}
@@ -0,0 +1,181 @@
+package ee.forgr.capacitor.plugin.file;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.os.Build;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Downsampled, re-encoded copy of an image file, small enough to hand to the WebView as a data URL.
+ *
+ * The image is decoded with a power-of-two {@code inSampleSize}, so a 12 MP photo previewed at 256 px is never
+ * decoded at full resolution, then scaled to fit, rotated upright from its EXIF orientation and compressed as WebP,
+ * or as JPEG (PNG when it has transparency).
+ */
+final class ImagePreview {
+
+    final byte[] data;
+    final int length;
+    final String mimeType;
+    final int width;
+    final int height;
+    private volatile String dataUrl;
+
+    ImagePreview(byte[] data, int length, String mimeType, int width, int height) {
+        this.data = data;
+        this.length = length;
+        this.mimeType = mimeType;
+        this.width = width;
+        this.height = height;
+    }
+
+    static boolean supports(String mimeType) {
+        return mimeType.startsWith("image/") && !mimeType.equals("image/svg+xml");
+    }
+
+    /**
+     * Largest power of two that keeps the longer edge at or above {@code maxSize}.
+     */
+    static int sampleSize(int width, int height, int maxSize) {
+        int longest = Math.max(width, height);
+        int sample = 1;
+        while (longest / (sample * 2) >= maxSize) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    static ImagePreview create(File file, int maxSize, int quality) throws IOException {
+        return create(file, maxSize, quality, false);
+    }
+
+    static ImagePreview create(File file, int maxSize, int quality, boolean webp) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new FileEngineException(FileEngineException.TYPE_MISMATCH_ERR, "Unsupported image format");
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, maxSize);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (bitmap == null) {
+            throw new FileEngineException(FileEngineException.TYPE_MISMATCH_ERR, "Unsupported image format");
+        }
+
+        try {
+            bitmap = transform(bitmap, maxSize, orientation(file));
+            boolean alpha = bitmap.hasAlpha();
+            Bitmap.CompressFormat format;
+            String mimeType;
+            if (webp) {
+                format = webpFormat(alpha);
+                mimeType = "image/webp";
+            } else {
+                format = alpha ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+                mimeType = alpha ? "image/png" : "image/jpeg";
+            }
+            Buffer out = new Buffer();
+            bitmap.compress(format, quality, out);
+            return new ImagePreview(out.array(), out.size(), mimeType, bitmap.getWidth(), bitmap.getHeight());
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat(boolean alpha) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return alpha ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return Bitmap.CompressFormat.WEBP;
+    }
+
+    /**
+     * Returns the preview as a data URL, encoded on first use so cached previews are served without re-encoding.
+     */
+    String toDataUrl() {
+        String url = dataUrl;
+        if (url == null) {
+            url = Base64Codec.encodeToString("data:" + mimeType + ";base64,", data, length);
+            dataUrl = url;
+        }
+        return url;
+    }
+
+    /**
+     * Scales {@code source} to fit {@code maxSize} and applies the EXIF orientation in one pass, recycling the source
+     * when a new bitmap was created.
+     */
+    private static Bitmap transform(Bitmap source, int maxSize, int orientation) {
+        Matrix matrix = new Matrix();
+        int longest = Math.max(source.getWidth(), source.getHeight());
+        if (longest > maxSize) {
+            float scale = (float) maxSize / longest;
+            matrix.postScale(scale, scale);
+        }
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                // Mirrored across the top-left to bottom-right diagonal
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                // Mirrored across the top-right to bottom-left diagonal
+                matrix.postRotate(270);
+                matrix.postScale(-1, 1);
+                break;
+            default:
+                if (longest <= maxSize) {
+                    return source;
+                }
+        }
+
+        Bitmap result = Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
+        if (result != source) {
+            source.recycle();
+        }
+        return result;
+    }
+
+    private static int orientation(File file) {
+        try {
+            ExifInterface exif = new ExifInterface(file.getAbsolutePath());
+            return exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException | RuntimeException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /** Exposes the internal array so the compressed image is not copied before encoding. */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(64 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * File system calls that {@code java.io} lacks on the supported API levels, behind an interface so the code using
+ * them runs on a plain JVM in tests. {@link AndroidNativeIo} implements them with {@code android.system.Os}.
+ */
+interface NativeIo {
+    /** Creates {@code link} as a hard link to {@code existing}; both must be on the same file system. */
+    void link(File existing, File link) throws IOException;
+
+    /** Number of hard links to the file's inode. */
+    long linkCount(File file) throws IOException;
+
+    /**
+     * Allocates disk blocks for {@code [offset, offset + length)} of an open file, extending it when needed.
+     * Returns false when the file system can't preallocate, and throws when it is out of space.
+     */
+    boolean allocate(FileDescriptor fd, long offset, long length) throws IOException;
+
+    /** Flushes a directory's entries to disk, so files created, renamed or removed in it survive a crash. */
+    void syncDirectory(File dir) throws IOException;
+}
@@ -0,0 +1,180 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms the page cache by reading files in the background, for {@code prefetch} and the {@code advise} hints.
+ *
+ * The public SDK doesn't expose {@code posix_fadvise}, so WILLNEED is done the portable way: a low-priority
+ * reader pulls the range through one direct buffer, and later reads hit the cache. Files advised as sequential
+ * get read-ahead: every read through the engine keeps the next {@link #READ_AHEAD} bytes warming. Requests run
+ * one at a time in order, and DONTNEED drops any queued or running work for the file.
+ */
+final class PageCacheWarmer {
+
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    /** How far ahead of the last read a sequential file is kept warm. */
+    static final long READ_AHEAD = 2 * 1024 * 1024;
+
+    private static final class Warm {
+
+        final File file;
+        final long offset;
+        final long length;
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        volatile boolean cancelled;
+
+        Warm(File file, long offset, long length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final Executor executor;
+    private final ArrayDeque<Warm> queue = new ArrayDeque<>();
+    private Warm running;
+    private boolean draining;
+    private ByteBuffer buffer;
+
+    /** Files advised as sequential, mapped to the offset read-ahead has been scheduled up to. */
+    private final Map<String, AtomicLong> sequential = new ConcurrentHashMap<>();
+
+    PageCacheWarmer(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Reads {@code length} bytes from {@code offset} (to the end of the file when negative) into the page cache.
+     * Completes with the number of bytes read, which is short when the request was dropped by DONTNEED and zero
+     * when the file is gone.
+     */
+    CompletableFuture<Long> warm(File file, long offset, long length) {
+        Warm warm = new Warm(file, offset, length);
+        boolean start;
+        synchronized (this) {
+            queue.add(warm);
+            start = !draining;
+            draining = true;
+        }
+        if (start) {
+            executor.execute(this::drain);
+        }
+        return warm.result;
+    }
+
+    void advise(File file, ReadAdvice advice, long offset, long length) {
+        String path = file.getAbsolutePath();
+        switch (advice) {
+            case SEQUENTIAL:
+                sequential.putIfAbsent(path, new AtomicLong(offset));
+                break;
+            case WILLNEED:
+                warm(file, offset, length);
+                break;
+            case DONTNEED:
+                sequential.remove(path);
+                cancel(path);
+                break;
+            default:
+                sequential.remove(path);
+                break;
+        }
+    }
+
+    /**
+     * Called after the engine reads {@code [offset, offset + length)}; keeps sequential files warm ahead of the reader.
+     */
+    void onRead(File file, long offset, long length) {
+        if (sequential.isEmpty()) {
+            return;
+        }
+        AtomicLong scheduled = sequential.get(file.getAbsolutePath());
+        if (scheduled == null) {
+            return;
+        }
+        long end = offset + length;
+        long from = scheduled.get();
+        // Top up once the reader is halfway into the warmed window, so it never catches up with the warmer
+        if (end + READ_AHEAD / 2 <= from) {
+            return;
+        }
+        long start = Math.max(from, end);
+        long until = end + READ_AHEAD;
+        if (scheduled.compareAndSet(from, until)) {
+            warm(file, start, until - start);
+        }
+    }
+
+    private void cancel(String path) {
+        synchronized (this) {
+            Iterator<Warm> pending = queue.iterator();
+            while (pending.hasNext()) {
+                Warm warm = pending.next();
+                if (warm.file.getAbsolutePath().equals(path)) {
+                    pending.remove();
+                    warm.result.complete(0L);
+                }
+            }
+            if (running != null && running.file.getAbsolutePath().equals(path)) {
+                running.cancelled = true;
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Warm warm;
+            synchronized (this) {
+                warm = queue.poll();
+                running = warm;
+                if (warm == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                warm.result.complete(read(warm));
+            } catch (IOException | RuntimeException e) {
+                warm.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private long read(Warm warm) throws IOException {
+        if (buffer == null) {
+            // Only the draining thread reads, so one buffer is enough; direct, so the bytes are never copied to the heap
+            buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        try (FileInputStream in = new FileInputStream(warm.file)) {
+            FileChannel channel = in.getChannel();
+            long end = warm.length < 0 ? channel.size() : Math.min(channel.size(), warm.offset + warm.length);
+            long position = Math.max(0, warm.offset);
+            while (position < end && !warm.cancelled) {
+                buffer.clear();
+                buffer.limit((int) Math.min(CHUNK_SIZE, end - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+            }
+            return Math.max(0, position - Math.max(0, warm.offset));
+        } catch (FileNotFoundException e) {
+            return 0;
+        }
+    }
+}
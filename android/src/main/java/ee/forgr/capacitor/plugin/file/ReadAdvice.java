@@ -0,0 +1,17 @@
+package ee.forgr.capacitor.plugin.file;
+
+/**
+ * Expected access pattern of a file, for {@link FileEngine#advise}. Mirrors the {@code posix_fadvise} advice values.
+ */
+public enum ReadAdvice {
+    /** No particular pattern; turns off sequential read-ahead. */
+    NORMAL,
+    /** Read front to back: the engine keeps the range after each read warm. */
+    SEQUENTIAL,
+    /** Read in no particular order; turns off sequential read-ahead. */
+    RANDOM,
+    /** The range will be read soon: warm it now, in the background. */
+    WILLNEED,
+    /** The file won't be read again soon: stop read-ahead and drop pending warming for it. */
+    DONTNEED
+}
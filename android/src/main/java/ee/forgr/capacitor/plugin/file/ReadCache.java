@@ -0,0 +1,165 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Byte-bounded LRU cache of whole-file reads, holding the response already encoded (Base64 or decoded text), so a hit
+ * costs two stat calls instead of an open, a read and an encode.
+ *
+ * Entries are keyed by absolute path and encoding, and are only served while the file's (size, mtime) still match
+ * what was read. That alone can miss a same-size rewrite within the file system's mtime granularity, so every
+ * mutation also calls {@link #invalidate} once it ends; a read that raced a mutation is not kept, since invalidation
+ * bumps a generation that the read checks before storing its result. Files larger than {@link #MAX_FILE_BYTES} are
+ * read around the cache.
+ */
+final class ReadCache {
+
+    interface Loader {
+        String load() throws IOException;
+    }
+
+    static final long MAX_FILE_BYTES = 256 * 1024;
+
+    /** Counters since the last {@link #resetStats()}, and the current contents. */
+    static final class Stats {
+
+        final long hits;
+        final long misses;
+        final long evictions;
+        final int entries;
+        final long bytes;
+
+        Stats(long hits, long misses, long evictions, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        /** Share of lookups served from memory, or 0 before the first lookup. */
+        double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private static final class Entry {
+
+        final String path;
+        final long size;
+        final long modified;
+        final String value;
+
+        Entry(String path, long size, long modified, String value) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.value = value;
+        }
+
+        /** UTF-16 characters plus the key and bookkeeping. */
+        long weight() {
+            return 2L * (value.length() + path.length()) + 96;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ReadCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached response for {@code file} in {@code encoding}, or loads, caches and returns it.
+     * Runs on an I/O thread, since validating an entry stats the file.
+     */
+    String get(File file, String encoding, Loader loader) throws IOException {
+        long size = file.length();
+        long modified = file.lastModified();
+        String path = file.getAbsolutePath();
+        String key = path + '\n' + encoding;
+        long observed;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.size == size && entry.modified == modified && modified != 0) {
+                hits++;
+                return entry.value;
+            }
+            if (entry != null) {
+                remove(key, entry);
+            }
+            misses++;
+            observed = generation;
+        }
+
+        String value = loader.load();
+        if (modified != 0 && size <= MAX_FILE_BYTES) {
+            put(key, new Entry(path, size, modified, value), observed);
+        }
+        return value;
+    }
+
+    private synchronized void put(String key, Entry entry, long observed) {
+        long weight = entry.weight();
+        if (observed != generation || weight > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.weight();
+        }
+        bytes += weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().weight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        bytes -= entry.weight();
+    }
+
+    /** Drops the entries of {@code file}, or of every file under it when it is a directory. */
+    synchronized void invalidate(File file) {
+        generation++;
+        if (entries.isEmpty()) {
+            return;
+        }
+        String path = file.getAbsolutePath();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (DiskQuota.isWithin(entry.path, path)) {
+                bytes -= entry.weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+}
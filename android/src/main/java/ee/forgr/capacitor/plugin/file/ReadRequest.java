@@ -0,0 +1,36 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+
+/**
+ * Byte range read of a file for {@link FileEngine#read(ReadRequest)}.
+ */
+public final class ReadRequest {
+
+    final File file;
+    long offset;
+    Integer length;
+    boolean encrypted;
+
+    public ReadRequest(File file) {
+        this.file = file;
+    }
+
+    /** Byte offset to start reading from (default 0). */
+    public ReadRequest offset(long offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    /** Number of bytes to read, or null to read to the end of the file. */
+    public ReadRequest length(Integer length) {
+        this.length = length;
+        return this;
+    }
+
+    /** Decrypt a file written with {@link WriteRequest#encrypted(boolean)}; offset and length are plaintext bytes. */
+    public ReadRequest encrypted(boolean encrypted) {
+        this.encrypted = encrypted;
+        return this;
+    }
+}
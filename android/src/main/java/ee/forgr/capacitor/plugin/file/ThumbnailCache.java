@@ -0,0 +1,231 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Two-level LRU cache of image thumbnails, keyed by (path, size, mtime) plus the requested rendering.
+ *
+ * Lookups run on the I/O executor: memory first, then the disk cache. Misses are decoded on the decoder executor,
+ * whose thread count caps how many bitmaps are in memory at once, and concurrent requests for the same thumbnail
+ * share one decode. A changed file gets a new key, so stale entries are never served and simply age out.
+ */
+final class ThumbnailCache {
+
+    interface Decoder {
+        ImagePreview decode(File file, int maxSize, int quality, boolean webp) throws IOException;
+    }
+
+    private static final String SUFFIX = ".thumb";
+
+    private final File directory;
+    private final long memoryLimit;
+    private final long diskLimit;
+    private final Executor io;
+    private final Executor decoders;
+    private final Decoder decoder;
+
+    private final LinkedHashMap<String, ImagePreview> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private final Map<String, CompletableFuture<ImagePreview>> decoding = new ConcurrentHashMap<>();
+    private long diskBytes = -1;
+
+    ThumbnailCache(File directory, long memoryLimit, long diskLimit, Executor io, Executor decoders, Decoder decoder) {
+        this.directory = directory;
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+        this.io = io;
+        this.decoders = decoders;
+        this.decoder = decoder;
+    }
+
+    CompletableFuture<ImagePreview> get(File file, int maxSize, int quality, boolean webp) {
+        CompletableFuture<String> key = CompletableFuture.supplyAsync(() -> key(file, maxSize, quality, webp), io);
+        return key.thenComposeAsync(
+            (cacheKey) -> {
+                ImagePreview cached = fromMemory(cacheKey);
+                if (cached == null) {
+                    cached = fromDisk(cacheKey);
+                }
+                if (cached != null) {
+                    return CompletableFuture.completedFuture(cached);
+                }
+                return decode(cacheKey, file, maxSize, quality, webp);
+            },
+            io
+        );
+    }
+
+    private CompletableFuture<ImagePreview> decode(String cacheKey, File file, int maxSize, int quality, boolean webp) {
+        CompletableFuture<ImagePreview> future = new CompletableFuture<>();
+        CompletableFuture<ImagePreview> running = decoding.putIfAbsent(cacheKey, future);
+        if (running != null) {
+            return running;
+        }
+        decoders.execute(() -> {
+            try {
+                ImagePreview preview = decoder.decode(file, maxSize, quality, webp);
+                toMemory(cacheKey, preview);
+                toDisk(cacheKey, preview);
+                future.complete(preview);
+            } catch (Throwable error) {
+                future.completeExceptionally(error);
+            } finally {
+                decoding.remove(cacheKey);
+            }
+        });
+        return future;
+    }
+
+    private static String key(File file, int maxSize, int quality, boolean webp) {
+        if (!file.isFile()) {
+            throw new CompletionException(new FileEngineException(FileEngineException.NOT_FOUND_ERR, "File not found"));
+        }
+        return file.getAbsolutePath() + '\n' + file.length() + '\n' + file.lastModified() + '\n' + maxSize + '\n' + quality + '\n' + webp;
+    }
+
+    // Memory
+
+    private synchronized ImagePreview fromMemory(String key) {
+        return memory.get(key);
+    }
+
+    private synchronized void toMemory(String key, ImagePreview preview) {
+        long weight = weight(preview);
+        if (weight > memoryLimit) {
+            return;
+        }
+        ImagePreview previous = memory.put(key, preview);
+        if (previous != null) {
+            memoryBytes -= weight(previous);
+        }
+        memoryBytes += weight;
+        Iterator<ImagePreview> eldest = memory.values().iterator();
+        while (memoryBytes > memoryLimit && eldest.hasNext()) {
+            memoryBytes -= weight(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /** Compressed bytes plus the Latin-1 data URL built on first use. */
+    private static long weight(ImagePreview preview) {
+        return preview.length + 64 + Base64Codec.encodedLength(preview.length);
+    }
+
+    synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    synchronized long memoryBytes() {
+        return memoryBytes;
+    }
+
+    // Disk
+
+    private ImagePreview fromDisk(String key) {
+        File file = new File(directory, hash(key) + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            String mimeType = in.readUTF();
+            int width = in.readInt();
+            int height = in.readInt();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            // Refresh the entry's position in the disk LRU
+            file.setLastModified(System.currentTimeMillis());
+            ImagePreview preview = new ImagePreview(data, data.length, mimeType, width, height);
+            toMemory(key, preview);
+            return preview;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void toDisk(String key, ImagePreview preview) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        File target = new File(directory, hash(key) + SUFFIX);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeUTF(preview.mimeType);
+            out.writeInt(preview.width);
+            out.writeInt(preview.height);
+            out.writeInt(preview.length);
+            out.write(preview.data, 0, preview.length);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (temp.renameTo(target)) {
+            trimDisk(target.length());
+        } else {
+            temp.delete();
+        }
+    }
+
+    private synchronized void trimDisk(long added) {
+        if (diskBytes >= 0) {
+            diskBytes += added;
+            if (diskBytes <= diskLimit) {
+                return;
+            }
+        }
+
+        // Recount from the listing (the running total drifts when entries are replaced), then evict least
+        // recently used entries down to 90% of the budget so trimming doesn't run on every write
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        diskBytes = 0;
+        for (File file : files) {
+            diskBytes += file.length();
+        }
+        if (diskBytes <= diskLimit) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long target = diskLimit * 9 / 10;
+        for (File file : files) {
+            if (diskBytes <= target) break;
+            long size = file.length();
+            if (file.delete()) {
+                diskBytes -= size;
+            }
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
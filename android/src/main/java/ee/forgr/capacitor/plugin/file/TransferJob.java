@@ -0,0 +1,241 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Persistent record of a background file job: what to do, where it stands, and the checkpoint to resume from.
+ *
+ * Each job lives in its own {@code <id>.job} properties file, written atomically through a temp file and rename,
+ * so a process kill never leaves a half-written checkpoint. Cancellation is a separate {@code <id>.cancel} marker
+ * that the worker cannot overwrite while saving progress.
+ */
+final class TransferJob {
+
+    enum Type {
+        COPY,
+        UNZIP
+    }
+
+    enum State {
+        ENQUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED
+    }
+
+    private static final String JOB_SUFFIX = ".job";
+
+    final File jobsDir;
+    final String id;
+    final Type type;
+    final File source;
+    final File destination;
+    final boolean foreground;
+
+    State state = State.ENQUEUED;
+    /** Index in the plan of the first item not fully processed. */
+    int itemIndex;
+    /** Bytes of the current item already durable at the destination. */
+    long itemOffset;
+    long bytesDone;
+    long bytesTotal = -1;
+    int itemsDone;
+    int itemsTotal = -1;
+    String error;
+    long createdAt;
+    long updatedAt;
+
+    private TransferJob(File jobsDir, String id, Type type, File source, File destination, boolean foreground) {
+        this.jobsDir = jobsDir;
+        this.id = id;
+        this.type = type;
+        this.source = source;
+        this.destination = destination;
+        this.foreground = foreground;
+    }
+
+    static TransferJob create(File jobsDir, Type type, File source, File destination, boolean foreground) throws IOException {
+        if (!jobsDir.exists() && !jobsDir.mkdirs()) {
+            throw new IOException("Cannot create " + jobsDir);
+        }
+        TransferJob job = new TransferJob(jobsDir, UUID.randomUUID().toString(), type, source, destination, foreground);
+        job.createdAt = System.currentTimeMillis();
+        job.save();
+        return job;
+    }
+
+    /**
+     * Loads a job record, or returns null when it does not exist.
+     */
+    static TransferJob load(File jobsDir, String id) throws IOException {
+        File file = new File(jobsDir, id + JOB_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+
+        TransferJob job = new TransferJob(
+            jobsDir,
+            id,
+            Type.valueOf(properties.getProperty("type")),
+            new File(properties.getProperty("source")),
+            new File(properties.getProperty("destination")),
+            Boolean.parseBoolean(properties.getProperty("foreground"))
+        );
+        job.state = State.valueOf(properties.getProperty("state", State.ENQUEUED.name()));
+        job.itemIndex = Integer.parseInt(properties.getProperty("itemIndex", "0"));
+        job.itemOffset = Long.parseLong(properties.getProperty("itemOffset", "0"));
+        job.bytesDone = Long.parseLong(properties.getProperty("bytesDone", "0"));
+        job.bytesTotal = Long.parseLong(properties.getProperty("bytesTotal", "-1"));
+        job.itemsDone = Integer.parseInt(properties.getProperty("itemsDone", "0"));
+        job.itemsTotal = Integer.parseInt(properties.getProperty("itemsTotal", "-1"));
+        job.error = properties.getProperty("error");
+        job.createdAt = Long.parseLong(properties.getProperty("createdAt", "0"));
+        job.updatedAt = Long.parseLong(properties.getProperty("updatedAt", "0"));
+        return job;
+    }
+
+    static List<TransferJob> loadAll(File jobsDir) {
+        List<TransferJob> jobs = new ArrayList<>();
+        String[] names = jobsDir.list();
+        if (names == null) {
+            return jobs;
+        }
+        for (String name : names) {
+            if (!name.endsWith(JOB_SUFFIX)) continue;
+            try {
+                TransferJob job = load(jobsDir, name.substring(0, name.length() - JOB_SUFFIX.length()));
+                if (job != null) {
+                    jobs.add(job);
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // A corrupt record is skipped rather than failing the whole listing
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Deletes records of jobs that finished more than {@code maxAgeMs} ago.
+     */
+    static void pruneFinished(File jobsDir, long maxAgeMs) {
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        for (TransferJob job : loadAll(jobsDir)) {
+            if (job.isFinished() && job.updatedAt < cutoff) {
+                job.delete();
+            }
+        }
+    }
+
+    synchronized void save() throws IOException {
+        updatedAt = System.currentTimeMillis();
+        Properties properties = new Properties();
+        properties.setProperty("type", type.name());
+        properties.setProperty("source", source.getAbsolutePath());
+        properties.setProperty("destination", destination.getAbsolutePath());
+        properties.setProperty("foreground", Boolean.toString(foreground));
+        properties.setProperty("state", state.name());
+        properties.setProperty("itemIndex", Integer.toString(itemIndex));
+        properties.setProperty("itemOffset", Long.toString(itemOffset));
+        properties.setProperty("bytesDone", Long.toString(bytesDone));
+        properties.setProperty("bytesTotal", Long.toString(bytesTotal));
+        properties.setProperty("itemsDone", Integer.toString(itemsDone));
+        properties.setProperty("itemsTotal", Integer.toString(itemsTotal));
+        properties.setProperty("createdAt", Long.toString(createdAt));
+        properties.setProperty("updatedAt", Long.toString(updatedAt));
+        if (error != null) {
+            properties.setProperty("error", error);
+        }
+
+        File target = new File(jobsDir, id + JOB_SUFFIX);
+        File temp = new File(jobsDir, id + JOB_SUFFIX + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, null);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Cannot save job " + id);
+        }
+    }
+
+    File planFile() {
+        return new File(jobsDir, id + ".plan");
+    }
+
+    private File cancelMarker() {
+        return new File(jobsDir, id + ".cancel");
+    }
+
+    boolean isCancelled() {
+        return cancelMarker().exists();
+    }
+
+    void markCancelled() throws IOException {
+        File marker = cancelMarker();
+        if (!marker.exists() && !marker.createNewFile() && !marker.exists()) {
+            throw new IOException("Cannot cancel job " + id);
+        }
+    }
+
+    /**
+     * State as seen by callers: a cancel request wins over whatever the worker last saved, unless the job already finished.
+     */
+    State effectiveState() {
+        if (isCancelled() && state != State.SUCCEEDED && state != State.FAILED) {
+            return State.CANCELLED;
+        }
+        return state;
+    }
+
+    boolean isFinished() {
+        State current = effectiveState();
+        return current == State.SUCCEEDED || current == State.FAILED || current == State.CANCELLED;
+    }
+
+    void delete() {
+        new File(jobsDir, id + JOB_SUFFIX).delete();
+        planFile().delete();
+        cancelMarker().delete();
+    }
+
+    static void writeLines(File file, List<String> lines) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
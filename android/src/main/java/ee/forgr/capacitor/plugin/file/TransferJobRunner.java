@@ -0,0 +1,272 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Executes a {@link TransferJob} from its last checkpoint, free of WorkManager types so it can be tested on the JVM.
+ *
+ * The first run writes a plan (relative paths for a copy, entry names for an unzip) next to the job record; later runs
+ * read it back, so the work list never changes under a resumed job. Progress is checkpointed every
+ * {@link #CHECKPOINT_BYTES} or {@link #CHECKPOINT_MS}, whichever comes first, after forcing the destination to disk,
+ * which bounds the work redone after a process kill. Small items are not checkpointed one by one: a resumed job
+ * redoes the few finished since the last checkpoint, which is cheaper than saving the job after each of thousands. An
+ * archive is opened once per run, since opening it reads its whole central directory.
+ */
+final class TransferJobRunner {
+
+    interface Control {
+        /** True when the job should stop at the next checkpoint, e.g. because WorkManager stopped the worker. */
+        boolean isStopped();
+
+        void onProgress(TransferJob job);
+    }
+
+    static final long CHECKPOINT_BYTES = 4L * 1024 * 1024;
+    static final long CHECKPOINT_MS = 1000;
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    private final TransferJob job;
+    private final Control control;
+    private long bytesSinceCheckpoint;
+    private long checkpointedAt = System.nanoTime();
+
+    TransferJobRunner(TransferJob job, Control control) {
+        this.job = job;
+        this.control = control;
+    }
+
+    /**
+     * Runs the job until it finishes or is stopped. Returns true when all items were processed; the job record then
+     * still has to be marked as succeeded by the caller.
+     */
+    boolean run() throws IOException {
+        List<String> plan = loadPlan();
+        try (ZipFile zip = job.type == TransferJob.Type.UNZIP ? new ZipFile(job.source) : null) {
+            while (job.itemIndex < plan.size()) {
+                if (shouldStop()) {
+                    checkpoint();
+                    return false;
+                }
+                String item = plan.get(job.itemIndex);
+                boolean done = zip == null ? copyItem(item) : unzipItem(zip, item);
+                if (!done) {
+                    return false;
+                }
+                job.itemIndex++;
+                job.itemOffset = 0;
+                job.itemsDone++;
+                if (checkpointDue()) {
+                    checkpoint();
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<String> loadPlan() throws IOException {
+        File planFile = job.planFile();
+        if (planFile.isFile()) {
+            return TransferJob.readLines(planFile);
+        }
+
+        List<String> plan = new ArrayList<>();
+        long total = 0;
+        if (job.type == TransferJob.Type.COPY) {
+            if (!job.source.exists()) {
+                throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Source file not found");
+            }
+            total = planCopy(job.source, "", plan);
+        } else {
+            try (ZipFile zip = new ZipFile(job.source)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    resolveEntry(entry.getName());
+                    plan.add(entry.getName());
+                    if (!entry.isDirectory() && total >= 0) {
+                        total = entry.getSize() < 0 ? -1 : total + entry.getSize();
+                    }
+                }
+            }
+        }
+        TransferJob.writeLines(planFile, plan);
+        job.bytesTotal = total;
+        job.itemsTotal = plan.size();
+        checkpoint();
+        return plan;
+    }
+
+    /**
+     * Adds {@code file} and its descendants to the plan; directories end with '/' so they are created before their children.
+     */
+    private static long planCopy(File file, String relative, List<String> plan) {
+        if (!file.isDirectory()) {
+            plan.add(relative);
+            return file.length();
+        }
+        plan.add(relative.isEmpty() ? "/" : relative + "/");
+        long total = 0;
+        String[] children = file.list();
+        if (children != null) {
+            for (String child : children) {
+                total += planCopy(new File(file, child), relative.isEmpty() ? child : relative + "/" + child, plan);
+            }
+        }
+        return total;
+    }
+
+    private boolean copyItem(String item) throws IOException {
+        if (item.endsWith("/")) {
+            File dir = item.equals("/") ? job.destination : new File(job.destination, item.substring(0, item.length() - 1));
+            ensureDirectory(dir);
+            return true;
+        }
+
+        File source = item.isEmpty() ? job.source : new File(job.source, item);
+        File target = item.isEmpty() ? job.destination : new File(job.destination, item);
+        if (!source.isFile()) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Source file not found");
+        }
+        ensureDirectory(target.getParentFile());
+        replaceOnStart(target);
+
+        try (
+            FileChannel in = new FileInputStream(source).getChannel();
+            RandomAccessFile raf = new RandomAccessFile(target, "rw")
+        ) {
+            FileChannel out = raf.getChannel();
+            // Anything past the checkpoint may be torn; drop it and continue from the last durable offset
+            out.truncate(job.itemOffset);
+            long size = in.size();
+            while (job.itemOffset < size) {
+                long transferred = in.transferTo(job.itemOffset, Math.min(CHUNK_SIZE, size - job.itemOffset), out.position(job.itemOffset));
+                if (transferred <= 0) {
+                    break;
+                }
+                job.itemOffset += transferred;
+                job.bytesDone += transferred;
+                bytesSinceCheckpoint += transferred;
+                if (checkpointDue()) {
+                    out.force(false);
+                    checkpoint();
+                    if (shouldStop()) {
+                        return false;
+                    }
+                }
+            }
+            out.force(false);
+        }
+        return true;
+    }
+
+    /**
+     * Removes an existing target before an item starts, so it is written to a new inode instead of truncating one
+     * that {@link ContentStore} may share with other paths.
+     */
+    private void replaceOnStart(File target) {
+        if (job.itemOffset == 0 && target.isFile()) {
+            target.delete();
+        }
+    }
+
+    private boolean unzipItem(ZipFile zip, String name) throws IOException {
+        File target = resolveEntry(name);
+        if (name.endsWith("/")) {
+            ensureDirectory(target);
+            return true;
+        }
+        ensureDirectory(target.getParentFile());
+        replaceOnStart(target);
+
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            throw new FileEngineException(FileEngineException.NOT_FOUND_ERR, "Zip entry not found");
+        }
+        try (InputStream in = zip.getInputStream(entry); RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            FileChannel out = raf.getChannel();
+            out.truncate(job.itemOffset);
+            skipFully(in, job.itemOffset);
+            out.position(job.itemOffset);
+
+            byte[] buffer = new byte[CHUNK_SIZE];
+            ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                wrapped.clear().limit(read);
+                while (wrapped.hasRemaining()) {
+                    out.write(wrapped);
+                }
+                job.itemOffset += read;
+                job.bytesDone += read;
+                bytesSinceCheckpoint += read;
+                if (checkpointDue()) {
+                    out.force(false);
+                    checkpoint();
+                    if (shouldStop()) {
+                        return false;
+                    }
+                }
+            }
+            out.force(false);
+        }
+        return true;
+    }
+
+    /**
+     * Maps an entry name below the destination, rejecting names that escape it ("zip slip").
+     */
+    private File resolveEntry(String name) throws IOException {
+        File root = job.destination.getCanonicalFile();
+        File target = new File(root, name).getCanonicalFile();
+        if (!target.equals(root) && !target.getPath().startsWith(root.getPath() + File.separator)) {
+            throw new FileEngineException(FileEngineException.INVALID_MODIFICATION_ERR, "Zip entry is outside the destination");
+        }
+        return target;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("Zip entry is shorter than its checkpoint");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void ensureDirectory(File dir) throws IOException {
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Failed to create directory");
+        }
+    }
+
+    private boolean shouldStop() {
+        return job.isCancelled() || control.isStopped();
+    }
+
+    private boolean checkpointDue() {
+        return bytesSinceCheckpoint >= CHECKPOINT_BYTES || System.nanoTime() - checkpointedAt >= CHECKPOINT_MS * 1_000_000;
+    }
+
+    private void checkpoint() throws IOException {
+        job.save();
+        control.onProgress(job);
+        bytesSinceCheckpoint = 0;
+        checkpointedAt = System.nanoTime();
+    }
+}
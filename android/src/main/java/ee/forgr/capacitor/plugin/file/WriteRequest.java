@@ -0,0 +1,81 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+
+/**
+ * Write of a byte or Base64 payload for {@link FileEngine#write(WriteRequest)}.
+ * By default the file is replaced; {@link #append(boolean)} and {@link #position(Integer)} only apply to existing files.
+ */
+public final class WriteRequest {
+
+    final File file;
+    final byte[] data;
+    final String base64;
+    boolean append;
+    Integer position;
+    long preallocate;
+    boolean encrypted;
+    boolean recursive;
+
+    public WriteRequest(File file, byte[] data) {
+        this(file, data, null);
+    }
+
+    private WriteRequest(File file, byte[] data, String base64) {
+        this.file = file;
+        this.data = data;
+        this.base64 = base64;
+    }
+
+    /**
+     * Write of Base64 text, decoded chunk by chunk into the file instead of being decoded to an array first.
+     * The write fails with ENCODING_ERR and leaves the file as it was when the text is not Base64.
+     */
+    public static WriteRequest fromBase64(File file, String base64) {
+        return new WriteRequest(file, null, base64);
+    }
+
+    /** Append to the end of the file instead of replacing it. */
+    public WriteRequest append(boolean append) {
+        this.append = append;
+        return this;
+    }
+
+    /** Write at this byte position instead of replacing the file. */
+    public WriteRequest position(Integer position) {
+        this.position = position;
+        return this;
+    }
+
+    /**
+     * With {@link #position(Integer)}: reserve space for a file of this total size first, creating it if needed,
+     * so the chunks of a download can arrive in any order. See {@link FileEngine#preallocate}.
+     */
+    public WriteRequest preallocate(long size) {
+        this.preallocate = size;
+        return this;
+    }
+
+    /**
+     * Encrypt the data at rest, see {@link EncryptedFiles}. Appends and positional writes need the existing file to
+     * be encrypted too, and {@link #preallocate(long)} is ignored, since the file size isn't the data size.
+     */
+    public WriteRequest encrypted(boolean encrypted) {
+        this.encrypted = encrypted;
+        return this;
+    }
+
+    /** Create missing parent directories. */
+    public WriteRequest recursive(boolean recursive) {
+        this.recursive = recursive;
+        return this;
+    }
+
+    /** A write of the same data replacing another file, e.g. a staging file. */
+    WriteRequest to(File file) {
+        WriteRequest request = new WriteRequest(file, data, base64);
+        request.encrypted = encrypted;
+        request.recursive = recursive;
+        return request;
+    }
+}
@@ -0,0 +1,17 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+
+/**
+ * Outcome of a write, copy or move: the file written and the number of bytes that went to disk.
+ */
+public final class WriteResult {
+
+    public final File file;
+    public final long bytesWritten;
+
+    public WriteResult(File file, long bytesWritten) {
+        this.file = file;
+        this.bytesWritten = bytesWritten;
+    }
+}
@@ -0,0 +1,105 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static ee.forgr.capacitor.plugin.file.BenchmarkRunner.MB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Base64;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares {@link Base64Codec} with the JDK codec on the readFile/writeFile bridge paths, for 1 to 100 MB payloads.
+ * The "jdk" rows reproduce what the plugin did before: a whole-file byte[] plus {@code encodeToString}, and
+ * {@code decode} to a byte[] followed by a write.
+ *
+ * Run with {@code ./gradlew testDebugUnitTest -PcapacitorFileBenchmark --tests '*Base64CodecBenchmark'}.
+ */
+public class Base64CodecBenchmark {
+
+    private static final long[] PAYLOAD_SIZES = { MB, 10 * MB, 100 * MB };
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("benchmarks disabled", BenchmarkRunner.enabled());
+        root = BenchmarkRunner.scratchDirectory("base64");
+    }
+
+    @After
+    public void tearDown() {
+        if (root != null) {
+            FileOperations.deleteRecursively(root);
+        }
+    }
+
+    @Test
+    public void encode() throws Exception {
+        for (long size : PAYLOAD_SIZES) {
+            if (!fits(size)) continue;
+            byte[] data = FileOperationsBenchmark.randomBytes((int) size);
+            int iterations = BenchmarkRunner.iterationsFor(size);
+            BenchmarkRunner.run("encode jdk " + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                Base64.getEncoder().encodeToString(data)
+            );
+            BenchmarkRunner.run("encode codec " + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                Base64Codec.encodeToString(data)
+            );
+        }
+    }
+
+    @Test
+    public void decode() throws Exception {
+        for (long size : PAYLOAD_SIZES) {
+            if (!fits(size)) continue;
+            String encoded = Base64.getEncoder().encodeToString(FileOperationsBenchmark.randomBytes((int) size));
+            int iterations = BenchmarkRunner.iterationsFor(size);
+            BenchmarkRunner.run("decode jdk " + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                Base64.getDecoder().decode(encoded)
+            );
+            BenchmarkRunner.run("decode codec " + BenchmarkRunner.label(size), size, 2, iterations, (i) -> Base64Codec.decode(encoded));
+        }
+    }
+
+    @Test
+    public void readFileAsBase64() throws Exception {
+        for (long size : PAYLOAD_SIZES) {
+            if (!fits(size)) continue;
+            File file = FileOperationsBenchmark.createFile(new File(root, "read-" + size), size);
+            int iterations = BenchmarkRunner.iterationsFor(size);
+            BenchmarkRunner.run("readFile base64 jdk " + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                Base64.getEncoder().encodeToString(FileOperations.readRange(file, 0, null))
+            );
+            BenchmarkRunner.run("readFile base64 codec " + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                FileOperations.readBase64(file, 0, null, "")
+            );
+            file.delete();
+        }
+    }
+
+    @Test
+    public void writeFileFromBase64() throws Exception {
+        for (long size : PAYLOAD_SIZES) {
+            if (!fits(size)) continue;
+            String encoded = Base64.getEncoder().encodeToString(FileOperationsBenchmark.randomBytes((int) size));
+            File file = new File(root, "write-" + size);
+            int iterations = BenchmarkRunner.iterationsFor(size);
+            BenchmarkRunner.run("writeFile base64 jdk " + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                FileOperations.write(file, Base64.getDecoder().decode(encoded), false, null)
+            );
+            BenchmarkRunner.run("writeFile base64 codec " + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                assertEquals(size, FileOperations.writeBase64(file, encoded, false, null))
+            );
+            file.delete();
+        }
+    }
+
+    private static boolean fits(long size) {
+        // The payload is held as bytes and as a Base64 String (4/3 larger) at the same time
+        return size <= BenchmarkRunner.maxBytes() && size * 4 < Runtime.getRuntime().maxMemory();
+    }
+}
@@ -0,0 +1,94 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Test;
+
+public class Base64CodecTest {
+
+    @Test
+    public void matchesJdkEncoder() {
+        Random random = new Random(42);
+        for (int size = 0; size < 64; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            byte[] encoded = new byte[(int) Base64Codec.encodedLength(size)];
+            assertEquals(encoded.length, Base64Codec.encode(data, 0, size, encoded, 0));
+            assertEquals(Base64.getEncoder().encodeToString(data), new String(encoded, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void encodesInChunks() {
+        byte[] data = new byte[10_000];
+        new Random(7).nextBytes(data);
+        byte[] encoded = new byte[(int) Base64Codec.encodedLength(data.length)];
+        int written = 0;
+        for (int offset = 0; offset < data.length; offset += 999) {
+            written += Base64Codec.encode(data, offset, Math.min(999, data.length - offset), encoded, written);
+        }
+        assertEquals(Base64.getEncoder().encodeToString(data), new String(encoded, 0, written, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void prefixesDataUrls() {
+        byte[] data = "hi!".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("data:text/plain;base64,aGkh", Base64Codec.encodeToString("data:text/plain;base64,", data, data.length));
+    }
+
+    @Test
+    public void decodesLikeJdkDecoder() {
+        Random random = new Random(1);
+        for (int size = 0; size < 64; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            String encoded = Base64.getEncoder().encodeToString(data);
+            assertArrayEquals(data, Base64Codec.decode(encoded));
+            assertEquals(size, Base64Codec.byteLength(encoded, 0));
+            assertEquals(size, Base64Codec.byteLength("data:;base64," + encoded, 13));
+            assertArrayEquals(data, Base64Codec.decode(Base64.getEncoder().withoutPadding().encodeToString(data)));
+        }
+        assertArrayEquals("hello".getBytes(StandardCharsets.US_ASCII), Base64Codec.decode("aGVs\r\nbG8="));
+    }
+
+    @Test
+    public void rejectsInvalidInput() {
+        for (String invalid : new String[] { "a", "aGk*", "aGk=a", "aGVsbG8==", "aG\u00e9k", "=", "====", "AAAA====", "AAAA==" }) {
+            assertThrows(invalid, IllegalArgumentException.class, () -> Base64Codec.decode(invalid));
+        }
+    }
+
+    @Test
+    public void streamsDecodedBytesToChannel() throws IOException {
+        // Larger than the scratch buffers, with an odd length so the last group spans a chunk boundary
+        byte[] data = new byte[Base64Codec.CHUNK_BYTES * 3 + 2];
+        new Random(9).nextBytes(data);
+        File file = File.createTempFile("base64", ".bin");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                assertEquals(data.length, Base64Codec.decodeTo(Base64.getMimeEncoder().encodeToString(data), out.getChannel()));
+            }
+            assertArrayEquals(data, FileOperations.readRange(file, 0, null));
+
+            FileOperations.write(file, "keep".getBytes(StandardCharsets.US_ASCII), false, null);
+            assertThrows(IllegalArgumentException.class, () -> FileOperations.writeBase64(file, "not base64!", false, null));
+            assertEquals("keep", new String(FileOperations.readRange(file, 0, null), StandardCharsets.US_ASCII));
+
+            // Bad symbols past the first chunk are caught only after bytes were decoded, and still change nothing
+            String late = Base64.getEncoder().encodeToString(data) + "*";
+            assertThrows(IllegalArgumentException.class, () -> FileOperations.writeBase64(file, late, false, null));
+            assertThrows(IllegalArgumentException.class, () -> FileOperations.writeBase64(file, late, true, null));
+            assertThrows(IllegalArgumentException.class, () -> FileOperations.writeBase64(file, late, false, 2));
+            assertEquals("keep", new String(FileOperations.readRange(file, 0, null), StandardCharsets.US_ASCII));
+            assertEquals(0, file.getParentFile().list((dir, name) -> name.startsWith("." + file.getName())).length);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ee.forgr.capacitor.plugin.file;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal JMH-style harness for the JVM benchmarks in this module: warmup iterations, measured iterations,
+ * and per-operation throughput, bandwidth and allocation figures.
+ *
+ * Benchmarks only run when the {@code capacitorFile.benchmark} system property is true
+ * (Gradle: {@code -PcapacitorFileBenchmark}), so the regular unit test run stays fast.
+ */
+final class BenchmarkRunner {
+
+    static final long KB = 1024;
+    static final long MB = 1024 * KB;
+    static final long GB = 1024 * MB;
+
+    /** File sizes covered by the I/O benchmarks, capped by {@link #maxBytes()}. */
+    static final long[] FILE_SIZES = { KB, 64 * KB, MB, 16 * MB, 256 * MB, GB };
+
+    /** Directory fan-outs covered by the tree benchmarks, capped by {@link #maxEntries()}. */
+    static final int[] FAN_OUTS = { 10, 100, 1_000, 10_000, 100_000 };
+
+    /** Bytes processed per size before the iteration count is capped. */
+    private static final long BYTES_PER_SIZE = 256 * MB;
+
+    interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    static final class Result {
+
+        final String name;
+        final long operations;
+        final double opsPerSecond;
+        final double megabytesPerSecond;
+        final long allocatedBytesPerOp;
+
+        Result(String name, long operations, double opsPerSecond, double megabytesPerSecond, long allocatedBytesPerOp) {
+            this.name = name;
+            this.operations = operations;
+            this.opsPerSecond = opsPerSecond;
+            this.megabytesPerSecond = megabytesPerSecond;
+            this.allocatedBytesPerOp = allocatedBytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                Locale.ROOT,
+                "%-48s %8d ops %12.1f ops/s %10.1f MB/s %14d B/op alloc",
+                name,
+                operations,
+                opsPerSecond,
+                megabytesPerSecond,
+                allocatedBytesPerOp
+            );
+        }
+    }
+
+    private static final List<Result> results = new ArrayList<>();
+
+    private BenchmarkRunner() {}
+
+    static boolean enabled() {
+        return Boolean.getBoolean("capacitorFile.benchmark");
+    }
+
+    static long maxBytes() {
+        return Long.getLong("capacitorFile.benchmark.maxBytes", GB);
+    }
+
+    static int maxEntries() {
+        return Integer.getInteger("capacitorFile.benchmark.maxEntries", 100_000);
+    }
+
+    /** Number of measured iterations for an operation touching {@code bytes} bytes. */
+    static int iterationsFor(long bytes) {
+        return (int) Math.max(3, Math.min(1_000, BYTES_PER_SIZE / Math.max(1, bytes)));
+    }
+
+    static File scratchDirectory(String name) throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "capacitor-file-bench-" + name + "-" + System.nanoTime());
+        if (!dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    static String label(long bytes) {
+        if (bytes >= GB) return bytes / GB + "GB";
+        if (bytes >= MB) return bytes / MB + "MB";
+        if (bytes >= KB) return bytes / KB + "KB";
+        return bytes + "B";
+    }
+
+    /**
+     * Runs {@code warmup} unmeasured iterations then {@code iterations} measured ones.
+     * {@code bytesPerOp} is the payload handled by one operation, 0 when bandwidth is not meaningful.
+     */
+    static Result run(String name, long bytesPerOp, int warmup, int iterations, Operation operation) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(warmup + i);
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        double seconds = elapsed / 1e9;
+        Result result = new Result(
+            name,
+            iterations,
+            iterations / seconds,
+            bytesPerOp > 0 ? (bytesPerOp * (double) iterations) / MB / seconds : 0,
+            allocatedBefore >= 0 ? allocated / iterations : -1
+        );
+        record(result);
+        return result;
+    }
+
+    private static synchronized void record(Result result) throws IOException {
+        results.add(result);
+        System.out.println(result);
+
+        String output = System.getProperty("capacitorFile.benchmark.output");
+        if (output == null || output.isEmpty()) {
+            return;
+        }
+        File file = new File(output);
+        File parent = file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        boolean header = !file.exists();
+        try (Writer writer = new FileWriter(file, true)) {
+            if (header) {
+                writer.write("benchmark,operations,ops_per_second,mb_per_second,allocated_bytes_per_op\n");
+            }
+            writer.write(
+                String.format(
+                    Locale.ROOT,
+                    "%s,%d,%.3f,%.3f,%d%n",
+                    result.name,
+                    result.operations,
+                    result.opsPerSecond,
+                    result.megabytesPerSecond,
+                    result.allocatedBytesPerOp
+                )
+            );
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,170 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+public class CancellationTest {
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("cancellation");
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void cancelledCopiesLeaveNoPartialDestination() throws IOException {
+        File source = write("source.bin", 64 * 1024, (byte) 1);
+        File fresh = new File(root, "fresh.bin");
+        Cancellation first = new Cancellation(0);
+        assertAborted(() ->
+            first.run(() -> {
+                first.cancel();
+                return engine.copy(new CopyRequest(source, fresh));
+            })
+        );
+        assertFalse(fresh.exists());
+
+        // An existing destination is only replaced by a complete copy
+        File existing = write("existing.bin", 100, (byte) 2);
+        Cancellation second = new Cancellation(0);
+        assertAborted(() ->
+            second.run(() -> {
+                second.cancel();
+                return engine.copy(new CopyRequest(source, existing));
+            })
+        );
+        assertArrayEquals(filled(100, (byte) 2), engine.read(new ReadRequest(existing)));
+        assertEquals(2, root.list().length);
+    }
+
+    @Test
+    public void cancelledStoreCopiesKeepTheDestination() throws IOException {
+        File source = write("files/source.bin", 64 * 1024, (byte) 1);
+        File dest = write("files/dest.bin", 100, (byte) 2);
+        engine.setContentStore(new ContentStore(root, new File(root, "objects"), ContentStoreTest.JVM_IO, false));
+        Cancellation cancellation = new Cancellation(0);
+        assertAborted(() ->
+            cancellation.run(() -> {
+                cancellation.cancel();
+                return engine.copy(new CopyRequest(source, dest));
+            })
+        );
+        assertArrayEquals(filled(100, (byte) 2), engine.read(new ReadRequest(dest)));
+
+        // Linking a tree stops between files as well
+        File tree = new File(root, "files/tree");
+        write("files/tree/a.bin", 10, (byte) 3);
+        engine.setContentStore(new ContentStore(root, new File(root, "objects"), ContentStoreTest.JVM_IO, true));
+        Cancellation linking = new Cancellation(0);
+        assertAborted(() ->
+            linking.run(() -> {
+                linking.cancel();
+                return engine.copy(new CopyRequest(tree, new File(root, "files/tree-copy")));
+            })
+        );
+        assertFalse(new File(root, "files/tree-copy/a.bin").exists());
+    }
+
+    @Test
+    public void cancelledDeletesKeepWhatTheyHaveNotReached() throws IOException {
+        File dir = new File(root, "tree");
+        for (int i = 0; i < 10; i++) {
+            write("tree/file" + i + ".bin", 10, (byte) i);
+        }
+        Cancellation cancellation = new Cancellation(0);
+        assertAborted(() ->
+            cancellation.run(() -> {
+                cancellation.cancel();
+                engine.rmdir(dir, true);
+                return null;
+            })
+        );
+        assertTrue(dir.isDirectory());
+        assertEquals(10, dir.list().length);
+    }
+
+    @Test
+    public void timesOutRunningButNotQueuedOperations() throws Exception {
+        File file = write("large.bin", 3 * FileOperations.READ_CHUNK, (byte) 3);
+        // The timeout counts from when the operation starts, not from when it was queued
+        Cancellation queued = new Cancellation(50);
+        Thread.sleep(100);
+        CompletableFuture<byte[]> read = engine.submit(queued, () -> engine.read(new ReadRequest(write("small.bin", 10, (byte) 4))));
+        assertEquals(10, read.get(5, TimeUnit.SECONDS).length);
+
+        // Chunked reads stop between chunks once it has passed
+        Cancellation running = new Cancellation(1);
+        CompletableFuture<String> slow = engine.submit(running, () -> {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(5);
+            while (System.nanoTime() < until) {
+                Thread.yield();
+            }
+            return engine.readBase64(new ReadRequest(file));
+        });
+        ExecutionException error = assertThrows(ExecutionException.class, () -> slow.get(5, TimeUnit.SECONDS));
+        assertEquals(FileEngineException.ABORT_ERR, ((FileEngineException) error.getCause()).getCode());
+    }
+
+    @Test
+    public void cancelledBase64WritesKeepTheFile() throws IOException {
+        File file = write("data.bin", 100, (byte) 5);
+        String data = Base64Codec.encodeToString(filled(3 * Base64Codec.CHUNK_BYTES, (byte) 6));
+        for (boolean append : new boolean[] { false, true }) {
+            Cancellation cancellation = new Cancellation(0);
+            assertAborted(() ->
+                cancellation.run(() -> {
+                    cancellation.cancel();
+                    return engine.write(WriteRequest.fromBase64(file, data).append(append));
+                })
+            );
+            assertArrayEquals(filled(100, (byte) 5), engine.read(new ReadRequest(file)));
+        }
+    }
+
+    @Test
+    public void checksOnlyApplyWithinTheirOperation() throws IOException {
+        File file = write("data.bin", 1000, (byte) 4);
+        Cancellation cancellation = new Cancellation(0);
+        assertEquals(1000, (int) cancellation.run(() -> engine.read(new ReadRequest(file)).length));
+        cancellation.cancel();
+        assertAborted(() -> cancellation.run(() -> engine.read(new ReadRequest(file))));
+
+        // Without a token, the same calls run to completion
+        assertEquals(1000, engine.copy(new CopyRequest(file, new File(root, "copy.bin"))).bytesWritten);
+        Cancellation.check();
+    }
+
+    private File write(String name, int size, byte value) throws IOException {
+        File file = new File(root, name);
+        engine.write(new WriteRequest(file, filled(size, value)).recursive(true));
+        return file;
+    }
+
+    private static byte[] filled(int size, byte value) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+
+    private static void assertAborted(ThrowingRunnable runnable) {
+        FileEngineException error = assertThrows(FileEngineException.class, runnable);
+        assertEquals(FileEngineException.ABORT_ERR, error.getCode());
+    }
+}
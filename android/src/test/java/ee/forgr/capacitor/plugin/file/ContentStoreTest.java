@@ -0,0 +1,193 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContentStoreTest {
+
+    /** Hard links through java.nio.file, which the JVM running the tests has. */
+    static final NativeIo JVM_IO = new NativeIo() {
+        @Override
+        public void link(File existing, File link) throws IOException {
+            Files.createLink(link.toPath(), existing.toPath());
+        }
+
+        @Override
+        public long linkCount(File file) throws IOException {
+            return ((Number) Files.getAttribute(file.toPath(), "unix:nlink")).longValue();
+        }
+
+        @Override
+        public boolean allocate(FileDescriptor fd, long offset, long length) {
+            return false;
+        }
+
+        @Override
+        public void syncDirectory(File dir) throws IOException {
+            try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+                channel.force(true);
+            }
+        }
+    };
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private File root;
+    private File files;
+    private File objects;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("store");
+        files = new File(root, "files");
+        files.mkdirs();
+        objects = new File(root, "no_backup/objects");
+        engine.setContentStore(new ContentStore(root, objects, JVM_IO, true));
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void storesIdenticalWritesOnce() throws IOException {
+        byte[] media = randomBytes(ContentStore.MIN_BYTES * 4);
+        File first = new File(files, "a/video.bin");
+        File second = new File(files, "b/video.bin");
+        engine.write(new WriteRequest(first, media).recursive(true));
+        engine.write(WriteRequest.fromBase64(second, Base64.getEncoder().encodeToString(media)).recursive(true));
+
+        assertEquals(inode(first), inode(second));
+        assertEquals(3, JVM_IO.linkCount(first));
+        assertArrayEquals(media, engine.read(new ReadRequest(second)));
+    }
+
+    @Test
+    public void rewritesKeepTheSharedModificationTime() throws IOException {
+        byte[] media = randomBytes(ContentStore.MIN_BYTES * 2);
+        File first = new File(files, "first.bin");
+        File second = new File(files, "second.bin");
+        engine.write(new WriteRequest(first, media));
+        engine.write(new WriteRequest(second, randomBytes(10)));
+        assertTrue(first.setLastModified(1_000_000_000L));
+
+        // Rewriting an existing path with stored content gets a private copy, not the shared inode
+        engine.write(new WriteRequest(second, media));
+        assertEquals(1_000_000_000L, first.lastModified());
+        assertNotEquals(inode(first), inode(second));
+        assertTrue(second.lastModified() > 1_000_000_000L);
+        assertArrayEquals(media, engine.read(new ReadRequest(second)));
+    }
+
+    @Test
+    public void copiesByLinking() throws IOException {
+        File source = new File(files, "source.bin");
+        File dest = new File(files, "copy/dest.bin");
+        byte[] data = randomBytes(100);
+        engine.write(new WriteRequest(source, data));
+        engine.write(new WriteRequest(dest, bytes(3)).recursive(true));
+
+        assertEquals(data.length, engine.copy(new CopyRequest(source, dest)).bytesWritten);
+        assertEquals(inode(source), inode(dest));
+        assertArrayEquals(data, engine.read(new ReadRequest(dest)));
+    }
+
+    @Test
+    public void unsharesBeforeModifyingInPlace() throws IOException {
+        byte[] media = randomBytes(ContentStore.MIN_BYTES);
+        File first = new File(files, "first.bin");
+        File second = new File(files, "second.bin");
+        File third = new File(files, "third.bin");
+        engine.write(new WriteRequest(first, media));
+        engine.write(new WriteRequest(second, media));
+        engine.copy(new CopyRequest(first, third));
+
+        engine.write(new WriteRequest(first, bytes(5)).append(true));
+        engine.write(new WriteRequest(second, bytes(5)).position(0));
+        engine.truncate(third, 10, false);
+
+        assertEquals(media.length + 5, first.length());
+        assertArrayEquals(bytes(5), engine.read(new ReadRequest(second).length(5)));
+        assertEquals(10, third.length());
+        // The stored object keeps the original content
+        assertEquals(1, JVM_IO.linkCount(firstObject()));
+        assertArrayEquals(media, FileOperations.readRange(firstObject(), 0, null));
+    }
+
+    @Test
+    public void keepsSmallAndInvalidWritesOutOfTheStore() throws IOException {
+        File small = new File(files, "small.txt");
+        engine.write(new WriteRequest(small, bytes(10)));
+        assertEquals(1, JVM_IO.linkCount(small));
+        assertEquals(0, objects.list().length);
+
+        WriteRequest invalid = WriteRequest.fromBase64(small, "not base64!");
+        FileEngineException error = assertThrows(FileEngineException.class, () -> engine.write(invalid));
+        assertEquals(FileEngineException.ENCODING_ERR, error.getCode());
+        assertArrayEquals(bytes(10), engine.read(new ReadRequest(small)));
+    }
+
+    @Test
+    public void collectsUnreferencedObjects() throws IOException {
+        byte[] media = randomBytes(ContentStore.MIN_BYTES * 2);
+        File file = new File(files, "media.bin");
+        engine.write(new WriteRequest(file, media));
+        ContentStore store = engine.contentStore();
+
+        assertEquals(0, store.collectGarbage());
+        engine.delete(file);
+        assertEquals(media.length, store.collectGarbage());
+        assertEquals(0, objects.list().length);
+    }
+
+    @Test
+    public void stopsLinkingWhenDisabled() throws IOException {
+        byte[] media = randomBytes(ContentStore.MIN_BYTES);
+        File first = new File(files, "first.bin");
+        File second = new File(files, "second.bin");
+        engine.write(new WriteRequest(first, media));
+        engine.write(new WriteRequest(second, media));
+
+        engine.setContentStore(new ContentStore(root, objects, JVM_IO, false));
+        engine.write(new WriteRequest(first, bytes(7)));
+        File copy = new File(files, "copy.bin");
+        engine.copy(new CopyRequest(second, copy));
+
+        assertArrayEquals(bytes(7), engine.read(new ReadRequest(first)));
+        assertArrayEquals(media, engine.read(new ReadRequest(second)));
+        assertEquals(1, JVM_IO.linkCount(copy));
+    }
+
+    private File firstObject() {
+        File bucket = objects.listFiles(File::isDirectory)[0];
+        return bucket.listFiles()[0];
+    }
+
+    private static Object inode(File file) throws IOException {
+        return Files.getAttribute(file.toPath(), "unix:ino");
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) 'x');
+        return data;
+    }
+}
@@ -0,0 +1,196 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+public class DiskQuotaTest {
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private final AtomicLong free = new AtomicLong(1000);
+    private final AtomicLong snapshots = new AtomicLong();
+    private File root;
+    private DiskQuota quota;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("quota");
+        quota = new DiskQuota(
+            root,
+            () -> {
+                snapshots.incrementAndGet();
+                return free.get();
+            },
+            5_000
+        );
+        engine.setDiskQuota(quota);
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void rejectsWritesThatDoNotFitBeforeCreatingFiles() throws IOException {
+        File file = new File(root, "big.bin");
+        assertQuotaExceeded(() -> engine.write(new WriteRequest(file, new byte[1001])));
+        assertFalse(file.exists());
+
+        // Replacing a file only needs the difference, and appends only what they add
+        engine.write(new WriteRequest(file, new byte[900]));
+        free.set(100);
+        engine.write(new WriteRequest(file, new byte[1000]));
+        assertQuotaExceeded(() -> engine.write(new WriteRequest(file, new byte[101]).append(true)));
+        assertEquals(1000, file.length());
+    }
+
+    @Test
+    public void keepsTheSnapshotAcrossOperations() throws IOException {
+        DiskQuota.Reservation first = quota.reserve(new File(root, "a"), 10);
+        DiskQuota.Reservation second = quota.reserve(new File(root, "b"), 10);
+        first.release(10);
+        second.release(10);
+        quota.reserve(new File(root, "c"), 10).release(10);
+        assertEquals(1, snapshots.get());
+
+        // What operations added comes off the snapshot without asking the volume again
+        assertQuotaExceeded(() -> quota.reserve(new File(root, "d"), 971));
+        quota.reserve(new File(root, "d"), 960).release(960);
+        assertEquals(1, snapshots.get());
+
+        // Files off the volume are never checked against it
+        quota.reserve(new File(root.getParentFile(), "elsewhere"), 1 << 30).release(0);
+        assertEquals(1, snapshots.get());
+
+        // Only an operation of unknown size forces a new snapshot
+        quota.reserve(new File(root, "e"), 10).abandon();
+        quota.reserve(new File(root, "f"), 10).release(10);
+        assertEquals(2, snapshots.get());
+    }
+
+    @Test
+    public void queriesTheVolumeWithoutHoldingTheLock() throws IOException {
+        DiskQuota[] slow = new DiskQuota[1];
+        slow[0] = new DiskQuota(
+            root,
+            () -> {
+                // Other callers get through while the volume is being queried
+                try {
+                    CompletableFuture.runAsync(() -> slow[0].invalidate(root)).get(1, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError("Quota was locked during the query", e);
+                }
+                return 1000;
+            },
+            0
+        );
+        slow[0].reserve(new File(root, "a"), 10).release(10);
+    }
+
+    @Test
+    public void queuesBehindRunningOperations() throws Exception {
+        DiskQuota.Reservation running = quota.reserve(new File(root, "download.bin"), 800);
+        CompletableFuture<DiskQuota.Reservation> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return quota.reserve(new File(root, "other.bin"), 500);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(queued.isDone());
+
+        // The running operation failed without writing anything, which leaves room for the queued one
+        running.release(0);
+        queued.get(5, TimeUnit.SECONDS).release(0);
+
+        // What can never fit is rejected at once instead of queueing
+        DiskQuota.Reservation large = quota.reserve(new File(root, "large.bin"), 600);
+        long started = System.nanoTime();
+        assertQuotaExceeded(() -> quota.reserve(new File(root, "huge.bin"), 1001));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+        large.release(0);
+    }
+
+    @Test
+    public void enforcesDirectoryLimits() throws IOException {
+        File media = new File(root, "media");
+        engine.write(new WriteRequest(new File(media, "a.bin"), new byte[40]).recursive(true));
+        assertEquals(40, quota.setLimit(media, 100));
+
+        engine.write(new WriteRequest(new File(media, "b.bin"), new byte[50]));
+        assertQuotaExceeded(() -> engine.write(new WriteRequest(new File(media, "c.bin"), new byte[20])));
+        assertFalse(new File(media, "c.bin").exists());
+        engine.write(new WriteRequest(new File(root, "outside.bin"), new byte[20]));
+
+        // Deletes, moves and truncations are counted from their measured sizes
+        engine.delete(new File(media, "a.bin"));
+        engine.write(new WriteRequest(new File(media, "c.bin"), new byte[20]));
+        File moved = new File(root, "moved.bin");
+        engine.write(new WriteRequest(moved, new byte[30]));
+        engine.move(new CopyRequest(moved, new File(media, "moved.bin")));
+        assertQuotaExceeded(() -> engine.write(new WriteRequest(new File(media, "d.bin"), new byte[1])));
+        engine.truncate(new File(media, "moved.bin"), 10, false);
+        engine.write(new WriteRequest(new File(media, "d.bin"), new byte[20]));
+        assertQuotaExceeded(() -> engine.write(new WriteRequest(new File(media, "e.bin"), new byte[1])));
+
+        // Nothing is rescanned on the way, so a file removed behind the engine's back still counts
+        assertTrue(new File(media, "d.bin").delete());
+        assertQuotaExceeded(() -> engine.write(new WriteRequest(new File(media, "e.bin"), new byte[1])));
+        assertEquals(80, quota.setLimit(media, 100));
+        engine.write(new WriteRequest(new File(media, "e.bin"), new byte[20]));
+
+        assertEquals(100, quota.setLimit(media, 0));
+        engine.write(new WriteRequest(new File(media, "f.bin"), new byte[1]));
+    }
+
+    @Test
+    public void rejectsCopiesByTreeSize() throws IOException {
+        free.set(1 << 20);
+        File source = new File(root, "source");
+        engine.write(new WriteRequest(new File(source, "a.bin"), new byte[300]).recursive(true));
+        engine.write(new WriteRequest(new File(source, "sub/b.bin"), new byte[300]).recursive(true));
+        File target = new File(root, "target");
+        target.mkdirs();
+        quota.setLimit(target, 1000);
+
+        engine.copy(new CopyRequest(source, new File(target, "first")));
+        assertQuotaExceeded(() -> engine.copy(new CopyRequest(source, new File(target, "second"))));
+        assertFalse(new File(target, "second").exists());
+        assertEquals(600, DiskQuota.sizeOf(target));
+    }
+
+    @Test
+    public void admitsPreallocationAndTruncationGrowth() throws IOException {
+        File media = new File(root, "media");
+        media.mkdirs();
+        quota.setLimit(media, 100);
+        File file = new File(media, "download.bin");
+
+        assertQuotaExceeded(() -> engine.preallocate(file, 101, true));
+        assertFalse(file.exists());
+        engine.preallocate(file, 60, false);
+        assertQuotaExceeded(() -> engine.truncate(file, 101, false));
+        assertEquals(60, file.length());
+        engine.truncate(file, 100, false);
+        assertQuotaExceeded(() -> engine.write(new WriteRequest(new File(media, "other.bin"), new byte[1])));
+
+        // Shrinking is counted too
+        engine.truncate(file, 10, false);
+        engine.write(new WriteRequest(new File(media, "other.bin"), new byte[90]));
+    }
+
+    private static void assertQuotaExceeded(ThrowingRunnable runnable) {
+        FileEngineException error = assertThrows(FileEngineException.class, runnable);
+        assertEquals(FileEngineException.QUOTA_EXCEEDED_ERR, error.getCode());
+    }
+}
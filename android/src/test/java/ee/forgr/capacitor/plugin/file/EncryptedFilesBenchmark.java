@@ -0,0 +1,96 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static ee.forgr.capacitor.plugin.file.BenchmarkRunner.KB;
+import static ee.forgr.capacitor.plugin.file.BenchmarkRunner.MB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Throughput of encrypted reads and writes through the engine against the same plaintext operations, for 1 to
+ * 100 MB files and for 4 KB random reads, which decrypt one or two chunks.
+ *
+ * Run with {@code ./gradlew testDebugUnitTest -PcapacitorFileBenchmark --tests '*EncryptedFilesBenchmark'}.
+ */
+public class EncryptedFilesBenchmark {
+
+    private static final long[] FILE_SIZES = { MB, 10 * MB, 100 * MB };
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("benchmarks disabled", BenchmarkRunner.enabled());
+        root = BenchmarkRunner.scratchDirectory("encrypted");
+        engine.setEncryptionKeys(EncryptedFilesTest.newKeys());
+    }
+
+    @After
+    public void tearDown() {
+        if (root != null) {
+            FileOperations.deleteRecursively(root);
+        }
+    }
+
+    @Test
+    public void writeFile() throws Exception {
+        for (long size : FILE_SIZES) {
+            if (!FileOperationsBenchmark.fitsInMemory(size)) continue;
+            byte[] data = FileOperationsBenchmark.randomBytes((int) size);
+            File file = new File(root, "write-" + size);
+            int iterations = BenchmarkRunner.iterationsFor(size);
+            for (boolean encrypted : new boolean[] { false, true }) {
+                BenchmarkRunner.run(name("writeFile", encrypted) + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                    engine.write(new WriteRequest(file, data).encrypted(encrypted))
+                );
+            }
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readFile() throws Exception {
+        for (long size : FILE_SIZES) {
+            if (!FileOperationsBenchmark.fitsInMemory(size)) continue;
+            byte[] data = FileOperationsBenchmark.randomBytes((int) size);
+            int iterations = BenchmarkRunner.iterationsFor(size);
+            for (boolean encrypted : new boolean[] { false, true }) {
+                File file = new File(root, "read-" + encrypted + "-" + size);
+                engine.write(new WriteRequest(file, data).encrypted(encrypted));
+                BenchmarkRunner.run(name("readFile", encrypted) + BenchmarkRunner.label(size), size, 2, iterations, (i) ->
+                    assertEquals(size, engine.read(new ReadRequest(file).encrypted(encrypted)).length)
+                );
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void readFileRange() throws Exception {
+        long size = Math.min(100 * MB, BenchmarkRunner.maxBytes());
+        if (!FileOperationsBenchmark.fitsInMemory(size)) return;
+        byte[] data = FileOperationsBenchmark.randomBytes((int) size);
+        int length = (int) (4 * KB);
+        for (boolean encrypted : new boolean[] { false, true }) {
+            File file = new File(root, "range-" + encrypted);
+            engine.write(new WriteRequest(file, data).encrypted(encrypted));
+            Random random = new Random(size);
+            BenchmarkRunner.run(name("readFile range 4KB of", encrypted) + BenchmarkRunner.label(size), length, 100, 5_000, (i) -> {
+                long offset = (long) (random.nextDouble() * (size - length));
+                engine.read(new ReadRequest(file).offset(offset).length(length).encrypted(encrypted));
+            });
+            file.delete();
+        }
+    }
+
+    private static String name(String operation, boolean encrypted) {
+        return operation + (encrypted ? " encrypted " : " plain ");
+    }
+}
@@ -0,0 +1,217 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+public class EncryptedFilesTest {
+
+    private static final int CHUNK = EncryptedFiles.CHUNK_SIZE;
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = BenchmarkRunner.scratchDirectory("encrypted");
+        engine.setEncryptionKeys(newKeys());
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void readsRangesOfEncryptedWrites() throws IOException {
+        File file = new File(root, "secret.bin");
+        byte[] data = randomBytes(CHUNK * 3 + 100);
+        engine.write(new WriteRequest(file, data).encrypted(true));
+
+        assertEquals(EncryptedFiles.HEADER_SIZE + 4 * EncryptedFiles.OVERHEAD + data.length, file.length());
+        assertFalse(contains(FileOperations.readRange(file, 0, null), Arrays.copyOfRange(data, 0, 32)));
+        assertArrayEquals(data, read(file, 0, null));
+        // Within a chunk, across a boundary, past the end
+        assertArrayEquals(Arrays.copyOfRange(data, 10, 20), read(file, 10, 10));
+        assertArrayEquals(Arrays.copyOfRange(data, CHUNK - 5, CHUNK * 2 + 5), read(file, CHUNK - 5, CHUNK + 10));
+        assertArrayEquals(Arrays.copyOfRange(data, data.length - 50, data.length), read(file, data.length - 50, 500));
+        assertEquals(0, read(file, data.length, null).length);
+
+        String base64 = engine.readBase64(new ReadRequest(file).offset(CHUNK).length(64).encrypted(true));
+        assertEquals(Base64.getEncoder().encodeToString(Arrays.copyOfRange(data, CHUNK, CHUNK + 64)), base64);
+
+        File empty = new File(root, "empty.bin");
+        engine.write(WriteRequest.fromBase64(empty, "").encrypted(true));
+        assertEquals(0, read(empty, 0, null).length);
+    }
+
+    @Test
+    public void appendsAndWritesInPlace() throws IOException {
+        File file = new File(root, "log.bin");
+        byte[] expected = randomBytes(CHUNK - 10);
+        engine.write(new WriteRequest(file, expected).encrypted(true));
+
+        // An append that fills the last chunk and spills into new ones
+        byte[] more = randomBytes(CHUNK + 20);
+        engine.write(new WriteRequest(file, more).append(true).encrypted(true));
+        expected = concat(expected, more);
+        assertArrayEquals(expected, read(file, 0, null));
+
+        // Overwrite across a chunk boundary, then write past the end, leaving a zero-filled gap
+        byte[] patch = bytes("patched across a chunk boundary");
+        engine.write(new WriteRequest(file, patch).position(CHUNK - 8).encrypted(true));
+        System.arraycopy(patch, 0, expected, CHUNK - 8, patch.length);
+        byte[] tail = bytes("tail");
+        int position = expected.length + CHUNK + 3;
+        engine.write(new WriteRequest(file, tail).position(position).encrypted(true));
+        expected = concat(Arrays.copyOf(expected, position), tail);
+        assertArrayEquals(expected, read(file, 0, null));
+    }
+
+    @Test
+    public void rewritesOnlyTheChunksAWriteTouches() throws IOException {
+        File file = new File(root, "large.bin");
+        byte[] expected = randomBytes(CHUNK * 10 - 100);
+        engine.write(new WriteRequest(file, expected).encrypted(true));
+        byte[] before = FileOperations.readRange(file, 0, null);
+
+        engine.write(new WriteRequest(file, bytes("head")).position(0).encrypted(true));
+        byte[] after = FileOperations.readRange(file, 0, null);
+        assertFalse(Arrays.equals(record(before, 0), record(after, 0)));
+        for (int i = 1; i < 10; i++) {
+            assertArrayEquals(record(before, i), record(after, i));
+        }
+
+        // Growing the file re-seals the old last chunk, whose "last" flag changes, and nothing before it
+        engine.write(new WriteRequest(file, randomBytes(200)).append(true).encrypted(true));
+        byte[] appended = FileOperations.readRange(file, 0, null);
+        for (int i = 0; i < 9; i++) {
+            assertArrayEquals(record(after, i), record(appended, i));
+        }
+        assertFalse(Arrays.equals(record(after, 9), Arrays.copyOf(record(appended, 9), record(after, 9).length)));
+        System.arraycopy(bytes("head"), 0, expected, 0, 4);
+        assertArrayEquals(expected, read(file, 0, expected.length));
+    }
+
+    @Test
+    public void truncatesByPlaintext() throws IOException {
+        File file = new File(root, "resized.bin");
+        byte[] data = randomBytes(CHUNK * 3 + 10);
+        engine.write(new WriteRequest(file, data).encrypted(true));
+
+        engine.truncate(file, CHUNK + 5, true);
+        assertArrayEquals(Arrays.copyOf(data, CHUNK + 5), read(file, 0, null));
+        assertEquals(EncryptedFiles.HEADER_SIZE + 2 * EncryptedFiles.OVERHEAD + CHUNK + 5, file.length());
+
+        engine.truncate(file, CHUNK * 2 + 1, true);
+        assertArrayEquals(Arrays.copyOf(Arrays.copyOf(data, CHUNK + 5), CHUNK * 2 + 1), read(file, 0, null));
+
+        engine.truncate(file, 0, true);
+        assertEquals(0, read(file, 0, null).length);
+        engine.write(new WriteRequest(file, bytes("again")).append(true).encrypted(true));
+        assertArrayEquals(bytes("again"), read(file, 0, null));
+    }
+
+    @Test
+    public void rejectsTamperingAndPlainFiles() throws IOException {
+        File file = new File(root, "secret.bin");
+        byte[] data = randomBytes(CHUNK * 2 + 1);
+        engine.write(new WriteRequest(file, data).encrypted(true));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long inSecondChunk = EncryptedFiles.HEADER_SIZE + CHUNK + EncryptedFiles.OVERHEAD + 100;
+            raf.seek(inSecondChunk);
+            int value = raf.read();
+            raf.seek(inSecondChunk);
+            raf.write(value ^ 1);
+        }
+        // The first chunk still reads; only ranges touching the modified one fail
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 100), read(file, 0, 100));
+        assertCode(FileEngineException.SECURITY_ERR, () -> read(file, CHUNK, 10));
+
+        // Dropping the last chunk leaves a file whose new last chunk wasn't sealed as last
+        File truncated = new File(root, "truncated.bin");
+        engine.write(new WriteRequest(truncated, data).encrypted(true));
+        try (RandomAccessFile raf = new RandomAccessFile(truncated, "rw")) {
+            raf.setLength(raf.length() - 1 - EncryptedFiles.OVERHEAD);
+        }
+        assertCode(FileEngineException.SECURITY_ERR, () -> read(truncated, 0, null));
+
+        // A different key can't read it, and plain files aren't mistaken for encrypted ones
+        File other = new File(root, "other.bin");
+        engine.write(new WriteRequest(other, data).encrypted(true));
+        engine.setEncryptionKeys(newKeys());
+        assertCode(FileEngineException.SECURITY_ERR, () -> read(other, 0, 10));
+        File plain = new File(root, "plain.txt");
+        engine.write(new WriteRequest(plain, bytes("not encrypted, just text")));
+        assertCode(FileEngineException.TYPE_MISMATCH_ERR, () -> read(plain, 0, null));
+        assertCode(FileEngineException.TYPE_MISMATCH_ERR, () -> engine.write(new WriteRequest(plain, data).append(true).encrypted(true)));
+
+        engine.setEncryptionKeys(null);
+        assertCode(FileEngineException.SECURITY_ERR, () -> read(other, 0, 10));
+    }
+
+    static EncryptionKeys newKeys() {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            SecretKey key = generator.generateKey();
+            return () -> key;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Raw record {@code index} (IV, ciphertext, tag) of a file whose chunks are all full but the last. */
+    private static byte[] record(byte[] file, int index) {
+        int size = CHUNK + EncryptedFiles.OVERHEAD;
+        int from = EncryptedFiles.HEADER_SIZE + index * size;
+        return Arrays.copyOfRange(file, from, Math.min(file.length, from + size));
+    }
+
+    private byte[] read(File file, long offset, Integer length) throws IOException {
+        return engine.read(new ReadRequest(file).offset(offset).length(length).encrypted(true));
+    }
+
+    private static void assertCode(String code, ThrowingRunnable runnable) {
+        FileEngineException error = assertThrows(FileEngineException.class, runnable);
+        assertEquals(code, error.getCode());
+    }
+
+    private static boolean contains(byte[] haystack, byte[] needle) {
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(haystack, i, i + needle.length), needle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,261 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+public class FileEngineTest {
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("engine");
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void writesAndReadsRanges() throws IOException {
+        File file = new File(root, "nested/data.txt");
+        engine.write(new WriteRequest(file, bytes("hello world")).recursive(true));
+        engine.write(new WriteRequest(file, bytes("!")).append(true));
+        engine.write(new WriteRequest(file, bytes("H")).position(0));
+
+        assertEquals("Hello world!", text(engine.read(new ReadRequest(file))));
+        assertEquals("world", text(engine.read(new ReadRequest(file).offset(6).length(5))));
+        assertEquals(0, engine.read(new ReadRequest(file).offset(100)).length);
+    }
+
+    @Test
+    public void readsRangesAsDataUrls() throws IOException {
+        File file = new File(root, "data.bin");
+        byte[] data = new byte[Base64Codec.CHUNK_BYTES * 2 + 5];
+        new Random(3).nextBytes(data);
+        engine.write(new WriteRequest(file, data));
+
+        String mimeType = "application/octet-stream";
+        String prefix = "data:" + mimeType + ";base64,";
+        assertEquals(prefix + Base64.getEncoder().encodeToString(data), engine.readDataUrl(new ReadRequest(file), mimeType));
+        byte[] slice = Arrays.copyOfRange(data, 10, 20);
+        String range = engine.readDataUrl(new ReadRequest(file).offset(10).length(10), mimeType);
+        assertEquals(prefix + Base64.getEncoder().encodeToString(slice), range);
+        assertEquals(prefix, engine.readDataUrl(new ReadRequest(file).offset(data.length), mimeType));
+    }
+
+    @Test
+    public void readsAndCopiesOpenDocuments() throws IOException {
+        // Content documents arrive as a channel of known size, or as a pipe that can only be streamed
+        File file = new File(root, "document.bin");
+        byte[] data = new byte[Base64Codec.CHUNK_BYTES + 7];
+        new Random(5).nextBytes(data);
+        engine.write(new WriteRequest(file, data));
+        byte[] slice = Arrays.copyOfRange(data, 100, 300);
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            assertArrayEquals(slice, FileOperations.readRange(channel, data.length, 100, 200));
+            String base64 = FileOperations.readBase64(channel, data.length, 0, null, "data:;base64,");
+            assertEquals("data:;base64," + Base64.getEncoder().encodeToString(data), base64);
+
+            File copy = new File(root, "copy.bin");
+            engine.write(new WriteRequest(copy, bytes("previous contents, longer than nothing")));
+            assertEquals(data.length, FileOperations.copyToFile(channel, data.length, copy));
+            assertArrayEquals(data, engine.read(new ReadRequest(copy)));
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            assertArrayEquals(slice, FileOperations.readRange(in, 100, 200));
+            assertEquals(data.length - 100 - 200, FileOperations.readRange(in, 0, null).length);
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            File copy = new File(root, "streamed.bin");
+            assertEquals(data.length, FileOperations.copyToFile(in, copy));
+            assertArrayEquals(data, engine.read(new ReadRequest(copy)));
+        }
+        // The copies went through temp files, none of which are left behind
+        String[] names = root.list();
+        Arrays.sort(names);
+        assertArrayEquals(new String[] { "copy.bin", "document.bin", "streamed.bin" }, names);
+    }
+
+    @Test
+    public void readsScatteredRangesInRequestOrder() throws IOException {
+        File file = new File(root, "pack.bin");
+        byte[] data = new byte[FileOperations.MAX_SPAN * 3];
+        new Random(4).nextBytes(data);
+        engine.write(new WriteRequest(file, data));
+
+        // Unsorted, overlapping, adjacent, far apart, larger than a span, empty and past the end of the file
+        long[] offsets = { 5000, 100, 120, 150, 100 + FileOperations.COALESCE_GAP * 3, 10, data.length - 4, data.length + 1, 7 };
+        int[] lengths = { 40, 50, 10, 20, 30, FileOperations.MAX_SPAN + 10, 100, 10, 0 };
+        byte[][] slices = engine.readRanges(file, offsets, lengths);
+
+        assertEquals(offsets.length, slices.length);
+        for (int i = 0; i < offsets.length; i++) {
+            byte[] expected = FileOperations.readRange(file, offsets[i], lengths[i]);
+            assertArrayEquals("range " + i, expected, slices[i]);
+        }
+        assertEquals(4, slices[6].length);
+        assertEquals(0, slices[7].length);
+
+        // The total is capped after clamping to the file, so only ranges that really add up are refused
+        assertEquals(data.length, engine.readRanges(file, new long[] { 0 }, new int[] { Integer.MAX_VALUE })[0].length);
+        int repeats = (int) (FileOperations.MAX_RANGES_BYTES / data.length) + 1;
+        long[] whole = new long[repeats];
+        int[] wholeLengths = new int[repeats];
+        Arrays.fill(wholeLengths, data.length);
+        assertCode(FileEngineException.QUOTA_EXCEEDED_ERR, () -> engine.readRanges(file, whole, wholeLengths));
+    }
+
+    @Test
+    public void preallocatesForOutOfOrderWrites() throws IOException {
+        List<Long> allocations = new ArrayList<>();
+        engine.setNativeIo(new NativeIo() {
+            @Override
+            public void link(File existing, File link) {}
+
+            @Override
+            public long linkCount(File file) {
+                return 1;
+            }
+
+            @Override
+            public boolean allocate(FileDescriptor fd, long offset, long length) {
+                allocations.add(length);
+                return true;
+            }
+
+            @Override
+            public void syncDirectory(File dir) {}
+        });
+
+        File file = new File(root, "download.bin");
+        engine.write(new WriteRequest(file, bytes("world")).position(6).preallocate(11));
+        engine.write(new WriteRequest(file, bytes("hello ")).position(0).preallocate(11));
+        assertEquals("hello world", text(engine.read(new ReadRequest(file))));
+        assertEquals(Arrays.asList(11L, 11L), allocations);
+
+        // Sparse growth only extends the length, and nothing ever shrinks
+        File sparse = new File(root, "sparse.bin");
+        assertFalse(engine.preallocate(sparse, 1 << 20, true));
+        assertEquals(1 << 20, sparse.length());
+        assertTrue(engine.preallocate(sparse, 10, false));
+        assertEquals(1 << 20, sparse.length());
+
+        assertCode(FileEngineException.QUOTA_EXCEEDED_ERR, () -> engine.preallocate(file, Long.MAX_VALUE, false));
+        assertCode(FileEngineException.NOT_FOUND_ERR, () -> engine.preallocate(new File(root, "missing/file"), 1, false));
+    }
+
+    @Test
+    public void reportsFileErrorCodes() {
+        File missing = new File(root, "missing");
+        assertCode(FileEngineException.NOT_FOUND_ERR, () -> engine.read(new ReadRequest(missing)));
+        assertCode(FileEngineException.NOT_FOUND_ERR, () -> engine.stat(missing));
+        assertCode(FileEngineException.NOT_FOUND_ERR, () -> engine.readRanges(missing, new long[] { 0 }, new int[] { 1 }));
+        assertCode(FileEngineException.NOT_FOUND_ERR, () -> engine.list(missing));
+        assertCode(FileEngineException.NOT_FOUND_ERR, () -> engine.copy(new CopyRequest(missing, new File(root, "x"))));
+
+        File dir = new File(root, "dir");
+        dir.mkdirs();
+        new File(dir, "child").mkdirs();
+        assertCode(FileEngineException.INVALID_MODIFICATION_ERR, () -> engine.rmdir(dir, false));
+    }
+
+    @Test
+    public void copiesMovesAndListsTrees() throws IOException {
+        File source = new File(root, "source");
+        engine.write(new WriteRequest(new File(source, "a.txt"), bytes("a")).recursive(true));
+        engine.write(new WriteRequest(new File(source, "sub/b.txt"), bytes("bb")).recursive(true));
+
+        WriteResult copied = engine.copy(new CopyRequest(source, new File(root, "copy/tree")));
+        assertEquals(3, copied.bytesWritten);
+
+        DirectoryListing listing = engine.list(copied.file);
+        String[] names = listing.names.clone();
+        Arrays.sort(names);
+        assertArrayEquals(new String[] { "a.txt", "sub" }, names);
+
+        File target = new File(root, "moved.txt");
+        engine.write(new WriteRequest(target, bytes("old")));
+        engine.move(new CopyRequest(new File(source, "a.txt"), target));
+        assertEquals("a", text(engine.read(new ReadRequest(target))));
+        assertFalse(new File(source, "a.txt").exists());
+
+        engine.rmdir(source, true);
+        assertFalse(source.exists());
+    }
+
+    @Test
+    public void asyncOperationsCompleteWithEngineErrors() throws Exception {
+        try {
+            engine.readAsync(new ReadRequest(new File(root, "missing"))).get();
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof FileEngineException);
+        }
+        File file = new File(root, "async.txt");
+        assertEquals(5, engine.writeAsync(new WriteRequest(file, bytes("async"))).get().bytesWritten);
+        assertEquals(5, engine.statAsync(file).get().size);
+    }
+
+    @Test
+    public void appliesMutationsInCallOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            FileEngine parallel = new FileEngine(pool);
+            File log = new File(root, "log.txt");
+            File moved = new File(root, "moved.txt");
+            StringBuilder expected = new StringBuilder();
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+            // Not awaited one by one, like calls fired from JS without await
+            for (int i = 0; i < 200; i++) {
+                pending.add(parallel.writeAsync(new WriteRequest(log, bytes(i + ",")).append(true)));
+                expected.append(i).append(',');
+            }
+            pending.add(parallel.moveAsync(new CopyRequest(log, moved)));
+            pending.add(parallel.writeAsync(new WriteRequest(log, bytes("new"))));
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+            assertEquals(expected.toString(), text(engine.read(new ReadRequest(moved))));
+            assertEquals("new", text(engine.read(new ReadRequest(log))));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertCode(String code, ThrowingRunnable runnable) {
+        FileEngineException error = assertThrows(FileEngineException.class, runnable);
+        assertEquals(code, error.getCode());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,97 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class FileMetricsTest {
+
+    @Test
+    public void histogramPercentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertEquals(1_000, histogram.minNanos());
+        assertEquals(10_000_000, histogram.maxNanos());
+        assertEquals(5_000_500, histogram.meanNanos(), 1);
+        assertWithin(5_000_000, histogram.percentileNanos(50));
+        assertWithin(9_900_000, histogram.percentileNanos(99));
+        assertEquals(10_000_000, histogram.percentileNanos(100));
+    }
+
+    @Test
+    public void bucketIndexRoundTrips() {
+        for (long value : new long[] { 1, 15, 16, 17, 31, 32, 1_000, 123_456_789, Long.MAX_VALUE >> 2 }) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.highestEquivalentValue(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        FileMetrics metrics = new FileMetrics();
+        long started = metrics.begin("readFile");
+        assertEquals(0, started);
+        metrics.recordError("readFile", "NOT_FOUND_ERR");
+        metrics.recordBytesRead("readFile", 10);
+        metrics.end("readFile", started);
+        assertTrue(metrics.operations().isEmpty());
+    }
+
+    @Test
+    public void recordsCallsErrorsBytesAndInFlight() {
+        FileMetrics metrics = new FileMetrics();
+        metrics.setEnabled(true);
+
+        long first = metrics.begin("readFile");
+        long second = metrics.begin("readFile");
+        FileMetrics.Operation operation = metrics.operations().get("readFile");
+        assertEquals(2, operation.inFlight.get());
+
+        metrics.recordBytesRead("readFile", 128);
+        metrics.recordError("readFile", "NOT_FOUND_ERR");
+        metrics.end("readFile", first);
+        metrics.end("readFile", second);
+
+        assertEquals(0, operation.inFlight.get());
+        assertEquals(2, operation.calls.sum());
+        assertEquals(128, operation.bytesRead.sum());
+        assertEquals(1, operation.errorCount());
+
+        long running = metrics.begin("readFile");
+        metrics.reset();
+        assertEquals(0, operation.calls.sum());
+        assertEquals(1, operation.inFlight.get());
+        metrics.end("readFile", running);
+        assertEquals(0, operation.inFlight.get());
+    }
+
+    @Test
+    public void recordingOverhead() throws Exception {
+        org.junit.Assume.assumeTrue("benchmarks disabled", BenchmarkRunner.enabled());
+        FileMetrics disabled = new FileMetrics();
+        FileMetrics enabled = new FileMetrics();
+        enabled.setEnabled(true);
+        int calls = 1_000_000;
+        BenchmarkRunner.run("metrics disabled x1M", 0, 3, 10, (i) -> {
+            for (int call = 0; call < calls; call++) {
+                disabled.end("readFile", disabled.begin("readFile"));
+            }
+        });
+        BenchmarkRunner.run("metrics enabled x1M", 0, 3, 10, (i) -> {
+            for (int call = 0; call < calls; call++) {
+                enabled.end("readFile", enabled.begin("readFile"));
+            }
+        });
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " got " + actual, Math.abs(actual - expected) <= expected * 0.07);
+    }
+}
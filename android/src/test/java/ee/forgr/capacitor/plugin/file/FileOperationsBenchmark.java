@@ -0,0 +1,210 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static ee.forgr.capacitor.plugin.file.BenchmarkRunner.FAN_OUTS;
+import static ee.forgr.capacitor.plugin.file.BenchmarkRunner.FILE_SIZES;
+import static ee.forgr.capacitor.plugin.file.BenchmarkRunner.KB;
+import static ee.forgr.capacitor.plugin.file.BenchmarkRunner.MB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Throughput and allocation benchmarks for the I/O paths behind readFile, writeFile, copy, readdir and rmdir.
+ *
+ * Run with {@code ./gradlew testDebugUnitTest -PcapacitorFileBenchmark --tests '*Benchmark'}.
+ * Sizes and fan-outs can be capped with {@code -PcapacitorFileBenchmarkMaxBytes} and
+ * {@code -PcapacitorFileBenchmarkMaxEntries}.
+ */
+public class FileOperationsBenchmark {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("benchmarks disabled", BenchmarkRunner.enabled());
+        root = BenchmarkRunner.scratchDirectory("ops");
+    }
+
+    @After
+    public void tearDown() {
+        if (root != null) {
+            FileOperations.deleteRecursively(root);
+        }
+    }
+
+    @Test
+    public void readFile() throws Exception {
+        for (long size : FILE_SIZES) {
+            if (!fitsInMemory(size)) continue;
+            File file = createFile(new File(root, "read-" + size), size);
+            BenchmarkRunner.run("readFile " + BenchmarkRunner.label(size), size, 2, BenchmarkRunner.iterationsFor(size), (i) ->
+                assertEquals(size, FileOperations.readRange(file, 0, null).length)
+            );
+        }
+    }
+
+    @Test
+    public void readFileRange() throws Exception {
+        for (long size : FILE_SIZES) {
+            if (size > BenchmarkRunner.maxBytes()) continue;
+            File file = createFile(new File(root, "range-" + size), size);
+            int length = (int) Math.min(size, 64 * KB);
+            long span = size - length;
+            Random random = new Random(size);
+            BenchmarkRunner.run("readFile range 64KB of " + BenchmarkRunner.label(size), length, 20, 1_000, (i) ->
+                FileOperations.readRange(file, span > 0 ? (long) (random.nextDouble() * span) : 0, length)
+            );
+        }
+    }
+
+    @Test
+    public void readRanges() throws Exception {
+        // 200 small entries of an indexed pack, as one batch and as one read per entry
+        long size = Math.min(16 * MB, BenchmarkRunner.maxBytes());
+        File file = createFile(new File(root, "pack"), size);
+        Random random = new Random(size);
+        long[] offsets = new long[200];
+        int[] lengths = new int[offsets.length];
+        long total = 0;
+        for (int r = 0; r < offsets.length; r++) {
+            lengths[r] = 256 + random.nextInt(4 * (int) KB);
+            offsets[r] = (long) (random.nextDouble() * (size - lengths[r]));
+            total += lengths[r];
+        }
+        BenchmarkRunner.run("readRange x200", total, 20, 500, (i) -> {
+            for (int r = 0; r < offsets.length; r++) {
+                FileOperations.readRange(file, offsets[r], lengths[r]);
+            }
+        });
+        BenchmarkRunner.run("readRanges 200", total, 20, 500, (i) -> FileOperations.readRanges(file, offsets, lengths));
+    }
+
+    @Test
+    public void writeFile() throws Exception {
+        for (long size : FILE_SIZES) {
+            if (!fitsInMemory(size)) continue;
+            byte[] data = randomBytes((int) size);
+            File file = new File(root, "write-" + size);
+            BenchmarkRunner.run("writeFile " + BenchmarkRunner.label(size), size, 2, BenchmarkRunner.iterationsFor(size), (i) ->
+                FileOperations.write(file, data, false, null)
+            );
+            file.delete();
+        }
+    }
+
+    @Test
+    public void appendFile() throws Exception {
+        byte[] chunk = randomBytes((int) (64 * KB));
+        File file = new File(root, "append");
+        FileOperations.write(file, chunk, false, null);
+        BenchmarkRunner.run("appendFile 64KB", chunk.length, 20, 1_000, (i) -> FileOperations.write(file, chunk, true, null));
+    }
+
+    @Test
+    public void copyFile() throws Exception {
+        for (long size : FILE_SIZES) {
+            if (size > BenchmarkRunner.maxBytes()) continue;
+            File source = createFile(new File(root, "copy-src-" + size), size);
+            File dest = new File(root, "copy-dst-" + size);
+            BenchmarkRunner.run("copyFile " + BenchmarkRunner.label(size), size, 1, BenchmarkRunner.iterationsFor(size), (i) ->
+                FileOperations.copyFile(source, dest)
+            );
+            source.delete();
+            dest.delete();
+        }
+    }
+
+    @Test
+    public void copyDirectory() throws Exception {
+        for (int fanOut : FAN_OUTS) {
+            if (fanOut > BenchmarkRunner.maxEntries()) continue;
+            File source = createTree(new File(root, "tree-" + fanOut), fanOut);
+            int iterations = treeIterations(fanOut);
+            BenchmarkRunner.run("copyDirectory " + fanOut + " x 1KB", fanOut * KB, 1, iterations, (i) ->
+                FileOperations.copyDirectory(source, new File(root, "tree-copy-" + fanOut + "-" + i))
+            );
+            for (int i = 0; i < iterations + 1; i++) {
+                FileOperations.deleteRecursively(new File(root, "tree-copy-" + fanOut + "-" + i));
+            }
+            FileOperations.deleteRecursively(source);
+        }
+    }
+
+    @Test
+    public void readdir() throws Exception {
+        for (int fanOut : FAN_OUTS) {
+            if (fanOut > BenchmarkRunner.maxEntries()) continue;
+            File dir = createTree(new File(root, "list-" + fanOut), fanOut);
+            String parentPath = dir.getAbsolutePath();
+            String parentUri = FileUris.toUri(parentPath);
+            // Mirrors the per-entry work done by the plugin's readdir before building the JS objects
+            BenchmarkRunner.run("readdir " + fanOut, 0, 3, treeIterations(fanOut) * 3, (i) -> {
+                String[] names = dir.list();
+                int directories = 0;
+                for (String name : names) {
+                    if (new File(parentPath + "/" + name).isDirectory()) directories++;
+                    FileUris.childUri(parentUri, name);
+                }
+                assertEquals(0, directories);
+            });
+            FileOperations.deleteRecursively(dir);
+        }
+    }
+
+    @Test
+    public void deleteRecursively() throws Exception {
+        for (int fanOut : FAN_OUTS) {
+            if (fanOut > BenchmarkRunner.maxEntries()) continue;
+            int iterations = treeIterations(fanOut);
+            File[] trees = new File[iterations + 1];
+            for (int i = 0; i < trees.length; i++) {
+                trees[i] = createTree(new File(root, "delete-" + fanOut + "-" + i), fanOut);
+            }
+            BenchmarkRunner.run("deleteRecursively " + fanOut, 0, 1, iterations, (i) -> FileOperations.deleteRecursively(trees[i]));
+        }
+    }
+
+    static int treeIterations(int fanOut) {
+        return Math.max(3, Math.min(50, 100_000 / fanOut));
+    }
+
+    static boolean fitsInMemory(long size) {
+        // Whole-file reads and writes hold the payload in a byte[]; leave headroom for the copy made by the benchmark
+        return size <= BenchmarkRunner.maxBytes() && size < Runtime.getRuntime().maxMemory() / 3;
+    }
+
+    static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    static File createFile(File file, long size) throws IOException {
+        byte[] chunk = randomBytes((int) Math.min(size, MB));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long written = 0;
+            while (written < size) {
+                int length = (int) Math.min(chunk.length, size - written);
+                raf.write(chunk, 0, length);
+                written += length;
+            }
+        }
+        return file;
+    }
+
+    static File createTree(File dir, int fanOut) throws IOException {
+        dir.mkdirs();
+        byte[] data = randomBytes((int) KB);
+        for (int i = 0; i < fanOut; i++) {
+            FileOperations.write(new File(dir, "entry-" + i + ".bin"), data, false, null);
+        }
+        return dir;
+    }
+}
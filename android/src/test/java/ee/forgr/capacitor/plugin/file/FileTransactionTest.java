@@ -0,0 +1,283 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileTransactionTest {
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private File root;
+    private File files;
+    private File journals;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("transaction");
+        files = new File(root, "files");
+        journals = new File(root, "journals");
+        files.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void commitsWritesRenamesAndDeletes() throws IOException {
+        File index = file("index.json", "old index");
+        File draft = file("draft.bin", "draft");
+        File stale = file("stale.bin", "stale");
+        File published = file("published.bin", "previous");
+
+        FileTransaction.create(
+            journals,
+            Arrays.asList(
+                FileTransaction.Operation.write(new WriteRequest(index, bytes("new index"))),
+                FileTransaction.Operation.write(new WriteRequest(new File(files, "new/meta.json"), bytes("{}")).recursive(true)),
+                FileTransaction.Operation.rename(draft, published),
+                FileTransaction.Operation.delete(stale)
+            )
+        ).commit(engine);
+
+        assertEquals("new index", read(index));
+        assertEquals("{}", read(new File(files, "new/meta.json")));
+        assertEquals("draft", read(published));
+        assertFalse(draft.exists());
+        assertFalse(stale.exists());
+        assertOnly(files, "index.json", "new", "published.bin");
+        assertOnly(journals);
+    }
+
+    @Test
+    public void rollsBackWhenAnOperationFails() throws IOException {
+        File index = file("index.json", "old index");
+        File stale = file("stale.bin", "stale");
+        File source = file("source.bin", "source");
+        File target = new File(files, "target.bin");
+        // Syncing the renamed files fails once, after the write, the delete and the rename were applied
+        AtomicBoolean failed = new AtomicBoolean();
+        listenToSyncs((sync) -> {
+            if (sync.equals("files STAGED") && failed.compareAndSet(false, true)) {
+                throw new IOException("Sync failed");
+            }
+        });
+
+        assertThrows(IOException.class, () ->
+            FileTransaction.create(
+                journals,
+                Arrays.asList(
+                    FileTransaction.Operation.write(new WriteRequest(index, bytes("new index"))),
+                    FileTransaction.Operation.delete(stale),
+                    FileTransaction.Operation.rename(source, target)
+                )
+            ).commit(engine)
+        );
+
+        assertEquals("old index", read(index));
+        assertEquals("stale", read(stale));
+        assertEquals("source", read(source));
+        assertOnly(files, "index.json", "source.bin", "stale.bin");
+        assertOnly(journals);
+
+        // A rename into a directory that doesn't exist is refused before anything visible changes
+        FileEngineException error = assertThrows(FileEngineException.class, () ->
+            FileTransaction.create(
+                journals,
+                Arrays.asList(
+                    FileTransaction.Operation.write(new WriteRequest(index, bytes("new index"))),
+                    FileTransaction.Operation.rename(source, new File(files, "missing/target.bin"))
+                )
+            ).commit(engine)
+        );
+        assertEquals(FileEngineException.NOT_FOUND_ERR, error.getCode());
+        assertEquals("old index", read(index));
+        assertOnly(files, "index.json", "source.bin", "stale.bin");
+        assertOnly(journals);
+    }
+
+    @Test
+    public void commitsWhenOnlyRecordingTheCommitFails() throws IOException {
+        File index = file("index.json", "old index");
+        listenToSyncs((sync) -> {
+            if (sync.equals("journals COMMITTED")) {
+                throw new IOException("Sync failed");
+            }
+        });
+
+        FileTransaction.Operation write = FileTransaction.Operation.write(new WriteRequest(index, bytes("new index")));
+        FileTransaction.create(journals, Arrays.asList(write)).commit(engine);
+
+        assertEquals("new index", read(index));
+        assertOnly(files, "index.json");
+        assertOnly(journals);
+    }
+
+    @Test
+    public void rejectsInvalidOperationsBeforeWriting() throws IOException {
+        File index = file("index.json", "index");
+        assertCode(
+            FileEngineException.INVALID_MODIFICATION_ERR,
+            FileTransaction.Operation.write(new WriteRequest(index, bytes("a"))),
+            FileTransaction.Operation.delete(index)
+        );
+        assertCode(FileEngineException.NOT_FOUND_ERR, FileTransaction.Operation.delete(new File(files, "missing")));
+        File orphan = new File(files, "missing/file");
+        assertCode(FileEngineException.NOT_FOUND_ERR, FileTransaction.Operation.write(new WriteRequest(orphan, bytes("a"))));
+        assertCode(FileEngineException.TYPE_MISMATCH_ERR, FileTransaction.Operation.write(new WriteRequest(files, bytes("a"))));
+        assertEquals("index", read(index));
+        assertFalse(journals.exists());
+    }
+
+    @Test
+    public void recoversInterruptedTransactions() throws IOException {
+        // Killed while staging: the staged file is dropped and the target is untouched
+        File kept = file("kept.txt", "kept");
+        File keptStage = file(".kept.txt.a.stage", "partial");
+        journal("a", "STAGING", "WRITE", kept, null);
+
+        // Killed after staging, halfway through applying: the remaining steps run
+        File index = file("index.json", "old index");
+        File indexStage = file(".index.json.b.stage", "new index");
+        File moved = new File(files, "moved.bin");
+        file(".moved.bin.b.orig", "replaced");
+        file("moved.bin", "renamed");
+        File source = new File(files, "source.bin");
+        journal("b", "STAGED", "WRITE", index, null, "RENAME", moved, source);
+
+        // Killed after committing: only the cleanup is left
+        File done = file("done.txt", "done");
+        File doneBackup = file(".done.txt.c.orig", "before");
+        journal("c", "COMMITTED", "WRITE", done, null);
+
+        assertEquals(3, FileTransaction.recover(journals, ContentStoreTest.JVM_IO));
+
+        assertEquals("kept", read(kept));
+        assertFalse(keptStage.exists());
+        assertEquals("new index", read(index));
+        assertFalse(indexStage.exists());
+        assertEquals("renamed", read(moved));
+        assertFalse(source.exists());
+        assertEquals("done", read(done));
+        assertFalse(doneBackup.exists());
+        assertOnly(files, "done.txt", "index.json", "kept.txt", "moved.bin");
+        assertOnly(journals);
+        assertEquals(0, FileTransaction.recover(journals, ContentStoreTest.JVM_IO));
+    }
+
+    @Test
+    public void syncsDirectoriesBeforeEachJournalUpdate() throws IOException {
+        // Each sync is logged with the journal state at that moment, so the order of renames and syncs shows
+        List<String> syncs = new ArrayList<>();
+        listenToSyncs(syncs::add);
+        File index = file("index.json", "old index");
+
+        FileTransaction.Operation write = FileTransaction.Operation.write(new WriteRequest(index, bytes("new index")));
+        FileTransaction.create(journals, Arrays.asList(write)).commit(engine);
+
+        assertEquals(
+            Arrays.asList("journals STAGING", "files STAGING", "journals STAGED", "files STAGED", "journals COMMITTED"),
+            syncs
+        );
+        assertEquals("new index", read(index));
+    }
+
+    /** Sees every directory sync as its directory name and the journal state at that moment; throwing fails it. */
+    private interface SyncListener {
+        void synced(String sync) throws IOException;
+    }
+
+    private void listenToSyncs(SyncListener listener) {
+        engine.setNativeIo(new NativeIo() {
+            @Override
+            public void link(File existing, File link) {}
+
+            @Override
+            public long linkCount(File file) {
+                return 1;
+            }
+
+            @Override
+            public boolean allocate(FileDescriptor fd, long offset, long length) {
+                return false;
+            }
+
+            @Override
+            public void syncDirectory(File dir) throws IOException {
+                ContentStoreTest.JVM_IO.syncDirectory(dir);
+                listener.synced(dir.getName() + " " + journalState());
+            }
+        });
+    }
+
+    private String journalState() throws IOException {
+        String[] names = journals.list((dir, name) -> name.endsWith(".journal"));
+        if (names == null || names.length == 0) {
+            return "none";
+        }
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(new File(journals, names[0]))) {
+            properties.load(in);
+        }
+        return properties.getProperty("state");
+    }
+
+    private void assertCode(String code, FileTransaction.Operation... operations) {
+        FileEngineException error = assertThrows(FileEngineException.class, () ->
+            FileTransaction.create(journals, Arrays.asList(operations)).commit(engine)
+        );
+        assertEquals(code, error.getCode());
+    }
+
+    /** Writes a journal the way a transaction killed in {@code state} leaves it; operations are (type, target, source). */
+    private void journal(String id, String state, Object... operations) throws IOException {
+        journals.mkdirs();
+        Properties properties = new Properties();
+        properties.setProperty("state", state);
+        properties.setProperty("operations", Integer.toString(operations.length / 3));
+        for (int i = 0; i < operations.length / 3; i++) {
+            properties.setProperty(i + ".type", (String) operations[i * 3]);
+            properties.setProperty(i + ".target", ((File) operations[i * 3 + 1]).getAbsolutePath());
+            if (operations[i * 3 + 2] != null) {
+                properties.setProperty(i + ".source", ((File) operations[i * 3 + 2]).getAbsolutePath());
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(new File(journals, id + ".journal"))) {
+            properties.store(out, null);
+        }
+    }
+
+    private File file(String name, String contents) throws IOException {
+        File file = new File(files, name);
+        engine.write(new WriteRequest(file, bytes(contents)));
+        return file;
+    }
+
+    private String read(File file) throws IOException {
+        return new String(engine.read(new ReadRequest(file)), StandardCharsets.UTF_8);
+    }
+
+    private static void assertOnly(File dir, String... names) {
+        String[] actual = dir.exists() ? dir.list() : new String[0];
+        Arrays.sort(actual);
+        assertArrayEquals(names, actual);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+public class FileUrisTest {
+
+    @Test
+    public void encodesLikeUriFromFile() {
+        assertEquals("file:///data/user/0/app/files/a.txt", FileUris.toUri("/data/user/0/app/files/a.txt"));
+        assertEquals("file:///data/my%20file%23%3F.txt", FileUris.toUri("/data/my file#?.txt"));
+        assertEquals("file:///data/caf%C3%A9/(1)!~'*.png", FileUris.toUri("/data/caf\u00e9/(1)!~'*.png"));
+        assertEquals("file:///data/%F0%9F%98%80", FileUris.toUri("/data/\ud83d\ude00"));
+    }
+
+    @Test
+    public void childAndBaseUrisMatchFullEncoding() {
+        FileUris uris = new FileUris();
+        File base = new File("/data/user/0/app/files");
+        String baseUri = uris.baseUri(base);
+        assertEquals(FileUris.toUri(base.getAbsolutePath()), baseUri);
+
+        File child = new File(base, "Documents/photo 1.jpg");
+        assertEquals(FileUris.toUri(child.getAbsolutePath()), uris.toUri(child));
+        assertEquals(FileUris.toUri("/data/user/0/app/files/photo 1.jpg"), FileUris.childUri(baseUri, "photo 1.jpg"));
+        assertEquals("file:///x", FileUris.childUri("file:///", "x"));
+    }
+
+    /**
+     * Allocation benchmark for readdir-style serialization: encoding every entry's absolute path
+     * versus reusing the parent's encoded URI and encoding only the entry name.
+     */
+    @Test
+    public void childUriAllocatesLessThanFullEncoding() {
+        String parent = "/data/user/0/app.capgo.file/files/Documents/gallery/2024";
+        String parentUri = FileUris.toUri(parent);
+        String[] names = new String[1000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "IMG_" + i + ".jpg";
+        }
+
+        // Warm up both paths so the JIT settles before measuring
+        for (int i = 0; i < 20; i++) {
+            fullEncoding(parent, names);
+            childEncoding(parentUri, names);
+        }
+
+        long fullBytes = allocatedBytes(() -> fullEncoding(parent, names));
+        long childBytes = allocatedBytes(() -> childEncoding(parentUri, names));
+        // Zero when the JVM can't count allocations; the comparison would then mean nothing
+        assumeTrue(fullBytes > 0);
+        assertTrue("child encoding should allocate less than full encoding", childBytes < fullBytes);
+    }
+
+    private static int fullEncoding(String parent, String[] names) {
+        int total = 0;
+        for (String name : names) {
+            total += FileUris.toUri(new File(parent, name).getAbsolutePath()).length();
+        }
+        return total;
+    }
+
+    private static int childEncoding(String parentUri, String[] names) {
+        int total = 0;
+        for (String name : names) {
+            total += FileUris.childUri(parentUri, name).length();
+        }
+        return total;
+    }
+
+    private static long allocatedBytes(Runnable work) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        work.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -0,0 +1,87 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageCacheWarmerTest {
+
+    /** Runs queued work only when asked, so tests can act while requests are pending. */
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final PageCacheWarmer warmer = new PageCacheWarmer(tasks::add);
+    private File root;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("warmer");
+        file = new File(root, "map.bin");
+        FileOperations.write(file, new byte[(int) PageCacheWarmer.READ_AHEAD * 3], false, null);
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void warmsRequestedRanges() throws Exception {
+        CompletableFuture<Long> whole = warmer.warm(file, 0, -1);
+        CompletableFuture<Long> range = warmer.warm(file, 100, 1000);
+        CompletableFuture<Long> pastEnd = warmer.warm(file, file.length() - 10, 1000);
+        CompletableFuture<Long> missing = warmer.warm(new File(root, "missing"), 0, -1);
+        runTasks();
+
+        assertEquals(file.length(), (long) whole.get());
+        assertEquals(1000L, (long) range.get());
+        assertEquals(10L, (long) pastEnd.get());
+        assertEquals(0L, (long) missing.get());
+    }
+
+    @Test
+    public void readsAheadOfSequentialReads() throws Exception {
+        warmer.onRead(file, 0, 4096);
+        assertTrue(tasks.isEmpty());
+
+        warmer.advise(file, ReadAdvice.SEQUENTIAL, 0, -1);
+        warmer.onRead(file, 0, 4096);
+        assertEquals(1, tasks.size());
+        runTasks();
+
+        // Still well inside the warmed window: nothing new to schedule
+        warmer.onRead(file, 4096, 4096);
+        assertTrue(tasks.isEmpty());
+        warmer.onRead(file, PageCacheWarmer.READ_AHEAD, 4096);
+        assertEquals(1, tasks.size());
+        runTasks();
+
+        warmer.advise(file, ReadAdvice.RANDOM, 0, -1);
+        warmer.onRead(file, PageCacheWarmer.READ_AHEAD * 2, 4096);
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void dontNeedDropsPendingWork() throws Exception {
+        CompletableFuture<Long> pending = warmer.warm(file, 0, -1);
+        warmer.advise(file, ReadAdvice.SEQUENTIAL, 0, -1);
+        warmer.advise(file, ReadAdvice.DONTNEED, 0, -1);
+        assertEquals(0L, (long) pending.get());
+
+        warmer.onRead(file, 0, 4096);
+        runTasks();
+        assertTrue(tasks.isEmpty());
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadCacheTest {
+
+    private final FileEngine engine = new FileEngine(Runnable::run);
+    private final AtomicInteger loads = new AtomicInteger();
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("read-cache");
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void servesUnchangedFilesFromMemory() throws IOException {
+        ReadCache cache = new ReadCache(1 << 20);
+        File file = write("config.json", "{\"a\":1}");
+
+        assertEquals("eyJhIjoxfQ==", read(cache, file, "base64"));
+        assertEquals("eyJhIjoxfQ==", read(cache, file, "base64"));
+        assertEquals("{\"a\":1}", read(cache, file, "UTF-8"));
+        assertEquals(2, loads.get());
+
+        ReadCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(2, stats.entries);
+        assertEquals(1 / 3.0, stats.hitRate(), 1e-9);
+
+        // A rewrite of another size, or with another mtime, is noticed without invalidation
+        write("config.json", "{\"a\":22}");
+        assertEquals("{\"a\":22}", read(cache, file, "UTF-8"));
+        write("config.json", "{\"a\":33}");
+        assertTrue(file.setLastModified(file.lastModified() - 10_000));
+        assertEquals("{\"a\":33}", read(cache, file, "UTF-8"));
+        assertEquals(4, loads.get());
+
+        cache.resetStats();
+        assertEquals(0, cache.stats().hitRate(), 0);
+    }
+
+    @Test
+    public void invalidatesFilesAndDirectories() throws IOException {
+        ReadCache cache = new ReadCache(1 << 20);
+        File a = write("i18n/en.json", "en");
+        File b = write("i18n/fr.json", "fr");
+        File other = write("i18n-old/en.json", "old");
+        read(cache, a, "UTF-8");
+        read(cache, b, "UTF-8");
+        read(cache, other, "UTF-8");
+
+        cache.invalidate(a);
+        assertEquals(2, cache.stats().entries);
+        cache.invalidate(new File(root, "i18n"));
+        assertEquals(1, cache.stats().entries);
+        read(cache, other, "UTF-8");
+        assertEquals(1, cache.stats().hits);
+    }
+
+    @Test
+    public void dropsReadsThatRacedAMutation() throws IOException {
+        ReadCache cache = new ReadCache(1 << 20);
+        File file = write("index.json", "old");
+        String value = cache.get(file, "UTF-8", () -> {
+            // A write lands while the read is in flight
+            cache.invalidate(file);
+            return "old";
+        });
+        assertEquals("old", value);
+        assertEquals(0, cache.stats().entries);
+    }
+
+    @Test
+    public void staysWithinItsByteBudget() throws IOException {
+        File small = write("small.txt", repeat('s', 1000));
+        File large = write("large.txt", repeat('l', (int) ReadCache.MAX_FILE_BYTES + 1));
+        ReadCache cache = new ReadCache(5_000);
+
+        read(cache, large, "UTF-8");
+        assertEquals(0, cache.stats().entries);
+
+        for (int i = 0; i < 5; i++) {
+            read(cache, write("file" + i + ".txt", repeat('x', 1000)), "UTF-8");
+        }
+        ReadCache.Stats stats = cache.stats();
+        assertTrue(stats.bytes <= 5_000);
+        assertTrue(stats.evictions > 0);
+
+        // The most recently used entries survive
+        read(cache, small, "UTF-8");
+        read(cache, small, "UTF-8");
+        assertEquals(1, cache.stats().hits);
+    }
+
+    private String read(ReadCache cache, File file, String encoding) throws IOException {
+        return cache.get(file, encoding, () -> {
+            loads.incrementAndGet();
+            ReadRequest request = new ReadRequest(file);
+            return encoding.equals("base64") ? engine.readBase64(request) : new String(engine.read(request), StandardCharsets.UTF_8);
+        });
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = new File(root, name);
+        engine.write(new WriteRequest(file, contents.getBytes(StandardCharsets.UTF_8)).recursive(true));
+        return file;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
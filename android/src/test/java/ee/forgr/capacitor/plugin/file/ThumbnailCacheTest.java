@@ -0,0 +1,104 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThumbnailCacheTest {
+
+    private final AtomicInteger decodes = new AtomicInteger();
+    private File root;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("thumbnails");
+        cacheDir = new File(root, "cache");
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void servesRepeatRequestsFromMemoryThenDisk() throws Exception {
+        File image = image("a.jpg", "pixels");
+        ThumbnailCache cache = cache(1024 * 1024, 1024 * 1024);
+
+        ImagePreview first = cache.get(image, 64, 80, true).get();
+        assertSame(first, cache.get(image, 64, 80, true).get());
+        assertEquals(1, decodes.get());
+
+        cache.clearMemory();
+        ImagePreview fromDisk = cache.get(image, 64, 80, true).get();
+        assertEquals(1, decodes.get());
+        assertEquals(first.toDataUrl(), fromDisk.toDataUrl());
+        assertEquals(64, fromDisk.width);
+
+        cache.get(image, 128, 80, true).get();
+        assertEquals(2, decodes.get());
+    }
+
+    @Test
+    public void decodesAgainWhenTheFileChanges() throws Exception {
+        File image = image("b.jpg", "old");
+        ThumbnailCache cache = cache(1024 * 1024, 1024 * 1024);
+        cache.get(image, 64, 80, false).get();
+
+        FileOperations.write(image, "newer".getBytes(StandardCharsets.UTF_8), false, null);
+        image.setLastModified(image.lastModified() + 2000);
+        assertTrue(cache.get(image, 64, 80, false).get().toDataUrl().endsWith(base64("newer")));
+        assertEquals(2, decodes.get());
+    }
+
+    @Test
+    public void boundsMemoryAndDisk() throws Exception {
+        ThumbnailCache cache = cache(1024, 1024);
+        for (int i = 0; i < 20; i++) {
+            cache.get(image(i + ".jpg", "image-" + i + "-0123456789012345678901234567890123456789"), 64, 80, true).get();
+        }
+        assertTrue(cache.memoryBytes() <= 1024);
+        long diskBytes = 0;
+        for (File file : cacheDir.listFiles()) {
+            diskBytes += file.length();
+        }
+        assertTrue(diskBytes <= 1024);
+    }
+
+    @Test
+    public void reportsMissingFiles() {
+        ThumbnailCache cache = cache(1024, 1024);
+        File missing = new File(root, "missing.jpg");
+        ExecutionException error = assertThrows(ExecutionException.class, () -> cache.get(missing, 64, 80, true).get());
+        assertEquals(FileEngineException.NOT_FOUND_ERR, ((FileEngineException) error.getCause()).getCode());
+        assertEquals(0, decodes.get());
+    }
+
+    private ThumbnailCache cache(long memoryLimit, long diskLimit) {
+        // The fake decoder "renders" the file contents, so tests can tell thumbnails of different versions apart
+        return new ThumbnailCache(cacheDir, memoryLimit, diskLimit, Runnable::run, Runnable::run, (file, maxSize, quality, webp) -> {
+            decodes.incrementAndGet();
+            byte[] data = FileOperations.readRange(file, 0, null);
+            return new ImagePreview(data, data.length, webp ? "image/webp" : "image/jpeg", maxSize, maxSize);
+        });
+    }
+
+    private File image(String name, String content) throws IOException {
+        File file = new File(root, name);
+        FileOperations.write(file, content.getBytes(StandardCharsets.UTF_8), false, null);
+        return file;
+    }
+
+    private static String base64(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,173 @@
+package ee.forgr.capacitor.plugin.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransferJobRunnerTest {
+
+    private File root;
+    private File jobsDir;
+
+    @Before
+    public void setUp() throws IOException {
+        root = BenchmarkRunner.scratchDirectory("jobs");
+        jobsDir = new File(root, "jobs");
+    }
+
+    @After
+    public void tearDown() {
+        FileOperations.deleteRecursively(root);
+    }
+
+    @Test
+    public void resumesCopyFromCheckpoint() throws IOException {
+        byte[] data = randomBytes((int) (TransferJobRunner.CHECKPOINT_BYTES * 2 + 1234));
+        File source = new File(root, "source/big.bin");
+        new File(root, "source/empty").mkdirs();
+        FileOperations.write(source, data, false, null);
+        File destination = new File(root, "copy");
+
+        TransferJob job = TransferJob.create(jobsDir, TransferJob.Type.COPY, source.getParentFile(), destination, false);
+        assertFalse(new TransferJobRunner(job, new StopAfter(1)).run());
+
+        // A fresh load sees only what was checkpointed, as after a process kill
+        TransferJob resumed = TransferJob.load(jobsDir, job.id);
+        assertTrue(resumed.itemOffset > 0);
+        assertEquals(data.length, resumed.bytesTotal);
+        assertTrue(new TransferJobRunner(resumed, new StopAfter(Integer.MAX_VALUE)).run());
+
+        assertArrayEquals(data, FileOperations.readRange(new File(destination, "big.bin"), 0, null));
+        assertTrue(new File(destination, "empty").isDirectory());
+        assertEquals(data.length, resumed.bytesDone);
+        assertEquals(resumed.itemsTotal, resumed.itemsDone);
+    }
+
+    @Test
+    public void stopsWhenCancelled() throws IOException {
+        File source = new File(root, "file.bin");
+        FileOperations.write(source, randomBytes((int) TransferJobRunner.CHECKPOINT_BYTES * 2), false, null);
+
+        TransferJob job = TransferJob.create(jobsDir, TransferJob.Type.COPY, source, new File(root, "out.bin"), false);
+        job.markCancelled();
+        assertFalse(new TransferJobRunner(job, new StopAfter(Integer.MAX_VALUE)).run());
+        assertEquals(TransferJob.State.CANCELLED, TransferJob.load(jobsDir, job.id).effectiveState());
+    }
+
+    @Test
+    public void unzipsAndResumesPartialEntry() throws IOException {
+        byte[] large = randomBytes((int) (TransferJobRunner.CHECKPOINT_BYTES * 2 + 99));
+        File archive = new File(root, "archive.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("dir/"));
+            zip.putNextEntry(new ZipEntry("dir/small.txt"));
+            zip.write("small".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("large.bin"));
+            zip.write(large);
+        }
+        File destination = new File(root, "unzipped");
+
+        TransferJob job = TransferJob.create(jobsDir, TransferJob.Type.UNZIP, archive, destination, false);
+        assertFalse(new TransferJobRunner(job, new StopAfter(1)).run());
+
+        TransferJob resumed = TransferJob.load(jobsDir, job.id);
+        assertEquals(2, resumed.itemIndex);
+        assertTrue(resumed.itemOffset > 0 && resumed.itemOffset < large.length);
+        assertTrue(new TransferJobRunner(resumed, new StopAfter(Integer.MAX_VALUE)).run());
+
+        assertArrayEquals(large, FileOperations.readRange(new File(destination, "large.bin"), 0, null));
+        byte[] small = FileOperations.readRange(new File(destination, "dir/small.txt"), 0, null);
+        assertEquals("small", new String(small, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void checkpointsSmallEntriesInBatches() throws IOException {
+        File archive = new File(root, "many.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (int i = 0; i < 200; i++) {
+                zip.putNextEntry(new ZipEntry("entry" + i + ".txt"));
+                zip.write(("entry " + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        File destination = new File(root, "many");
+
+        TransferJob job = TransferJob.create(jobsDir, TransferJob.Type.UNZIP, archive, destination, false);
+        int[] checkpoints = new int[1];
+        assertTrue(
+            new TransferJobRunner(
+                job,
+                new TransferJobRunner.Control() {
+                    @Override
+                    public boolean isStopped() {
+                        return false;
+                    }
+
+                    @Override
+                    public void onProgress(TransferJob job) {
+                        checkpoints[0]++;
+                    }
+                }
+            ).run()
+        );
+
+        assertEquals(200, destination.list().length);
+        byte[] last = FileOperations.readRange(new File(destination, "entry199.txt"), 0, null);
+        assertEquals("entry 199", new String(last, StandardCharsets.UTF_8));
+        // The plan is checkpointed, then only as time passes, never once per entry
+        assertTrue(checkpoints[0] < 20);
+    }
+
+    @Test
+    public void rejectsEntriesOutsideDestination() throws IOException {
+        File archive = new File(root, "evil.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("../escape.txt"));
+            zip.write(1);
+        }
+
+        TransferJob job = TransferJob.create(jobsDir, TransferJob.Type.UNZIP, archive, new File(root, "out"), false);
+        FileEngineException error = assertThrows(FileEngineException.class, () ->
+            new TransferJobRunner(job, new StopAfter(Integer.MAX_VALUE)).run()
+        );
+        assertEquals(FileEngineException.INVALID_MODIFICATION_ERR, error.getCode());
+        assertFalse(new File(root, "escape.txt").exists());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    /** Requests a stop once the given number of checkpoints inside a file has been saved. */
+    private static final class StopAfter implements TransferJobRunner.Control {
+
+        private final int checkpoints;
+        private int saved;
+
+        StopAfter(int checkpoints) {
+            this.checkpoints = checkpoints;
+        }
+
+        @Override
+        public boolean isStopped() {
+            return saved >= checkpoints;
+        }
+
+        @Override
+        public void onProgress(TransferJob job) {
+            if (job.itemOffset > 0) {
+                saved++;
+            }
+        }
+    }
+}
@@ -30,6 +30,21 @@ public class CapacitorFilePlugin: CAPPlugin, CAPBridgedPlugin {
         CAPPluginMethod(name: "getDirectories", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "getFreeDiskSpace", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "getPluginVersion", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "getMetrics", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "resetMetrics", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "configureMetrics", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "startJob", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "getJob", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "listJobs", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "cancelJob", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "getThumbnail", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "readRanges", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "prefetch", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "advise", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "preallocate", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "transaction", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "setQuota", returnType: CAPPluginReturnPromise),
+        CAPPluginMethod(name: "cancel", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "checkPermissions", returnType: CAPPluginReturnPromise),
         CAPPluginMethod(name: "requestPermissions", returnType: CAPPluginReturnPromise)
     ]
@@ -224,6 +239,11 @@ public class CapacitorFilePlugin: CAPPlugin, CAPBridgedPlugin {
             return
         }
 
+        if call.getBool("encryption") ?? false {
+            call.unimplemented("Encryption is not implemented on iOS.")
+            return
+        }
+
         let directory = call.getString("directory")
         let encoding = call.getString("encoding")
         let offset = call.getInt("offset") ?? 0
@@ -297,6 +317,11 @@ public class CapacitorFilePlugin: CAPPlugin, CAPBridgedPlugin {
             return
         }
 
+        if call.getBool("encryption") ?? false {
+            call.unimplemented("Encryption is not implemented on iOS.")
+            return
+        }
+
         let directory = call.getString("directory")
 
         guard let fileURL = resolveFilePath(path, directory: directory) else {
@@ -309,8 +334,19 @@ public class CapacitorFilePlugin: CAPPlugin, CAPBridgedPlugin {
             return
         }
 
+        let offset = call.getInt("offset") ?? 0
+        let length = call.getInt("length")
+
         do {
-            let data = try Data(contentsOf: fileURL)
+            let fileHandle = try FileHandle(forReadingFrom: fileURL)
+            defer { fileHandle.closeFile() }
+
+            let fileSize = fileHandle.seekToEndOfFile()
+            let startOffset = min(UInt64(max(0, offset)), fileSize)
+            fileHandle.seek(toFileOffset: startOffset)
+            let remainingBytes = Int(fileSize - startOffset)
+            let data = fileHandle.readData(ofLength: length.map { min(max(0, $0), remainingBytes) } ?? remainingBytes)
+
             let base64 = data.base64EncodedString()
             let mimeType = getMimeType(for: fileURL)
             let dataURL = "data:\(mimeType);base64,\(base64)"
@@ -327,30 +363,41 @@ public class CapacitorFilePlugin: CAPPlugin, CAPBridgedPlugin {
             return
         }
 
+        if call.getBool("encryption") ?? false {
+            call.unimplemented("Encryption is not implemented on iOS.")
+            return
+        }
+
         let directory = call.getString("directory")
         let encoding = call.getString("encoding")
         let append = call.getBool("append") ?? false
         let recursive = call.getBool("recursive") ?? false
         let position = call.getInt("position")
+        let legacyTextFallback = call.getBool("legacyTextFallback") ?? false
 
         guard let fileURL = resolveFilePath(path, directory: directory) else {
             call.reject("Invalid path")
             return
         }
 
+        let data: Data
+        if encoding != nil {
+            data = dataString.data(using: .utf8) ?? Data()
+        } else if let decoded = Data(base64Encoded: dataString.components(separatedBy: .whitespacesAndNewlines).joined()) {
+            data = decoded
+        } else if legacyTextFallback {
+            data = dataString.data(using: .utf8) ?? Data()
+        } else {
+            call.reject("ENCODING_ERR", "Data is not valid Base64")
+            return
+        }
+
         do {
             if recursive {
                 let parentDir = fileURL.deletingLastPathComponent()
                 try fileManager.createDirectory(at: parentDir, withIntermediateDirectories: true)
             }
 
-            var data: Data
-            if let _ = encoding {
-                data = dataString.data(using: .utf8) ?? Data()
-            } else {
-                data = Data(base64Encoded: dataString) ?? dataString.data(using: .utf8) ?? Data()
-            }
-
             let fileExists = fileManager.fileExists(atPath: fileURL.path)
 
             if let pos = position, fileExists {
@@ -468,17 +515,28 @@ public class CapacitorFilePlugin: CAPPlugin, CAPBridgedPlugin {
             return
         }
 
+        let compact = call.getBool("compact", false)
+
         do {
             let contents = try fileManager.contentsOfDirectory(at: dirURL, includingPropertiesForKeys: [.isDirectoryKey])
 
             var entries: [[String: Any]] = []
+            entries.reserveCapacity(contents.count)
             for item in contents {
                 let resourceValues = try item.resourceValues(forKeys: [.isDirectoryKey])
                 let isDir = resourceValues.isDirectory ?? false
-                entries.append(createEntryResult(for: item, isDirectory: isDir))
+                if compact {
+                    entries.append(["name": item.lastPathComponent, "isDirectory": isDir])
+                } else {
+                    entries.append(createEntryResult(for: item, isDirectory: isDir))
+                }
             }
 
-            call.resolve(["entries": entries])
+            if compact {
+                call.resolve(["entries": entries, "fullPath": dirURL.path, "nativeURL": dirURL.absoluteString])
+            } else {
+                call.resolve(["entries": entries])
+            }
         } catch {
             call.reject("Failed to read directory", error.localizedDescription)
         }
@@ -727,6 +785,68 @@ public class CapacitorFilePlugin: CAPPlugin, CAPBridgedPlugin {
         call.resolve(["version": pluginVersion])
     }
 
+    // MARK: - Android-only Methods
+
+    @objc func getMetrics(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func resetMetrics(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func configureMetrics(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func startJob(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func getJob(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func listJobs(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func cancelJob(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func getThumbnail(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func readRanges(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func prefetch(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func advise(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func preallocate(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func transaction(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func setQuota(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
+    @objc func cancel(_ call: CAPPluginCall) {
+        call.unimplemented("Not implemented on iOS.")
+    }
+
     // MARK: - Permissions
 
     @objc override public func checkPermissions(_ call: CAPPluginCall) {
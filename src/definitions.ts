@@ -1,5 +1,60 @@
+/// <reference types="@capacitor/cli" />
+
 import type { PermissionState, PluginListenerHandle } from '@capacitor/core';
 
+declare module '@capacitor/cli' {
+  export interface PluginsConfig {
+    /**
+     * Android configuration of the CapacitorFile plugin
+     */
+    CapacitorFile?: {
+      /**
+       * Record per-method latency, bytes and error metrics from startup (Android only).
+       *
+       * @default false
+       */
+      metrics?: boolean;
+      /**
+       * Emit a `metrics` event every `metricsIntervalMs` milliseconds while metrics are enabled (Android only).
+       *
+       * @default 0
+       */
+      metricsIntervalMs?: number;
+      /**
+       * Hours to keep the records of finished background jobs before they are pruned on startup (Android only).
+       *
+       * @default 24
+       */
+      jobRetentionHours?: number;
+      /**
+       * Store whole-file writes of 16 KB or more once per distinct content and make app paths hard links to them,
+       * so re-downloads of the same media take no extra space and `copy` is a single link (Android only).
+       * Files that share content are unshared before being appended to, written at a position or truncated.
+       * A new file that links to stored content keeps the modification time of when that content was first stored;
+       * rewriting an existing file always gives it its own copy and a fresh modification time. Directory quotas
+       * count every link at its full size.
+       *
+       * @default false
+       */
+      dedupe?: boolean;
+      /**
+       * Milliseconds a write or copy may wait for running ones to finish when the free space is only taken by them,
+       * before it fails with `QUOTA_EXCEEDED_ERR` (Android only).
+       *
+       * @default 10000
+       */
+      spaceWaitMs?: number;
+      /**
+       * Bytes of memory for caching whole-file `readFile` results of files up to 256 KB, already encoded, so
+       * repeated reads of unchanged files skip the disk (Android only). 0 disables the cache.
+       *
+       * @default 0
+       */
+      readCacheBytes?: number;
+    };
+  }
+}
+
 /**
  * Error codes matching the W3C FileError specification
  */
@@ -168,7 +223,7 @@ export interface RequestFileSystemOptions {
  * Options for resolving a URL to an entry
  */
 export interface ResolveURLOptions {
-  /** The URL to resolve (file:// or cdvfile://) */
+  /** The URL to resolve (file:// or cdvfile://, or content:// on Android) */
   url: string;
 }
 
@@ -196,11 +251,28 @@ export interface GetDirectoryOptions {
   options?: GetOptions;
 }
 
+/**
+ * Options for stopping a long-running operation early. Only available on Android; ignored elsewhere.
+ *
+ * A stopped operation rejects with `ABORT_ERR` at its next check, made per chunk or per file. Reads return
+ * nothing, a write leaves the file as it was, a copy removes what it wrote and leaves an existing destination
+ * untouched, and a directory delete keeps whatever it had not removed yet.
+ */
+export interface CancellableOptions {
+  /** Caller-chosen ID of the operation, for `cancel`. Must not be used by another running operation. */
+  operationId?: string;
+  /** Stop the operation once it has run for this many milliseconds, counted from when it starts, not while queued */
+  timeoutMs?: number;
+}
+
 /**
  * Options for reading a file
  */
-export interface ReadFileOptions {
-  /** Path to the file */
+export interface ReadFileOptions extends CancellableOptions {
+  /**
+   * Path to the file. On Android this may also be a `content://` URI, e.g. from a document picker;
+   * `directory` is then ignored.
+   */
   path: string;
   /** Base directory */
   directory?: Directory;
@@ -210,6 +282,167 @@ export interface ReadFileOptions {
   offset?: number;
   /** Number of bytes to read (default: read to end of file) */
   length?: number;
+  /**
+   * Decrypt a file written with `encryption: true`. `offset` and `length` count plaintext bytes, and only the
+   * chunks they touch are decrypted. Fails with `SECURITY_ERR` when the file was modified. Only available on Android.
+   */
+  encryption?: boolean;
+}
+
+/**
+ * A byte range of a file
+ */
+export interface ByteRange {
+  /** Byte offset of the range */
+  offset: number;
+  /** Number of bytes in the range */
+  length: number;
+}
+
+/**
+ * Options for reading many byte ranges of one file
+ */
+export interface ReadRangesOptions extends CancellableOptions {
+  /** Path to the file */
+  path: string;
+  /** Base directory */
+  directory?: Directory;
+  /**
+   * Ranges to read, in any order; they may overlap. On Android, a call whose ranges add up to more than 32 MB
+   * (after clamping to the file) fails with `QUOTA_EXCEEDED_ERR`; split it into several calls.
+   */
+  ranges: ByteRange[];
+  /** Encoding for text files (omit for binary/base64) */
+  encoding?: Encoding;
+}
+
+/**
+ * Result of reading many byte ranges
+ */
+export interface ReadRangesResult {
+  /** Contents of each range, in the order requested; ranges past the end of the file are empty */
+  data: string[];
+}
+
+/**
+ * Options for warming the page cache ahead of reads. A prefetch is a background hint that never blocks other
+ * operations, so it takes no `operationId` or `timeoutMs`.
+ */
+export interface PrefetchOptions {
+  /** Paths of the files that will be read next */
+  paths: string[];
+  /** Base directory */
+  directory?: Directory;
+}
+
+/**
+ * Result of a prefetch
+ */
+export interface PrefetchResult {
+  /** Number of bytes read into the page cache */
+  bytes: number;
+}
+
+/**
+ * Expected access pattern of a file.
+ * - `sequential`: read front to back; the range after each `readFile` is kept warm
+ * - `random` / `normal`: no read-ahead
+ * - `willneed`: the range will be read soon; warm it in the background
+ * - `dontneed`: stop read-ahead and drop pending warming for the file
+ */
+export type ReadAdvice = 'normal' | 'sequential' | 'random' | 'willneed' | 'dontneed';
+
+/**
+ * Options for declaring how a file will be read
+ */
+export interface AdviseOptions {
+  /** Path to the file */
+  path: string;
+  /** Base directory */
+  directory?: Directory;
+  /** Expected access pattern */
+  advice: ReadAdvice;
+  /** Start of the range the advice applies to (default: 0) */
+  offset?: number;
+  /** Length of the range (default: to the end of the file) */
+  length?: number;
+}
+
+/**
+ * Downsampling options for image previews
+ */
+export interface PreviewOptions {
+  /**
+   * Longest edge of the preview in pixels
+   * @default 512
+   */
+  maxSize?: number;
+  /**
+   * JPEG quality from 0 to 100
+   * @default 80
+   */
+  quality?: number;
+}
+
+/**
+ * Options for reading a file as a data URL
+ */
+export interface ReadAsDataURLOptions extends ReadFileOptions {
+  /**
+   * For image files, return a downsampled JPEG (or PNG when transparent) preview instead of the original bytes.
+   * `offset` and `length` are ignored when a preview is returned. Only applied on Android, and not to `content://` URIs.
+   */
+  preview?: PreviewOptions;
+}
+
+/**
+ * Result of reading a file as a data URL
+ */
+export interface ReadAsDataURLResult {
+  /** The data URL */
+  data: string;
+  /** Preview width in pixels, when a preview was returned */
+  width?: number;
+  /** Preview height in pixels, when a preview was returned */
+  height?: number;
+}
+
+/**
+ * Options for getting an image thumbnail. Concurrent requests for the same image share one decode, so the call
+ * takes no `operationId` or `timeoutMs`.
+ */
+export interface GetThumbnailOptions {
+  /** Path to the image */
+  path: string;
+  /** Base directory */
+  directory?: Directory;
+  /**
+   * Longest edge of the thumbnail in pixels
+   * @default 256
+   */
+  size?: number;
+  /**
+   * Compression quality from 0 to 100
+   * @default 80
+   */
+  quality?: number;
+  /**
+   * Output format. `jpeg` falls back to PNG for images with transparency.
+   * @default 'webp'
+   */
+  format?: 'webp' | 'jpeg';
+}
+
+/**
+ * Thumbnail of an image
+ */
+export interface ThumbnailResult {
+  /** Thumbnail as a data URL */
+  data: string;
+  /** Width in pixels */
+  width: number;
+  /** Height in pixels */
+  height: number;
 }
 
 /**
@@ -223,21 +456,41 @@ export interface ReadFileResult {
 /**
  * Options for writing a file
  */
-export interface WriteFileOptions {
+export interface WriteFileOptions extends CancellableOptions {
   /** Path to the file */
   path: string;
   /** Base directory */
   directory?: Directory;
-  /** Data to write (string for text, base64 for binary) */
+  /**
+   * Data to write (string for text, base64 for binary). Without `encoding`, data that isn't Base64 fails with
+   * `ENCODING_ERR` and leaves the file unchanged.
+   */
   data: string;
   /** Encoding for text files */
   encoding?: Encoding;
+  /**
+   * Without `encoding`, write data that isn't Base64 as UTF-8 text instead of failing, as earlier versions did
+   * silently. Prefer setting `encoding` for text. Defaults to false. Not used on web, which stores data as given.
+   */
+  legacyTextFallback?: boolean;
   /** If true, append to existing file instead of overwriting */
   append?: boolean;
   /** Create intermediate directories if they don't exist */
   recursive?: boolean;
   /** Byte position to start writing at (for random access writes). If not specified, writes from beginning or appends based on 'append' flag */
   position?: number;
+  /**
+   * With `position`: total size of the file being assembled. Space for it is reserved first (see `preallocate`),
+   * creating the file if needed, so chunks can be written in any order. Only applied on Android.
+   */
+  preallocate?: number;
+  /**
+   * Encrypt the file at rest with AES-GCM, in chunks so that ranges can be read and rewritten without touching the
+   * whole file. The key is kept wrapped by an Android Keystore key and never leaves the device, so encrypted files
+   * can't be read after a restore on another device. Appends and positional writes need the file to be encrypted
+   * already; `preallocate` is ignored. Only available on Android.
+   */
+  encryption?: boolean;
 }
 
 /**
@@ -261,7 +514,7 @@ export interface DeleteFileOptions {
 /**
  * Options for deleting a directory recursively
  */
-export interface DeleteDirectoryOptions {
+export interface DeleteDirectoryOptions extends CancellableOptions {
   /** Path to the directory */
   path: string;
   /** Base directory */
@@ -285,11 +538,21 @@ export interface MkdirOptions {
 /**
  * Options for reading a directory
  */
-export interface ReaddirOptions {
-  /** Path to the directory */
+export interface ReaddirOptions extends CancellableOptions {
+  /**
+   * Path to the directory. On Android this may also be a `content://` tree URI granted through the
+   * document tree picker; entries then carry their document URIs as `fullPath` and `nativeURL`.
+   */
   path: string;
   /** Base directory */
   directory?: Directory;
+  /**
+   * Return entries in the compact format: each entry only carries `name` and `isDirectory`,
+   * and the directory's `fullPath` and `nativeURL` are returned once on the result.
+   * Cheaper to build and transfer for large directories.
+   * @default false
+   */
+  compact?: boolean;
 }
 
 /**
@@ -300,11 +563,33 @@ export interface ReaddirResult {
   entries: Entry[];
 }
 
+/**
+ * Directory entry in the compact readdir format
+ */
+export interface CompactEntry {
+  /** The name of the file or directory */
+  name: string;
+  /** True if this is a directory */
+  isDirectory: boolean;
+}
+
+/**
+ * Result of reading a directory with `compact: true`
+ */
+export interface CompactReaddirResult {
+  /** List of entries in the directory */
+  entries: CompactEntry[];
+  /** The full path of the listed directory; entry paths are `${fullPath}/${name}` */
+  fullPath: string;
+  /** The native URI of the listed directory */
+  nativeURL: string;
+}
+
 /**
  * Options for getting file information
  */
 export interface StatOptions {
-  /** Path to the file or directory */
+  /** Path to the file or directory, or a `content://` URI on Android */
   path: string;
   /** Base directory */
   directory?: Directory;
@@ -329,7 +614,7 @@ export interface StatResult {
 /**
  * Options for renaming/moving a file or directory
  */
-export interface RenameOptions {
+export interface RenameOptions extends CancellableOptions {
   /** Current path */
   from: string;
   /** New path */
@@ -343,8 +628,8 @@ export interface RenameOptions {
 /**
  * Options for copying a file or directory
  */
-export interface CopyOptions {
-  /** Source path */
+export interface CopyOptions extends CancellableOptions {
+  /** Source path, or a `content://` URI on Android to copy a document into the app's storage */
   from: string;
   /** Destination path */
   to: string;
@@ -366,7 +651,7 @@ export interface CopyResult {
  * Options for checking if a file or directory exists
  */
 export interface ExistsOptions {
-  /** Path to check */
+  /** Path to check, or a `content://` URI on Android */
   path: string;
   /** Base directory */
   directory?: Directory;
@@ -410,6 +695,111 @@ export interface TruncateOptions {
   directory?: Directory;
   /** Size to truncate to (default: 0) */
   size?: number;
+  /**
+   * Resize a file written with `encryption: true`. `size` counts plaintext bytes. Without it, truncating an
+   * encrypted file cuts a record and the file then fails with `SECURITY_ERR`. Only available on Android.
+   */
+  encryption?: boolean;
+}
+
+/**
+ * Options for preallocating a file
+ */
+export interface PreallocateOptions {
+  /** Path to the file; created if missing */
+  path: string;
+  /** Base directory */
+  directory?: Directory;
+  /** Size in bytes the file must be able to grow to */
+  size: number;
+  /**
+   * Only extend the length, leaving a hole instead of reserving disk blocks
+   * @default false
+   */
+  sparse?: boolean;
+}
+
+/**
+ * Result of preallocating a file
+ */
+export interface PreallocateResult {
+  /** Whether disk blocks were reserved; false for sparse files and file systems without preallocation */
+  reserved: boolean;
+}
+
+/**
+ * Options for limiting the size of a directory
+ */
+export interface SetQuotaOptions {
+  /** Path to the directory */
+  path: string;
+  /** Base directory */
+  directory?: Directory;
+  /** Maximum total size in bytes of the files under the directory; 0 removes the limit */
+  maxBytes: number;
+}
+
+/**
+ * Result of setting a directory quota
+ */
+export interface SetQuotaResult {
+  /** Current total size in bytes of the files under the directory */
+  usedBytes: number;
+}
+
+/**
+ * Replaces a file with new contents as part of a transaction
+ */
+export interface TransactionWrite {
+  type: 'write';
+  /** Path to the file */
+  path: string;
+  /** Base directory */
+  directory?: Directory;
+  /** Data to write, Base64 unless `encoding` is set */
+  data: string;
+  /** Text encoding of `data` */
+  encoding?: Encoding;
+  /** Create missing parent directories */
+  recursive?: boolean;
+  /** Encrypt the data at rest, see `WriteFileOptions.encryption` */
+  encryption?: boolean;
+}
+
+/**
+ * Renames a file or directory as part of a transaction, replacing an existing file at `to`
+ */
+export interface TransactionRename {
+  type: 'rename';
+  /** Source path */
+  from: string;
+  /** Destination path */
+  to: string;
+  /** Base directory of `from` */
+  directory?: Directory;
+  /** Base directory of `to` (default: `directory`) */
+  toDirectory?: Directory;
+}
+
+/**
+ * Deletes a file or directory as part of a transaction
+ */
+export interface TransactionDelete {
+  type: 'delete';
+  /** Path to delete */
+  path: string;
+  /** Base directory */
+  directory?: Directory;
+}
+
+export type TransactionOperation = TransactionWrite | TransactionRename | TransactionDelete;
+
+/**
+ * Options for committing a transaction
+ */
+export interface TransactionOptions {
+  /** Operations applied in order; each path may appear in one operation only */
+  operations: TransactionOperation[];
 }
 
 /**
@@ -454,6 +844,168 @@ export interface ProgressEvent {
   lengthComputable: boolean;
 }
 
+/**
+ * Latency distribution of an operation, in milliseconds
+ */
+export interface LatencySummary {
+  min: number;
+  mean: number;
+  p50: number;
+  p90: number;
+  p99: number;
+  max: number;
+}
+
+/**
+ * Counters of the `readFile` cache since the last reset, and its current contents
+ */
+export interface ReadCacheStats {
+  /** Reads served from memory */
+  hits: number;
+  /** Reads that went to disk */
+  misses: number;
+  /** `hits / (hits + misses)`, or 0 before the first read */
+  hitRate: number;
+  /** Entries dropped to stay within `maxBytes` */
+  evictions: number;
+  /** Files currently cached */
+  entries: number;
+  /** Memory currently used by the cache */
+  bytes: number;
+  /** Memory limit of the cache (`readCacheBytes`) */
+  maxBytes: number;
+}
+
+/**
+ * Counters recorded for one plugin method
+ */
+export interface OperationMetrics {
+  /** Completed calls since the last reset */
+  count: number;
+  /** Failed calls since the last reset */
+  errorCount: number;
+  /**
+   * Failed calls by error code (e.g. `NOT_FOUND_ERR`). Calls rejected for missing or malformed options count as
+   * `INVALID_CALL`, and I/O failures without a FileError code as `IO_ERR`.
+   */
+  errors: Record<string, number>;
+  /** Calls currently running */
+  inFlight: number;
+  /** Bytes read from disk */
+  bytesRead: number;
+  /** Bytes written to disk */
+  bytesWritten: number;
+  /** Call latency, from invocation to resolve/reject */
+  latencyMs: LatencySummary;
+}
+
+/**
+ * Snapshot of the per-operation metrics
+ */
+export interface MetricsSnapshot {
+  /** Whether metrics are currently being recorded */
+  enabled: boolean;
+  /** Timestamp (ms since epoch) of the last reset */
+  since: number;
+  /** Metrics keyed by plugin method name */
+  operations: Record<string, OperationMetrics>;
+  /** Read cache counters, present while the cache is enabled (Android only) */
+  readCache?: ReadCacheStats;
+}
+
+/**
+ * Options for configuring metrics collection
+ */
+export interface ConfigureMetricsOptions {
+  /** Start or stop recording. Recording is off by default (`metrics` plugin config). */
+  enabled?: boolean;
+  /** Emit a `metrics` event every `intervalMs` milliseconds; 0 stops the events */
+  intervalMs?: number;
+}
+
+/**
+ * Kind of background job
+ */
+export type JobType = 'copy' | 'unzip';
+
+/**
+ * Lifecycle state of a background job
+ */
+export type JobState = 'enqueued' | 'running' | 'succeeded' | 'failed' | 'cancelled';
+
+/**
+ * Options for starting a background job
+ */
+export interface StartJobOptions {
+  /** `copy` copies a file or directory tree, `unzip` extracts a zip archive into the `to` directory */
+  type: JobType;
+  /** Source path */
+  from: string;
+  /** Destination path */
+  to: string;
+  /** Base directory for source */
+  directory?: Directory;
+  /** Base directory for destination */
+  toDirectory?: Directory;
+  /**
+   * Run as a foreground service with a progress notification, for jobs that may take several minutes
+   * @default false
+   */
+  foreground?: boolean;
+}
+
+/**
+ * Options for cancelling an operation
+ */
+export interface CancelOptions {
+  /** `operationId` passed to the operation */
+  operationId: string;
+}
+
+/**
+ * Result of cancelling an operation
+ */
+export interface CancelResult {
+  /** Whether a running operation with that ID was found; it then rejects with `ABORT_ERR` */
+  cancelled: boolean;
+}
+
+/**
+ * Options identifying a background job
+ */
+export interface JobOptions {
+  /** Job id returned by `startJob` */
+  id: string;
+}
+
+/**
+ * Status and progress of a background job
+ */
+export interface JobStatus {
+  /** Job id */
+  id: string;
+  /** Kind of job */
+  type: JobType;
+  /** Current state */
+  state: JobState;
+  /** Bytes copied or extracted so far */
+  bytesDone: number;
+  /** Total bytes to process, or -1 while unknown */
+  bytesTotal: number;
+  /** Files and directories completed so far */
+  itemsDone: number;
+  /** Total files and directories, or -1 while unknown */
+  itemsTotal: number;
+  /** URI of the destination */
+  uri: string;
+  /** Creation timestamp (ms since epoch) */
+  createdAt: number;
+  /** Timestamp (ms since epoch) of the last checkpoint */
+  updatedAt: number;
+  /** Failure reason, when `state` is `failed` */
+  error?: string;
+}
+
 /**
  * Permission status for file operations
  */
@@ -520,6 +1072,7 @@ export interface CapacitorFilePlugin {
 
   /**
    * Read a file as text or base64.
+   * On Android, whole-file reads can be served from memory while the file is unchanged (`readCacheBytes`).
    *
    * @param options - Read options
    * @returns Promise with file content
@@ -527,15 +1080,53 @@ export interface CapacitorFilePlugin {
   readFile(options: ReadFileOptions): Promise<ReadFileResult>;
 
   /**
-   * Read a file as a data URL (base64 with MIME type prefix).
+   * Read many byte ranges of one file in a single call, e.g. entries of an indexed asset pack.
+   * On Android nearby ranges are coalesced and read through one open file. Not available on iOS.
+   *
+   * @param options - Path and ranges to read
+   * @returns Promise with the contents of each range
+   */
+  readRanges(options: ReadRangesOptions): Promise<ReadRangesResult>;
+
+  /**
+   * Read files into the OS page cache in the background, so that opening them next is fast.
+   * Resolves once all files were read. Only available on Android.
+   *
+   * @param options - Files to prefetch
+   * @returns Promise with the number of bytes read
+   */
+  prefetch(options: PrefetchOptions): Promise<PrefetchResult>;
+
+  /**
+   * Hint how a file is about to be read. Hints never fail and may be ignored.
+   * Only available on Android.
+   *
+   * @param options - File, access pattern and range
+   * @returns Promise that resolves once the hint is applied
+   */
+  advise(options: AdviseOptions): Promise<void>;
+
+  /**
+   * Read a file, or a byte range of it, as a data URL (base64 with MIME type prefix).
    *
    * @param options - Read options
    * @returns Promise with data URL string
    */
-  readAsDataURL(options: ReadFileOptions): Promise<{ data: string }>;
+  readAsDataURL(options: ReadAsDataURLOptions): Promise<ReadAsDataURLResult>;
+
+  /**
+   * Get a downsampled thumbnail of an image. Thumbnails are cached in memory and on disk,
+   * keyed by path, size and modification time, so repeat requests skip decoding.
+   * Only available on Android.
+   *
+   * @param options - Thumbnail options
+   * @returns Promise with the thumbnail data URL and dimensions
+   */
+  getThumbnail(options: GetThumbnailOptions): Promise<ThumbnailResult>;
 
   /**
    * Write data to a file.
+   * On Android, fails with `QUOTA_EXCEEDED_ERR` before writing when the data doesn't fit the free space or a quota.
    *
    * @param options - Write options
    * @returns Promise with the result
@@ -574,6 +1165,14 @@ export interface CapacitorFilePlugin {
    */
   rmdir(options: DeleteDirectoryOptions): Promise<void>;
 
+  /**
+   * Read directory contents in the compact format.
+   *
+   * @param options - Read options with `compact: true`
+   * @returns Promise with compact directory entries
+   */
+  readdir(options: ReaddirOptions & { compact: true }): Promise<CompactReaddirResult>;
+
   /**
    * Read directory contents.
    *
@@ -618,6 +1217,7 @@ export interface CapacitorFilePlugin {
 
   /**
    * Copy a file or directory.
+   * On Android, fails with `QUOTA_EXCEEDED_ERR` before copying when the source doesn't fit the free space or a quota.
    *
    * @param options - Copy options
    * @returns Promise with the result
@@ -648,6 +1248,26 @@ export interface CapacitorFilePlugin {
    */
   truncate(options: TruncateOptions): Promise<void>;
 
+  /**
+   * Grow a file to at least `size` bytes, reserving the disk space up front so a large download doesn't
+   * fragment or run out of space halfway. Fails with `QUOTA_EXCEEDED_ERR` when the free space is too small.
+   * The file is never shrunk. Only available on Android.
+   *
+   * @param options - File and size
+   * @returns Promise with whether disk blocks were reserved
+   */
+  preallocate(options: PreallocateOptions): Promise<PreallocateResult>;
+
+  /**
+   * Apply several writes, renames and deletes so that either all of them take effect or none do, even if the app
+   * is killed halfway: an interrupted transaction is finished or undone the next time the plugin loads.
+   * Only available on Android.
+   *
+   * @param options - Operations to apply
+   * @returns Promise that resolves once every operation is durable
+   */
+  transaction(options: TransactionOptions): Promise<void>;
+
   /**
    * Get all known file system directories.
    *
@@ -662,6 +1282,17 @@ export interface CapacitorFilePlugin {
    */
   getFreeDiskSpace(): Promise<{ free: number }>;
 
+  /**
+   * Limit the total size of the files under a directory. Writes and copies that would exceed it fail with
+   * `QUOTA_EXCEEDED_ERR` before touching the disk. Limits last until the app process ends. Changes made through
+   * this plugin are counted as they happen; files changed by other means are counted once the quota is set again.
+   * Only available on Android.
+   *
+   * @param options - Directory and limit
+   * @returns Promise with the directory's current usage
+   */
+  setQuota(options: SetQuotaOptions): Promise<SetQuotaResult>;
+
   /**
    * Listen for read progress events.
    *
@@ -686,6 +1317,15 @@ export interface CapacitorFilePlugin {
     listenerFunc: (progress: ProgressEvent) => void,
   ): Promise<PluginListenerHandle>;
 
+  /**
+   * Listen for periodic metrics snapshots, enabled with `configureMetrics({ intervalMs })`.
+   *
+   * @param eventName - Must be 'metrics'
+   * @param listenerFunc - Callback receiving the metrics snapshot
+   * @returns Promise with listener handle
+   */
+  addListener(eventName: 'metrics', listenerFunc: (metrics: MetricsSnapshot) => void): Promise<PluginListenerHandle>;
+
   /**
    * Remove all event listeners.
    *
@@ -700,6 +1340,76 @@ export interface CapacitorFilePlugin {
    */
   getPluginVersion(): Promise<{ version: string }>;
 
+  /**
+   * Get latency, throughput and error metrics for every plugin method.
+   * Only available on Android.
+   *
+   * @returns Promise with the metrics snapshot
+   */
+  getMetrics(): Promise<MetricsSnapshot>;
+
+  /**
+   * Reset all metrics counters. Calls in flight keep being tracked.
+   * Only available on Android.
+   *
+   * @returns Promise that resolves when complete
+   */
+  resetMetrics(): Promise<void>;
+
+  /**
+   * Enable or disable metrics recording and the periodic `metrics` event.
+   * Only available on Android.
+   *
+   * @param options - Metrics configuration
+   * @returns Promise with the current metrics snapshot
+   */
+  configureMetrics(options: ConfigureMetricsOptions): Promise<MetricsSnapshot>;
+
+  /**
+   * Start a copy or unzip that keeps running in the background, even after the app is closed.
+   * Jobs checkpoint their progress and resume from the last completed file or byte offset when interrupted.
+   * Only available on Android.
+   *
+   * @param options - Job options
+   * @returns Promise with the status of the new job
+   */
+  startJob(options: StartJobOptions): Promise<JobStatus>;
+
+  /**
+   * Get the status and progress of a background job.
+   * Only available on Android.
+   *
+   * @param options - Job to query
+   * @returns Promise with the job status
+   */
+  getJob(options: JobOptions): Promise<JobStatus>;
+
+  /**
+   * List background jobs, including finished ones until they are pruned (`jobRetentionHours`).
+   * Only available on Android.
+   *
+   * @returns Promise with all known jobs
+   */
+  listJobs(): Promise<{ jobs: JobStatus[] }>;
+
+  /**
+   * Cancel a background job. Files already copied or extracted are left in place.
+   * Only available on Android.
+   *
+   * @param options - Job to cancel
+   * @returns Promise with the job status
+   */
+  cancelJob(options: JobOptions): Promise<JobStatus>;
+
+  /**
+   * Cancel a running read, copy, rename, readdir or recursive rmdir started with an `operationId`.
+   * Only available on Android.
+   *
+   * @param options - Operation to cancel
+   * @returns Promise with whether the operation was still running
+   */
+  cancel(options: CancelOptions): Promise<CancelResult>;
+
   /**
    * Check the current permission status for file operations.
    * On Android, this checks for external storage permissions.
@@ -12,6 +12,10 @@ import type {
   DirectoryEntry,
   ReadFileOptions,
   ReadFileResult,
+  ReadAsDataURLOptions,
+  ReadAsDataURLResult,
+  ReadRangesOptions,
+  ReadRangesResult,
   WriteFileOptions,
   WriteFileResult,
   DeleteFileOptions,
@@ -19,6 +23,7 @@ import type {
   DeleteDirectoryOptions,
   ReaddirOptions,
   ReaddirResult,
+  CompactReaddirResult,
   StatOptions,
   StatResult,
   Metadata,
@@ -32,6 +37,13 @@ import type {
   TruncateOptions,
   FileDirectories,
   FilePermissionStatus,
+  MetricsSnapshot,
+  JobStatus,
+  ThumbnailResult,
+  PrefetchResult,
+  PreallocateResult,
+  SetQuotaResult,
+  CancelResult,
 } from './definitions';
 import { Directory, FileSystemType } from './definitions';
 
@@ -243,6 +255,9 @@ export class CapacitorFileWeb extends WebPlugin implements CapacitorFilePlugin {
   }
 
   async readFile(options: ReadFileOptions): Promise<ReadFileResult> {
+    if (options.encryption) {
+      throw this.unimplemented('Encryption is not implemented on web.');
+    }
     const path = this.normalizePath(options.path, options.directory);
     const db = await this.getDB();
     const offset = options.offset ?? 0;
@@ -277,7 +292,23 @@ export class CapacitorFileWeb extends WebPlugin implements CapacitorFilePlugin {
     });
   }
 
-  async readAsDataURL(options: ReadFileOptions): Promise<{ data: string }> {
+  async readRanges(options: ReadRangesOptions): Promise<ReadRangesResult> {
+    const data = await Promise.all(
+      options.ranges.map(async (range) => {
+        const result = await this.readFile({
+          path: options.path,
+          directory: options.directory,
+          encoding: options.encoding,
+          offset: range.offset,
+          length: range.length,
+        });
+        return result.data;
+      }),
+    );
+    return { data };
+  }
+
+  async readAsDataURL(options: ReadAsDataURLOptions): Promise<ReadAsDataURLResult> {
     const result = await this.readFile({ ...options, encoding: undefined });
     const path = options.path.toLowerCase();
     let mimeType = 'application/octet-stream';
@@ -294,6 +325,9 @@ export class CapacitorFileWeb extends WebPlugin implements CapacitorFilePlugin {
   }
 
   async writeFile(options: WriteFileOptions): Promise<WriteFileResult> {
+    if (options.encryption) {
+      throw this.unimplemented('Encryption is not implemented on web.');
+    }
     const path = this.normalizePath(options.path, options.directory);
     const db = await this.getDB();
 
@@ -442,7 +476,9 @@ export class CapacitorFileWeb extends WebPlugin implements CapacitorFilePlugin {
     });
   }
 
-  async readdir(options: ReaddirOptions): Promise<ReaddirResult> {
+  async readdir(options: ReaddirOptions & { compact: true }): Promise<CompactReaddirResult>;
+  async readdir(options: ReaddirOptions): Promise<ReaddirResult>;
+  async readdir(options: ReaddirOptions): Promise<ReaddirResult | CompactReaddirResult> {
     const path = this.normalizePath(options.path, options.directory);
     const db = await this.getDB();
 
@@ -469,6 +505,12 @@ export class CapacitorFileWeb extends WebPlugin implements CapacitorFilePlugin {
             }
           }
           cursor.continue();
+        } else if (options.compact) {
+          resolve({
+            entries: entries.map((entry) => ({ name: entry.name, isDirectory: entry.isDirectory })),
+            fullPath: path,
+            nativeURL: `indexeddb://localhost/persistent${path}`,
+          });
         } else {
           resolve({ entries });
         }
@@ -663,6 +705,62 @@ export class CapacitorFileWeb extends WebPlugin implements CapacitorFilePlugin {
     return { version: 'web' };
   }
 
+  async getMetrics(): Promise<MetricsSnapshot> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async resetMetrics(): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async configureMetrics(): Promise<MetricsSnapshot> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async startJob(): Promise<JobStatus> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getJob(): Promise<JobStatus> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async listJobs(): Promise<{ jobs: JobStatus[] }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async cancelJob(): Promise<JobStatus> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getThumbnail(): Promise<ThumbnailResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async prefetch(): Promise<PrefetchResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async advise(): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async preallocate(): Promise<PreallocateResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async transaction(): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async setQuota(): Promise<SetQuotaResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async cancel(): Promise<CancelResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
   async checkPermissions(): Promise<FilePermissionStatus> {
     // On web, file access through IndexedDB doesn't require special permissions
     return { publicStorage: 'granted' };